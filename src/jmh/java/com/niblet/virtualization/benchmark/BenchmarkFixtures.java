@@ -0,0 +1,135 @@
+package com.niblet.virtualization.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+import com.niblet.virtualization.service.MockApiCatalog;
+import com.niblet.virtualization.service.MockApiMetrics;
+import com.niblet.virtualization.service.MockApiProxy;
+import com.niblet.virtualization.service.MockApiRequestJournal;
+import com.niblet.virtualization.service.NibletServiceVirtualizationService;
+import com.niblet.virtualization.util.RandomSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Builds synthetic catalogs and requests shared by the benchmarks. Mocks are
+ * spread over {@value #RESOURCE_COUNT} resources, each with a literal path, a
+ * digit path parameter and a header-constrained variant, so a request always
+ * has to pick between several candidates.
+ */
+final class BenchmarkFixtures {
+
+	static final int RESOURCE_COUNT = 64;
+
+	private BenchmarkFixtures() {
+	}
+
+	static List<MockApiRequestResponseEntity> catalog(int catalogSize, int headerCount) {
+
+		List<MockApiRequestResponseEntity> entities = new ArrayList<>(catalogSize);
+
+		for (int i = 0; i < catalogSize; i++) {
+
+			int resource = i % RESOURCE_COUNT;
+			int variant = i / RESOURCE_COUNT;
+			String headers;
+			String apiPath;
+
+			switch (variant % 3) {
+			case 0:
+				apiPath = "^api///resource" + resource + "///item" + variant + "$";
+				headers = ".*";
+				break;
+			case 1:
+				apiPath = "^api///resource" + resource + "///(?<id>\\d+)$";
+				headers = "^(a|[^a])*\\<x-variant=" + variant + "\\>(a|[^a])*$";
+				break;
+			default:
+				apiPath = "^api///resource" + resource + "///(?<id>[^/]+)$";
+				headers = "^(a|[^a])*\\<x-header-" + (variant % Math.max(1, headerCount)) + "=.+\\>(a|[^a])*$";
+				break;
+			}
+
+			entities.add(entity(i + 1L, apiPath, headers, "{\"resource\":" + resource + "}"));
+		}
+
+		return entities;
+	}
+
+	static MockApiRequestResponseEntity entity(long id, String apiPath, String headers, String responseBody) {
+
+		MockApiRequestResponseEntity entity = new MockApiRequestResponseEntity();
+		entity.setId(id);
+		entity.setApiPath(apiPath);
+		entity.setRequestVerb("GET");
+		entity.setRequestHeaders(headers);
+		entity.setRequestQueryParameters(".*");
+		entity.setResponseBody(responseBody);
+		entity.setResponseStatus("200");
+
+		return entity;
+	}
+
+	static Map<String, String> headers(int headerCount) {
+
+		Map<String, String> headers = new LinkedHashMap<>();
+
+		for (int i = 0; i < headerCount; i++) {
+
+			headers.put("x-header-" + i, "value-" + i);
+		}
+
+		headers.put("x-variant", "4");
+
+		return headers;
+	}
+
+	static NibletServiceVirtualizationService service(List<MockApiRequestResponseEntity> entities) {
+
+		// the repositories, snapshot and proxy are only used for admin writes and startup, which aren't benchmarked
+		NibletServiceVirtualizationProperties properties = new NibletServiceVirtualizationProperties();
+		MockApiCatalog mockApiCatalog = new MockApiCatalog(null, properties, null, null);
+		mockApiCatalog.rebuild(entities);
+
+		return new NibletServiceVirtualizationService(mockApiCatalog, null, RandomSource.seeded(42L),
+				new MockApiMetrics(new SimpleMeterRegistry()), new MockApiRequestJournal(properties),
+				new MockApiProxy(null, properties), properties);
+	}
+
+	/**
+	 * @param tokenDensity generator tokens per 100 literal characters
+	 */
+	static String template(int tokenDensity, int literalLength) {
+
+		String[] tokens = { "{digits(9)}", "{alphanumeric(5,20)}", "{lower(8)}", "{number(1,1000)}",
+				"{decimal(1,100,2)}", "{select[abc](3)}", "{characters(12)}", "{upper(2,4)}" };
+		StringBuilder template = new StringBuilder("{");
+		int tokenCount = literalLength * tokenDensity / 100;
+		int literalPerToken = tokenCount == 0 ? literalLength : Math.max(1, literalLength / tokenCount);
+		int written = 0;
+
+		for (int i = 0; written < literalLength || i < tokenCount; i++) {
+
+			int chunk = Math.min(literalPerToken, Math.max(0, literalLength - written));
+			template.append("\"f").append(i).append("\":\"").append("x".repeat(chunk)).append('"');
+			written += chunk;
+
+			if (i < tokenCount) {
+
+				template.append(",\"g").append(i).append("\":\"").append(tokens[i % tokens.length]).append('"');
+			}
+
+			template.append(',');
+		}
+
+		template.setCharAt(template.length() - 1, '}');
+
+		return template.toString();
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.niblet.virtualization.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.niblet.virtualization.model.MatchCategory;
+import com.niblet.virtualization.model.MockApiMatchData;
+import com.niblet.virtualization.util.NibletServiceVirtualizationUtils;
+
+/**
+ * Ranking of already counted candidates: the single-pass top-2 selection with
+ * its tie check, and a full sort with the comparator for reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MatchSelectionBenchmark {
+
+	@Param({ "2", "16", "256" })
+	private int candidateCount;
+
+	private List<MockApiMatchData> candidates;
+
+	@Setup
+	public void setUp() {
+
+		SplittableRandom random = new SplittableRandom(42L);
+		candidates = new ArrayList<>(candidateCount);
+
+		for (int i = 0; i < candidateCount; i++) {
+
+			MockApiMatchData candidate = new MockApiMatchData();
+
+			for (MatchCategory matchCategory : MatchCategory.values()) {
+
+				candidate.add(matchCategory, random.nextInt(3));
+			}
+
+			candidates.add(candidate);
+		}
+	}
+
+	@Benchmark
+	public MockApiMatchData findHighestPriorityMatch() {
+
+		return NibletServiceVirtualizationUtils.findHighestPriorityMatch(candidates);
+	}
+
+	@Benchmark
+	public List<MockApiMatchData> sortWithComparator() {
+
+		List<MockApiMatchData> sorted = new ArrayList<>(candidates);
+		sorted.sort(NibletServiceVirtualizationUtils.MOCK_API_FILTER_DATA_COMPARITOR);
+
+		return sorted;
+	}
+
+}
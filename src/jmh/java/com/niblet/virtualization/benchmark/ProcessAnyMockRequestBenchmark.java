@@ -0,0 +1,61 @@
+package com.niblet.virtualization.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.niblet.virtualization.model.MockApiResponse;
+import com.niblet.virtualization.service.NibletServiceVirtualizationService;
+
+/**
+ * End to end matching of a single request: path routing, header and query
+ * matching, selection and response rendering.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProcessAnyMockRequestBenchmark {
+
+	@Param({ "10", "1000", "10000", "100000" })
+	private int catalogSize;
+
+	@Param({ "1", "10", "50" })
+	private int headerCount;
+
+	private NibletServiceVirtualizationService service;
+	private Map<String, String> headers;
+
+	@Setup
+	public void setUp() {
+
+		service = BenchmarkFixtures.service(BenchmarkFixtures.catalog(catalogSize, headerCount));
+		headers = BenchmarkFixtures.headers(headerCount);
+	}
+
+	@Benchmark
+	public MockApiResponse wildCardAndHeaderMatch() {
+
+		return service.processAnyMockRequest("GET", "/api/resource7/12345", null, headers, Map.of());
+	}
+
+	@Benchmark
+	public MockApiResponse exactPathMatch() {
+
+		return service.processAnyMockRequest("GET", "/api/resource7/item0", null, headers, Map.of());
+	}
+
+	@Benchmark
+	public MockApiResponse noMatch() {
+
+		return service.processAnyMockRequest("GET", "/api/unknown/12345", null, headers, Map.of());
+	}
+
+}
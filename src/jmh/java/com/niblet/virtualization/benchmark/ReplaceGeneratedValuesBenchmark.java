@@ -0,0 +1,63 @@
+package com.niblet.virtualization.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.niblet.virtualization.exception.InvalidResponseBodyException;
+import com.niblet.virtualization.model.ResponseTemplate;
+import com.niblet.virtualization.service.NibletServiceVirtualizationService;
+import com.niblet.virtualization.util.RandomSource;
+
+/**
+ * Response body templating, both compiling and rendering on every call
+ * ({@code replaceGeneratedValues}) and rendering an already compiled template,
+ * which is what the request path does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReplaceGeneratedValuesBenchmark {
+
+	// generator tokens per 100 literal characters
+	@Param({ "0", "1", "10" })
+	private int tokenDensity;
+
+	@Param({ "1000", "100000" })
+	private int literalLength;
+
+	private NibletServiceVirtualizationService service;
+	private RandomSource randomSource;
+	private String payload;
+	private ResponseTemplate responseTemplate;
+
+	@Setup
+	public void setUp() throws InvalidResponseBodyException {
+
+		service = BenchmarkFixtures.service(List.of());
+		randomSource = RandomSource.seeded(42L);
+		payload = BenchmarkFixtures.template(tokenDensity, literalLength);
+		responseTemplate = ResponseTemplate.compile(payload);
+	}
+
+	@Benchmark
+	public String replaceGeneratedValues() throws InvalidResponseBodyException {
+
+		return service.replaceGeneratedValues(payload);
+	}
+
+	@Benchmark
+	public String renderCompiledTemplate() {
+
+		return responseTemplate.render(randomSource.current());
+	}
+
+}
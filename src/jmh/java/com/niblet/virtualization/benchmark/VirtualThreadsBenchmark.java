@@ -0,0 +1,116 @@
+package com.niblet.virtualization.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.niblet.virtualization.NibletServiceVirtualizationApplication;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Over HTTP, with more client threads than Tomcat has workers: compares the
+ * p99 latency (sample mode percentiles) and the maximum number of requests in
+ * flight inside the server, with and without
+ * {@code niblet.virtualization.threads.virtual}. The in-flight maximum is
+ * logged when each trial ends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(512)
+public class VirtualThreadsBenchmark {
+
+	private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadsBenchmark.class);
+	private static final AtomicInteger IN_FLIGHT = new AtomicInteger();
+	private static final AtomicInteger MAX_IN_FLIGHT = new AtomicInteger();
+
+	@Param({ "false", "true" })
+	private boolean virtualThreads;
+
+	private ConfigurableApplicationContext context;
+	private HttpClient httpClient;
+	private HttpRequest request;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		context = new SpringApplicationBuilder(NibletServiceVirtualizationApplication.class, InFlightConfig.class)
+				.run("--server.port=0", "--niblet.virtualization.threads.virtual=" + virtualThreads,
+						"--logging.level.root=WARN", "--logging.level.com.niblet.virtualization.benchmark=INFO");
+
+		int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+
+		httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		// seeded mock with no header or query constraints
+		request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/consumer")).GET().build();
+
+		IN_FLIGHT.set(0);
+		MAX_IN_FLIGHT.set(0);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+
+		LOG.info("virtualThreads={} maxInFlight={}", virtualThreads, MAX_IN_FLIGHT.get());
+		context.close();
+	}
+
+	@Benchmark
+	public int request() throws IOException, InterruptedException {
+
+		return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	@Configuration
+	static class InFlightConfig {
+
+		@Bean
+		OncePerRequestFilter inFlightFilter() {
+
+			return new OncePerRequestFilter() {
+
+				@Override
+				protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+						FilterChain filterChain) throws ServletException, IOException {
+
+					MAX_IN_FLIGHT.accumulateAndGet(IN_FLIGHT.incrementAndGet(), Math::max);
+
+					try {
+						filterChain.doFilter(request, response);
+					} finally {
+						IN_FLIGHT.decrementAndGet();
+					}
+				}
+			};
+		}
+	}
+
+}
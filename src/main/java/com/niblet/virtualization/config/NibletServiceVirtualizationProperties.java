@@ -0,0 +1,124 @@
+package com.niblet.virtualization.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+@Data
+@ConfigurationProperties(prefix = "niblet.virtualization")
+public class NibletServiceVirtualizationProperties {
+
+	private Random random = new Random();
+
+	private Threads threads = new Threads();
+
+	private BodyFiles bodyFiles = new BodyFiles();
+
+	private Snapshot snapshot = new Snapshot();
+
+	private Journal journal = new Journal();
+
+	private Proxy proxy = new Proxy();
+
+	private Pregeneration pregeneration = new Pregeneration();
+
+	/**
+	 * @return the pre-generation queue depth, or 0 in SEEDED random mode, where
+	 *         rendering ahead on another thread would make the values each
+	 *         request gets depend on timing
+	 */
+	public int getPregenerationQueueDepth() {
+
+		return RandomMode.SEEDED == random.getMode() ? 0 : pregeneration.getQueueDepth();
+	}
+
+	public enum RandomMode {
+		FAST, SEEDED, SECURE
+	}
+
+	@Data
+	public static class Random {
+
+		// source of generated values in response bodies
+		private RandomMode mode = RandomMode.FAST;
+
+		// only used in SEEDED mode
+		private long seed = 0L;
+	}
+
+	@Data
+	public static class Threads {
+
+		// serve requests on virtual threads instead of Tomcat's worker pool
+		private boolean virtual = false;
+	}
+
+	@Data
+	public static class BodyFiles {
+
+		// RESPONSE_BODY_FILE values are relative to, and must stay inside, this
+		// directory
+		private String directory = "mock-bodies";
+	}
+
+	@Data
+	public static class Snapshot {
+
+		// binary catalog snapshot; blank to disable
+		private String file = "";
+	}
+
+	@Data
+	public static class Journal {
+
+		// most recent requests kept in memory; 0 to disable
+		private int capacity = 1024;
+
+		// NDJSON file the journal is appended to; blank to keep it in memory only
+		private String file = "";
+
+		private long flushIntervalMillis = 1000L;
+
+		// request headers whose values are journaled as [REDACTED], matched
+		// case-insensitively
+		private List<String> redactedHeaders = new ArrayList<>(
+				List.of("Authorization", "Proxy-Authorization", "Cookie"));
+	}
+
+	@Data
+	public static class Proxy {
+
+		// requests no mock matches are forwarded here, e.g. http://localhost:9090;
+		// blank to answer them with 404
+		private String upstream = "";
+
+		// save upstream responses as mocks, so identical requests are answered locally
+		private boolean record = true;
+
+		private long timeoutMillis = 10000L;
+
+		// responses waiting to be saved; more are dropped until the queue drains
+		private int recordQueueCapacity = 10000;
+
+		private int recordBatchSize = 100;
+
+		private long recordFlushIntervalMillis = 500L;
+	}
+
+	@Data
+	public static class Pregeneration {
+
+		// rendered bodies kept ready per opted-in mock; 0 to disable
+		private int queueDepth = 32;
+
+		// bodies rendered per mock on each refill, so together with the interval
+		// this bounds the background rendering rate
+		private int refillBatchSize = 8;
+
+		private long refillIntervalMillis = 10L;
+	}
+
+}
@@ -0,0 +1,32 @@
+package com.niblet.virtualization.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.niblet.virtualization.util.RandomSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Configuration
+@Slf4j
+@EnableConfigurationProperties(NibletServiceVirtualizationProperties.class)
+public class RandomSourceConfig {
+
+	@Bean
+	RandomSource randomSource(NibletServiceVirtualizationProperties properties) {
+
+		NibletServiceVirtualizationProperties.Random random = properties.getRandom();
+		log.info("Generating response body values with {} random source.", random.getMode());
+
+		switch (random.getMode()) {
+		case SEEDED:
+			return RandomSource.seeded(random.getSeed());
+		case SECURE:
+			return RandomSource.secure();
+		default:
+			return RandomSource.fast();
+		}
+	}
+
+}
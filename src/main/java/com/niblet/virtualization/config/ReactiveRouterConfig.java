@@ -0,0 +1,46 @@
+package com.niblet.virtualization.config;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PUT;
+import static org.springframework.web.reactive.function.server.RequestPredicates.all;
+import static org.springframework.web.reactive.function.server.RequestPredicates.path;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.niblet.virtualization.controller.ReactiveMockApiHandler;
+
+/**
+ * Routes for the reactive front end. The admin routes are matched first and
+ * every other request is a mock request, like the {@code /**} mappings of the
+ * servlet controller. The bulk endpoints are servlet-only and answer 501 here.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+public class ReactiveRouterConfig {
+
+	@Bean
+	RouterFunction<ServerResponse> mockApiRoutes(ReactiveMockApiHandler reactiveMockApiHandler) {
+
+		return RouterFunctions.route(POST("/mock/api"), reactiveMockApiHandler::createNewMockApi)
+				.andRoute(PUT("/mock/api/{id}"), reactiveMockApiHandler::updateMockApi)
+				// not mocks, so they mustn't fall through to the mock route
+				.andRoute(path("/mock/api/bulk"), reactiveMockApiHandler::bulkNotSupported)
+				.andRoute(all(), reactiveMockApiHandler::mockRequest);
+	}
+
+	// Tomcat is on the classpath for the servlet front end and would otherwise be
+	// picked as the reactive server too
+	@Bean
+	NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+
+		return new NettyReactiveWebServerFactory();
+	}
+
+}
@@ -0,0 +1,33 @@
+package com.niblet.virtualization.config;
+
+import java.util.concurrent.Executors;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opt-in: replaces Tomcat's bounded worker pool with a virtual thread per
+ * request, so concurrent mock traffic is no longer capped by
+ * {@code server.tomcat.threads.max}.
+ */
+@Configuration
+@Slf4j
+@ConditionalOnWebApplication(type = Type.SERVLET)
+@ConditionalOnProperty(prefix = "niblet.virtualization.threads", name = "virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+	@Bean
+	TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+
+		log.info("Serving requests on virtual threads.");
+
+		return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+	}
+
+}
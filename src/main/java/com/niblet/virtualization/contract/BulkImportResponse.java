@@ -0,0 +1,17 @@
+package com.niblet.virtualization.contract;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class BulkImportResponse {
+
+	private String message;
+	private StatusEnum status;
+	private int createdCount;
+	private int rejectedCount;
+	// the first rejected lines, by line number
+	private List<String> errors;
+
+}
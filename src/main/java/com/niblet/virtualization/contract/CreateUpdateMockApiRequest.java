@@ -14,7 +14,17 @@ public class CreateUpdateMockApiRequest {
 	private Map<String, RequestVariableDetails> requestHeaders;
 	private Map<String, RequestVariableDetails> requestPathParameters;
 	private Map<String, RequestVariableDetails> requestQueryParameters;
+	// any request body matches when null
+	private RequestBodyDetails requestBody;
 	private String responseBody;
+	// instead of responseBody: a file, relative to the body file directory,
+	// streamed as the response body
+	private String responseBodyFile;
 	private HttpStatusCode responseStatusCode;
+	// no delay when null
+	private ResponseDelay responseDelay;
+	// true to keep rendered response bodies ready in the background; only
+	// useful when responseBody has generator tokens
+	private Boolean pregenerateResponses;
 
 }
@@ -0,0 +1,14 @@
+package com.niblet.virtualization.contract;
+
+public enum DelayModeEnum {
+
+	// always delayMillis
+	FIXED,
+
+	// uniformly distributed between delayMillis and delayUpperMillis
+	UNIFORM,
+
+	// log-normal, with delayMillis as the median (p50) and delayUpperMillis as p99
+	PERCENTILE;
+
+}
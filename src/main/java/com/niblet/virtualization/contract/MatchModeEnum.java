@@ -6,15 +6,24 @@ import lombok.Getter;
 @Generated
 public enum MatchModeEnum {
 
-	EXISTS(".+"),
+	EXISTS(""),
+
+	ANY_VALUE(".+"),
 
 	DIGITS("\\d+"),
 
-	ALPHA_NUMERIC("[a-zA-Z_]+"),
+	ALPHA_NUMERIC("[a-zA-Z0-9_]+"),
 
 	CUSTOM_REGEX(null),
 
-	EXACT_MATCH(null);
+	EXACT_MATCH(null),
+
+	// request body fields only, where a field missing from the body counts as
+	// null; headers and parameters are never null, so there they behave like
+	// EXISTS and ANY_VALUE
+	IS_NULL(""),
+
+	IS_NOT_NULL(".+");
 
 	@Getter
 	private String regex;
@@ -0,0 +1,27 @@
+package com.niblet.virtualization.contract;
+
+import lombok.Data;
+
+/**
+ * One line of a bulk import or export: a mock in its stored form, with the
+ * same values as the MOCK_API_REQUEST_RESPONSE columns.
+ */
+@Data
+public class MockApiDefinition {
+
+	// ignored on import
+	private Long id;
+	private String apiPath;
+	private String requestVerb;
+	private String requestHeaders;
+	private String requestQueryParameters;
+	private String requestBody;
+	private String responseBody;
+	private String responseBodyFile;
+	private String responseStatus;
+	private String delayMode;
+	private Long delayMillis;
+	private Long delayUpperMillis;
+	private Boolean pregenerateResponses;
+
+}
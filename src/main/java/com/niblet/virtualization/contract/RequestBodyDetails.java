@@ -0,0 +1,16 @@
+package com.niblet.virtualization.contract;
+
+import java.util.Map;
+
+import lombok.Data;
+
+@Data
+public class RequestBodyDetails {
+
+	// the whole request body must equal this
+	private String exactMatch;
+	// keyed by JSON path, e.g. $.order.items[0].sku, or XML path, e.g.
+	// /order/item/@sku
+	private Map<String, RequestVariableDetails> fields;
+
+}
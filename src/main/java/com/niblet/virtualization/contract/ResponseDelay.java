@@ -0,0 +1,13 @@
+package com.niblet.virtualization.contract;
+
+import lombok.Data;
+
+@Data
+public class ResponseDelay {
+
+	private DelayModeEnum mode;
+	private Long delayMillis;
+	// only used by UNIFORM and PERCENTILE
+	private Long delayUpperMillis;
+
+}
@@ -0,0 +1,40 @@
+package com.niblet.virtualization.controller;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.niblet.virtualization.service.MockApiCatalog;
+import com.niblet.virtualization.service.MockApiMetrics;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * {@code /actuator/mockhits}: hit count of every mock in the catalog, including
+ * mocks that have never been hit.
+ */
+@Component
+@Endpoint(id = "mockhits")
+@RequiredArgsConstructor
+public class MockApiHitsEndpoint {
+
+	private final MockApiCatalog mockApiCatalog;
+	private final MockApiMetrics mockApiMetrics;
+
+	@ReadOperation
+	public Map<Long, Long> hitCounts() {
+
+		Map<Long, Long> hitCounts = new TreeMap<>();
+
+		for (Long mockApiId : mockApiCatalog.getMockApiIds()) {
+
+			hitCounts.put(mockApiId, mockApiMetrics.getHitCount(mockApiId));
+		}
+
+		return hitCounts;
+	}
+
+}
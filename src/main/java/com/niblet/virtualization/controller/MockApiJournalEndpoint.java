@@ -0,0 +1,34 @@
+package com.niblet.virtualization.controller;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.niblet.virtualization.service.MockApiRequestJournal;
+import com.niblet.virtualization.service.MockApiRequestJournal.Entry;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * {@code /actuator/mockjournal?limit=n}: the most recent mock requests, newest
+ * first, with the mock that answered each one.
+ */
+@Component
+@Endpoint(id = "mockjournal")
+@RequiredArgsConstructor
+public class MockApiJournalEndpoint {
+
+	private static final int DEFAULT_LIMIT = 100;
+
+	private final MockApiRequestJournal mockApiRequestJournal;
+
+	@ReadOperation
+	public List<Entry> recentRequests(@Nullable Integer limit) {
+
+		return mockApiRequestJournal.recent(null == limit ? DEFAULT_LIMIT : Math.max(0, limit));
+	}
+
+}
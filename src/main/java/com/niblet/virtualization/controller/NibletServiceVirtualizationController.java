@@ -1,8 +1,17 @@
 package com.niblet.virtualization.controller;
 
-import java.util.Map;
-
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.Map.Entry;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,83 +20,176 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.niblet.virtualization.contract.BulkImportResponse;
 import com.niblet.virtualization.contract.CreateUpdateMockApiRequest;
 import com.niblet.virtualization.contract.CreateUpdateResponse;
+import com.niblet.virtualization.model.MockApiRequest;
+import com.niblet.virtualization.model.MockApiResponse;
+import com.niblet.virtualization.service.MockApiBulkService;
+import com.niblet.virtualization.service.MockApiResponseScheduler;
 import com.niblet.virtualization.service.NibletServiceVirtualizationService;
+import com.niblet.virtualization.util.NibletServiceVirtualizationUtils;
 
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 @RestController
+@Slf4j
 @RequiredArgsConstructor
+@ConditionalOnWebApplication(type = Type.SERVLET)
 public class NibletServiceVirtualizationController {
 
+	// Tomcat's sendfile request attributes, as used by its DefaultServlet
+	private static final String SENDFILE_SUPPORTED_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
 	private final NibletServiceVirtualizationService nibletServiceVirtualizationService;
+	private final MockApiResponseScheduler mockApiResponseScheduler;
+	private final MockApiBulkService mockApiBulkService;
 
 	// Matches any request with GET
 	@GetMapping(value = { "/**" })
-	public ResponseEntity<String> getMockRequest(HttpServletRequest httpServletRequest,
-			@RequestHeader Map<String, String> headers, @RequestParam Map<String, String> queryParameters) {
+	public Object getMockRequest(HttpServletRequest httpServletRequest) {
 
-		return nibletServiceVirtualizationService.processAnyMockRequest(HttpMethod.GET.name(),
-				httpServletRequest.getRequestURI(), null, headers, queryParameters);
+		return processMockRequest(httpServletRequest, HttpMethod.GET, null);
 	}
 
 	@PostMapping(value = "/**")
-	public ResponseEntity<String> postMockRequest(HttpServletRequest httpServletRequest,
-			@RequestBody String requestBody, @RequestHeader Map<String, String> headers,
-			@RequestParam Map<String, String> queryParameters) {
+	public Object postMockRequest(HttpServletRequest httpServletRequest, @RequestBody String requestBody) {
 
-		return nibletServiceVirtualizationService.processAnyMockRequest(HttpMethod.POST.name(),
-				httpServletRequest.getRequestURI(), requestBody, headers, queryParameters);
+		return processMockRequest(httpServletRequest, HttpMethod.POST, requestBody);
 	}
 
 	@PutMapping(value = "/**")
-	public ResponseEntity<String> putMockRequest(HttpServletRequest httpServletRequest, @RequestBody String requestBody,
-			@RequestHeader Map<String, String> headers, @RequestParam Map<String, String> queryParameters) {
+	public Object putMockRequest(HttpServletRequest httpServletRequest, @RequestBody String requestBody) {
 
-		return nibletServiceVirtualizationService.processAnyMockRequest(HttpMethod.PUT.name(),
-				httpServletRequest.getRequestURI(), requestBody, headers, queryParameters);
+		return processMockRequest(httpServletRequest, HttpMethod.PUT, requestBody);
 	}
 
 	@DeleteMapping(value = "/**")
-	public ResponseEntity<String> deleteMockRequest(HttpServletRequest httpServletRequest,
-			@RequestHeader Map<String, String> headers, @RequestParam Map<String, String> queryParameters) {
+	public Object deleteMockRequest(HttpServletRequest httpServletRequest) {
 
-		return nibletServiceVirtualizationService.processAnyMockRequest(HttpMethod.DELETE.name(),
-				httpServletRequest.getRequestURI(), null, headers, queryParameters);
+		return processMockRequest(httpServletRequest, HttpMethod.DELETE, null);
 	}
 
 	@PatchMapping(value = "/**")
-	public ResponseEntity<String> patchMockRequest(HttpServletRequest httpServletRequest,
-			@RequestBody String requestBody, @RequestHeader Map<String, String> headers,
-			@RequestParam Map<String, String> queryParameters) {
+	public Object patchMockRequest(HttpServletRequest httpServletRequest, @RequestBody String requestBody) {
 
-		return nibletServiceVirtualizationService.processAnyMockRequest(HttpMethod.PATCH.name(),
-				httpServletRequest.getRequestURI(), requestBody, headers, queryParameters);
+		return processMockRequest(httpServletRequest, HttpMethod.PATCH, requestBody);
 	}
 
 	@RequestMapping(value = "/**", method = RequestMethod.HEAD)
-	public ResponseEntity<String> headMockRequest(HttpServletRequest httpServletRequest,
-			@RequestHeader Map<String, String> headers, @RequestParam Map<String, String> queryParameters) {
+	public Object headMockRequest(HttpServletRequest httpServletRequest) {
 
-		return nibletServiceVirtualizationService.processAnyMockRequest(HttpMethod.HEAD.name(),
-				httpServletRequest.getRequestURI(), null, headers, queryParameters);
+		return processMockRequest(httpServletRequest, HttpMethod.HEAD, null);
 	}
 
 	@RequestMapping(value = "/**", method = RequestMethod.OPTIONS)
-	public ResponseEntity<String> optionsMockRequest(HttpServletRequest httpServletRequest,
-			@RequestBody String requestBody, @RequestHeader Map<String, String> headers,
-			@RequestParam Map<String, String> queryParameters) {
+	public Object optionsMockRequest(HttpServletRequest httpServletRequest, @RequestBody String requestBody) {
+
+		return processMockRequest(httpServletRequest, HttpMethod.OPTIONS, null);
+	}
+
+	/**
+	 * Fills this thread's {@link MockApiRequest} straight from the servlet
+	 * request, where binding {@code @RequestHeader} and {@code @RequestParam}
+	 * maps would copy every header and parameter first. As with those maps, only
+	 * the first value of each is read.
+	 */
+	private Object processMockRequest(HttpServletRequest httpServletRequest, HttpMethod httpMethod,
+			String requestBody) {
+
+		MockApiRequest request = MockApiRequest.of(httpMethod.name(), httpServletRequest.getRequestURI(),
+				requestBody);
+
+		Enumeration<String> headerNames = httpServletRequest.getHeaderNames();
+
+		while (headerNames.hasMoreElements()) {
+
+			String headerName = headerNames.nextElement();
+			request.addHeader(headerName, httpServletRequest.getHeader(headerName));
+		}
+
+		for (Entry<String, String[]> parameter : httpServletRequest.getParameterMap().entrySet()) {
+
+			request.addQueryParameter(parameter.getKey(),
+					parameter.getValue().length == 0 ? null : parameter.getValue()[0]);
+		}
+
+		return respond(httpServletRequest, nibletServiceVirtualizationService.processAnyMockRequest(request));
+	}
+
+	/**
+	 * The mock handlers return either the {@link ResponseEntity} itself or, for
+	 * a delayed mock, a {@link DeferredResult} of it, or for a proxied request
+	 * the upstream's pending response. Spring picks the return value handler by
+	 * the runtime type, so an immediate response never pays for an async
+	 * dispatch.
+	 */
+	private Object respond(HttpServletRequest httpServletRequest, MockApiResponse mockApiResponse) {
+
+		if (null != mockApiResponse.getProxiedResponse()) {
+
+			return mockApiResponse.getProxiedResponse();
+		}
+
+		ResponseEntity<?> response = null == mockApiResponse.getBodyFile() ? mockApiResponse.getResponse()
+				: toBodyFileResponse(httpServletRequest, mockApiResponse);
+
+		if (mockApiResponse.getDelayMillis() <= 0) {
+
+			return response;
+		}
 
-		return nibletServiceVirtualizationService.processAnyMockRequest(HttpMethod.OPTIONS.name(),
-				httpServletRequest.getRequestURI(), null, headers, queryParameters);
+		return mockApiResponseScheduler.schedule(response, mockApiResponse.getDelayMillis());
+	}
+
+	/**
+	 * Where the connector supports it, Tomcat is asked to sendfile the body after
+	 * the headers, so the file goes from the page cache to the socket without
+	 * being copied through the heap. Otherwise the file is streamed in small
+	 * buffers.
+	 */
+	private ResponseEntity<?> toBodyFileResponse(HttpServletRequest httpServletRequest,
+			MockApiResponse mockApiResponse) {
+
+		Path bodyFile = mockApiResponse.getBodyFile();
+		long length;
+
+		try {
+
+			length = Files.size(bodyFile);
+
+		} catch (IOException e) {
+
+			log.error("Unable to read response body file {}: {}", bodyFile, e.getMessage());
+
+			return NibletServiceVirtualizationUtils.toResponseEntity("Unable to read response body file.",
+					HttpStatus.INTERNAL_SERVER_ERROR);
+		}
+
+		ResponseEntity.BodyBuilder bodyBuilder = ResponseEntity.status(mockApiResponse.getResponse().getStatusCode())
+				.headers(mockApiResponse.getResponse().getHeaders()).contentLength(length);
+
+		if (Boolean.TRUE.equals(httpServletRequest.getAttribute(SENDFILE_SUPPORTED_ATTRIBUTE))) {
+
+			httpServletRequest.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, bodyFile.toString());
+			httpServletRequest.setAttribute(SENDFILE_START_ATTRIBUTE, 0L);
+			httpServletRequest.setAttribute(SENDFILE_END_ATTRIBUTE, length);
+
+			return bodyBuilder.build();
+		}
+
+		return bodyBuilder.body(new FileSystemResource(bodyFile));
 	}
 
 	@PostMapping(value = "/mock/api")
@@ -113,4 +215,19 @@ public class NibletServiceVirtualizationController {
 		return nibletServiceVirtualizationService.createUpdateMockApiRequest(createUpdateMockApiRequest, id);
 	}
 
+	// one MockApiDefinition per line; the body is read as a stream, not bound
+	@PostMapping(value = "/mock/api/bulk")
+	public ResponseEntity<BulkImportResponse> importMockApis(HttpServletRequest httpServletRequest)
+			throws IOException {
+
+		return mockApiBulkService.importMockApis(httpServletRequest.getInputStream());
+	}
+
+	@GetMapping(value = "/mock/api/bulk")
+	public ResponseEntity<StreamingResponseBody> exportMockApis() {
+
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON)
+				.body(mockApiBulkService::exportMockApis);
+	}
+
 }
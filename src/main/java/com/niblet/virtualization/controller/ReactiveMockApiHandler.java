@@ -0,0 +1,114 @@
+package com.niblet.virtualization.controller;
+
+import java.time.Duration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication.Type;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.niblet.virtualization.contract.CreateUpdateMockApiRequest;
+import com.niblet.virtualization.contract.CreateUpdateResponse;
+import com.niblet.virtualization.model.MockApiResponse;
+import com.niblet.virtualization.service.NibletServiceVirtualizationService;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactive counterpart of {@link NibletServiceVirtualizationController}, used
+ * when {@code spring.main.web-application-type=reactive}. Mock requests are
+ * matched on the event loop, which is safe because the catalog is held in
+ * memory; admin writes touch JDBC, so they run on the bounded elastic
+ * scheduler.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = Type.REACTIVE)
+public class ReactiveMockApiHandler {
+
+	private final NibletServiceVirtualizationService nibletServiceVirtualizationService;
+
+	public Mono<ServerResponse> mockRequest(ServerRequest serverRequest) {
+
+		// the body is only read when the client sent one
+		return serverRequest.bodyToMono(String.class).map(requestBody -> processMockRequest(serverRequest, requestBody))
+				.switchIfEmpty(Mono.fromSupplier(() -> processMockRequest(serverRequest, null)))
+				.flatMap(this::toServerResponse);
+	}
+
+	public Mono<ServerResponse> createNewMockApi(ServerRequest serverRequest) {
+
+		return createUpdateMockApi(serverRequest, null);
+	}
+
+	public Mono<ServerResponse> updateMockApi(ServerRequest serverRequest) {
+
+		return createUpdateMockApi(serverRequest, Long.valueOf(serverRequest.pathVariable("id")));
+	}
+
+	/**
+	 * The bulk endpoints are only served by the servlet front end. Answering them
+	 * here keeps them from being served as mock requests.
+	 */
+	public Mono<ServerResponse> bulkNotSupported(ServerRequest serverRequest) {
+
+		return ServerResponse.status(HttpStatus.NOT_IMPLEMENTED).contentType(MediaType.TEXT_PLAIN)
+				.bodyValue("Bulk import and export are only served by the servlet front end.");
+	}
+
+	private MockApiResponse processMockRequest(ServerRequest serverRequest, String requestBody) {
+
+		return nibletServiceVirtualizationService.processAnyMockRequest(serverRequest.method().name(),
+				serverRequest.path(), requestBody, serverRequest.headers().asHttpHeaders().toSingleValueMap(),
+				serverRequest.queryParams().toSingleValueMap());
+	}
+
+	private Mono<ServerResponse> toServerResponse(MockApiResponse mockApiResponse) {
+
+		if (null != mockApiResponse.getProxiedResponse()) {
+
+			return Mono.fromFuture(mockApiResponse.getProxiedResponse())
+					.flatMap(response -> toServerResponse(MockApiResponse.immediate(response)));
+		}
+
+		ResponseEntity<byte[]> response = mockApiResponse.getResponse();
+		ServerResponse.BodyBuilder bodyBuilder = ServerResponse.status(response.getStatusCode())
+				.headers(headers -> headers.addAll(response.getHeaders()));
+
+		Mono<ServerResponse> serverResponse;
+
+		if (null != mockApiResponse.getBodyFile()) {
+			// written with zero-copy file transfer on Netty
+			serverResponse = bodyBuilder.bodyValue(new FileSystemResource(mockApiResponse.getBodyFile()));
+		} else if (null != response.getBody()) {
+			serverResponse = bodyBuilder.bodyValue(response.getBody());
+		} else {
+			serverResponse = bodyBuilder.build();
+		}
+
+		// a timer on the event loop, rather than a thread held per delayed response
+		return mockApiResponse.getDelayMillis() <= 0 ? serverResponse
+				: serverResponse.delaySubscription(Duration.ofMillis(mockApiResponse.getDelayMillis()));
+	}
+
+	private Mono<ServerResponse> createUpdateMockApi(ServerRequest serverRequest, Long id) {
+
+		return serverRequest.bodyToMono(CreateUpdateMockApiRequest.class).publishOn(Schedulers.boundedElastic())
+				.map(createUpdateMockApiRequest -> nibletServiceVirtualizationService
+						.createUpdateMockApiRequest(createUpdateMockApiRequest, id))
+				.flatMap(this::toAdminServerResponse);
+	}
+
+	private Mono<ServerResponse> toAdminServerResponse(ResponseEntity<CreateUpdateResponse> response) {
+
+		return ServerResponse.status(response.getStatusCode()).bodyValue(response.getBody());
+	}
+
+}
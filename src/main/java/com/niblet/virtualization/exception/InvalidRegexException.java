@@ -0,0 +1,11 @@
+package com.niblet.virtualization.exception;
+
+public class InvalidRegexException extends Exception {
+
+	private static final long serialVersionUID = 3958610427718243561L;
+
+	public InvalidRegexException(String msg) {
+		super(msg);
+	}
+
+}
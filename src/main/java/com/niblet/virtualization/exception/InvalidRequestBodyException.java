@@ -0,0 +1,11 @@
+package com.niblet.virtualization.exception;
+
+public class InvalidRequestBodyException extends Exception {
+
+	private static final long serialVersionUID = 6021874933217645190L;
+
+	public InvalidRequestBodyException(String msg) {
+		super(msg);
+	}
+
+}
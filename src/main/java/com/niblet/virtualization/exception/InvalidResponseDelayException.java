@@ -0,0 +1,11 @@
+package com.niblet.virtualization.exception;
+
+public class InvalidResponseDelayException extends Exception {
+
+	private static final long serialVersionUID = -4390281557622917045L;
+
+	public InvalidResponseDelayException(String msg) {
+		super(msg);
+	}
+
+}
@@ -1,8 +1,14 @@
 package com.niblet.virtualization.jpa.entity;
 
+import com.niblet.virtualization.util.MockApiFingerprint;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
 import lombok.Generated;
 import lombok.Getter;
@@ -18,6 +24,7 @@ import lombok.ToString;
 public class MockApiRequestResponseEntity {
 
 	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	@Column(name = "ID")
 	private Long id;
 
@@ -33,10 +40,41 @@ public class MockApiRequestResponseEntity {
 	@Column(name = "REQUEST_QUERY_PARAMETERS")
 	private String requestQueryParameters;
 
-	@Column(name = "IRESPONSE_BODYD")
+	@Column(name = "REQUEST_BODY")
+	private String requestBody;
+
+	@Column(name = "RESPONSE_BODY")
 	private String responseBody;
 
+	@Column(name = "RESPONSE_BODY_FILE")
+	private String responseBodyFile;
+
 	@Column(name = "RESPONSE_STATUS")
 	private String responseStatus;
 
+	@Column(name = "DELAY_MODE")
+	private String delayMode;
+
+	@Column(name = "DELAY_MILLIS")
+	private Long delayMillis;
+
+	@Column(name = "DELAY_UPPER_MILLIS")
+	private Long delayUpperMillis;
+
+	// keep rendered response bodies ready in the background; off when NULL
+	@Column(name = "PREGENERATE_RESPONSES")
+	private Boolean pregenerateResponses;
+
+	// unique, so the DB rejects a second mock with the same match definition
+	@Column(name = "MATCH_FINGERPRINT")
+	private String matchFingerprint;
+
+	@PrePersist
+	@PreUpdate
+	public void updateMatchFingerprint() {
+
+		matchFingerprint = MockApiFingerprint.of(requestVerb, apiPath, requestHeaders, requestQueryParameters,
+				requestBody);
+	}
+
 }
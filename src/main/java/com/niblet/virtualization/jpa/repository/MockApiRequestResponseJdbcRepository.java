@@ -0,0 +1,139 @@
+package com.niblet.virtualization.jpa.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+import com.niblet.virtualization.util.MockApiFingerprint;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Plain JDBC batch writes to MOCK_API_REQUEST_RESPONSE, for loading many mocks
+ * at once without a JPA round trip per row.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MockApiRequestResponseJdbcRepository {
+
+	private static final String DELETE_ALL = "DELETE FROM MOCK_API_REQUEST_RESPONSE";
+
+	private static final String SELECT_ALL = "SELECT ID, API_PATH, REQUEST_VERB, REQUEST_HEADERS, "
+			+ "REQUEST_QUERY_PARAMETERS, REQUEST_BODY, RESPONSE_BODY, RESPONSE_BODY_FILE, RESPONSE_STATUS, "
+			+ "DELAY_MODE, DELAY_MILLIS, DELAY_UPPER_MILLIS, PREGENERATE_RESPONSES, MATCH_FINGERPRINT "
+			+ "FROM MOCK_API_REQUEST_RESPONSE ORDER BY ID";
+
+	private static final String INSERT = "INSERT INTO MOCK_API_REQUEST_RESPONSE (API_PATH, REQUEST_VERB, "
+			+ "REQUEST_HEADERS, REQUEST_QUERY_PARAMETERS, REQUEST_BODY, RESPONSE_BODY, RESPONSE_BODY_FILE, "
+			+ "RESPONSE_STATUS, DELAY_MODE, DELAY_MILLIS, DELAY_UPPER_MILLIS, PREGENERATE_RESPONSES, "
+			+ "MATCH_FINGERPRINT) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private static final String INSERT_WITH_ID = "INSERT INTO MOCK_API_REQUEST_RESPONSE (ID, API_PATH, REQUEST_VERB, "
+			+ "REQUEST_HEADERS, REQUEST_QUERY_PARAMETERS, REQUEST_BODY, RESPONSE_BODY, RESPONSE_BODY_FILE, "
+			+ "RESPONSE_STATUS, DELAY_MODE, DELAY_MILLIS, DELAY_UPPER_MILLIS, PREGENERATE_RESPONSES, "
+			+ "MATCH_FINGERPRINT) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private static final String RESTART_ID = "ALTER TABLE MOCK_API_REQUEST_RESPONSE ALTER COLUMN ID RESTART WITH ";
+
+	public static final int BATCH_SIZE = 1000;
+
+	// rows fetched per round trip while streaming
+	private static final int FETCH_SIZE = 500;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Replaces every row with {@code entities}, keeping their IDs, and moves the
+	 * ID sequence past the highest one.
+	 */
+	@Transactional
+	public void replaceAll(List<MockApiRequestResponseEntity> entities) {
+
+		jdbcTemplate.update(DELETE_ALL);
+		jdbcTemplate.batchUpdate(INSERT_WITH_ID, entities, BATCH_SIZE, (ps, entity) -> {
+
+			ps.setLong(1, entity.getId());
+			setColumns(ps, 2, entity);
+		});
+
+		long nextId = entities.stream().mapToLong(MockApiRequestResponseEntity::getId).max().orElse(0L) + 1;
+		jdbcTemplate.execute(RESTART_ID + nextId);
+	}
+
+	/**
+	 * Inserts {@code entities} in JDBC batches, with generated IDs. Joins the
+	 * caller's transaction.
+	 */
+	public void insertAll(List<MockApiRequestResponseEntity> entities) {
+
+		jdbcTemplate.batchUpdate(INSERT, entities, BATCH_SIZE, (ps, entity) -> setColumns(ps, 1, entity));
+	}
+
+	/**
+	 * Streams every row, in ID order, without loading the table into memory.
+	 */
+	public void forEach(Consumer<MockApiRequestResponseEntity> action) {
+
+		jdbcTemplate.query(connection -> {
+
+			PreparedStatement ps = connection.prepareStatement(SELECT_ALL);
+			ps.setFetchSize(FETCH_SIZE);
+
+			return ps;
+
+		}, (RowCallbackHandler) rs -> action.accept(mapRow(rs)));
+	}
+
+	private static MockApiRequestResponseEntity mapRow(ResultSet rs) throws SQLException {
+
+		MockApiRequestResponseEntity entity = new MockApiRequestResponseEntity();
+		entity.setId(rs.getLong("ID"));
+		entity.setApiPath(rs.getString("API_PATH"));
+		entity.setRequestVerb(rs.getString("REQUEST_VERB"));
+		entity.setRequestHeaders(rs.getString("REQUEST_HEADERS"));
+		entity.setRequestQueryParameters(rs.getString("REQUEST_QUERY_PARAMETERS"));
+		entity.setRequestBody(rs.getString("REQUEST_BODY"));
+		entity.setResponseBody(rs.getString("RESPONSE_BODY"));
+		entity.setResponseBodyFile(rs.getString("RESPONSE_BODY_FILE"));
+		entity.setResponseStatus(rs.getString("RESPONSE_STATUS"));
+		entity.setDelayMode(rs.getString("DELAY_MODE"));
+		entity.setDelayMillis(rs.getObject("DELAY_MILLIS", Long.class));
+		entity.setDelayUpperMillis(rs.getObject("DELAY_UPPER_MILLIS", Long.class));
+		entity.setPregenerateResponses(rs.getObject("PREGENERATE_RESPONSES", Boolean.class));
+		entity.setMatchFingerprint(rs.getString("MATCH_FINGERPRINT"));
+
+		return entity;
+	}
+
+	/**
+	 * Sets every column after ID, starting at {@code index}.
+	 */
+	private static void setColumns(PreparedStatement ps, int index, MockApiRequestResponseEntity entity)
+			throws SQLException {
+
+		ps.setString(index, entity.getApiPath());
+		ps.setString(index + 1, entity.getRequestVerb());
+		ps.setString(index + 2, entity.getRequestHeaders());
+		ps.setString(index + 3, entity.getRequestQueryParameters());
+		ps.setString(index + 4, entity.getRequestBody());
+		ps.setString(index + 5, entity.getResponseBody());
+		ps.setString(index + 6, entity.getResponseBodyFile());
+		ps.setString(index + 7, entity.getResponseStatus());
+		ps.setString(index + 8, entity.getDelayMode());
+		ps.setObject(index + 9, entity.getDelayMillis(), Types.BIGINT);
+		ps.setObject(index + 10, entity.getDelayUpperMillis(), Types.BIGINT);
+		ps.setObject(index + 11, entity.getPregenerateResponses(), Types.BOOLEAN);
+		ps.setString(index + 12, MockApiFingerprint.of(entity.getRequestVerb(), entity.getApiPath(),
+				entity.getRequestHeaders(), entity.getRequestQueryParameters(), entity.getRequestBody()));
+	}
+
+}
@@ -12,7 +12,4 @@ public interface MockApiRequestResponseJpaRepository extends JpaRepository<MockA
 
 	public Optional<MockApiRequestResponseEntity> findById(Long id);
 
-	public MockApiRequestResponseEntity findByApiPathAndRequestVerbAndRequestHeadersAndRequestQueryParameters(
-			String apiPath, String requestVerb, String requestHeaders, String requestQueryParameters);
-
 }
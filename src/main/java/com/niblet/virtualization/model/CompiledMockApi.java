@@ -0,0 +1,217 @@
+package com.niblet.virtualization.model;
+
+import java.nio.file.Path;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+
+import com.niblet.virtualization.exception.InvalidRegexException;
+import com.niblet.virtualization.exception.InvalidResponseBodyException;
+import com.niblet.virtualization.exception.InvalidResponseDelayException;
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+import com.niblet.virtualization.model.KeyValueConstraints.VariableType;
+import com.niblet.virtualization.util.NibletServiceVirtualizationUtils;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Immutable, pre-compiled view of a single mock definition. The patterns stored
+ * in the DB are compiled once, when the mock is loaded or saved, instead of on
+ * every incoming request. API_PATH is routed by {@link MockApiPathTrie},
+ * headers and query parameters are parsed into {@link KeyValueConstraints},
+ * REQUEST_BODY into {@link RequestBodyConstraints}, and RESPONSE_BODY is
+ * compiled into a {@link ResponseTemplate}. The DELAY_*
+ * columns become a {@link DelayDistribution}. A mock that opted in to
+ * pre-generation also gets {@link PregeneratedResponses}, carried over from its
+ * previous compiled form when its body and status are unchanged, so rebuilding
+ * the catalog doesn't throw away responses already rendered. A body without
+ * generator tokens is rendered, encoded and wrapped in its response here, and
+ * since a mock is recompiled whenever it is saved, that response is never
+ * stale. A RESPONSE_BODY_FILE is never loaded; it is resolved to its real path
+ * inside the body file directory, its status and content type are prepared,
+ * and the front end streams the file.
+ */
+@Getter
+@ToString
+public class CompiledMockApi {
+
+	private final MockApiRequestResponseEntity entity;
+
+	private final String requestVerb;
+	// null when the DB column is NULL
+	private final KeyValueConstraints requestHeaderConstraints;
+	private final KeyValueConstraints requestQueryParameterConstraints;
+	// null when any request body matches
+	private final RequestBodyConstraints requestBodyConstraints;
+
+	// null when there is no response body
+	private final ResponseTemplate responseTemplate;
+	// set instead of the template when the DB value has invalid generation syntax
+	private final String responseTemplateError;
+
+	private final HttpStatus responseStatus;
+	// pre-rendered response, set only when the body has no generator tokens, or
+	// without a body when the body is streamed from responseBodyFile
+	private final ResponseEntity<byte[]> staticResponse;
+	private final Path responseBodyFile;
+
+	// null when the mock responds immediately
+	private final DelayDistribution delayDistribution;
+
+	// set only when the mock opted in and its body has generator tokens
+	private final PregeneratedResponses pregeneratedResponses;
+
+	/**
+	 * @param pregenerationQueueDepth responses kept ready when the mock opted in
+	 *                                to pre-generation; 0 to never keep any
+	 */
+	public CompiledMockApi(MockApiRequestResponseEntity entity, String bodyFileDirectory,
+			int pregenerationQueueDepth) {
+
+		this(entity, bodyFileDirectory, pregenerationQueueDepth, null);
+	}
+
+	/**
+	 * @param previous the same mock compiled before it was reloaded or saved
+	 *                 again, or null
+	 */
+	public CompiledMockApi(MockApiRequestResponseEntity entity, String bodyFileDirectory,
+			int pregenerationQueueDepth, CompiledMockApi previous) {
+
+		this.entity = entity;
+		this.requestVerb = entity.getRequestVerb();
+		// the trie compiles the path regexes, but only once the mock is accepted
+		MockApiPathTrie.checkSectionRegexes(entity.getApiPath());
+		this.requestHeaderConstraints = parseNullable(entity.getRequestHeaders(), VariableType.HEADER);
+		this.requestQueryParameterConstraints = parseNullable(entity.getRequestQueryParameters(),
+				VariableType.QUERY);
+		this.requestBodyConstraints = RequestBodyConstraints.parse(entity.getRequestBody());
+
+		ResponseTemplate compiledResponseTemplate = null;
+		String compiledResponseTemplateError = null;
+
+		if (null != entity.getResponseBody()) {
+
+			try {
+
+				compiledResponseTemplate = ResponseTemplate.compile(entity.getResponseBody());
+
+			} catch (InvalidResponseBodyException e) {
+
+				compiledResponseTemplateError = e.getMessage();
+			}
+		}
+
+		this.responseTemplate = compiledResponseTemplate;
+		this.responseTemplateError = compiledResponseTemplateError;
+
+		this.responseStatus = HttpStatus.valueOf(Integer.parseInt(entity.getResponseStatus()));
+
+		if (null != entity.getResponseBodyFile()) {
+
+			try {
+
+				this.responseBodyFile = NibletServiceVirtualizationUtils.resolveBodyFile(bodyFileDirectory,
+						entity.getResponseBodyFile());
+
+			} catch (InvalidResponseBodyException e) {
+
+				throw new IllegalArgumentException(e.getMessage(), e);
+			}
+
+			this.staticResponse = ResponseEntity.status(responseStatus)
+					.contentType(MediaTypeFactory.getMediaType(responseBodyFile.getFileName().toString())
+							.orElse(MediaType.APPLICATION_OCTET_STREAM))
+					.build();
+
+		} else if (null == compiledResponseTemplateError
+				&& (null == compiledResponseTemplate || compiledResponseTemplate.isStatic())) {
+
+			this.responseBodyFile = null;
+
+			this.staticResponse = NibletServiceVirtualizationUtils.toResponseEntity(entity.getResponseBody(),
+					responseStatus);
+
+		} else {
+
+			this.responseBodyFile = null;
+			this.staticResponse = null;
+		}
+
+		try {
+
+			this.delayDistribution = DelayDistribution.of(entity.getDelayMode(), entity.getDelayMillis(),
+					entity.getDelayUpperMillis());
+
+		} catch (InvalidResponseDelayException e) {
+
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+
+		boolean pregenerate = Boolean.TRUE.equals(entity.getPregenerateResponses()) && pregenerationQueueDepth > 0
+				&& null == staticResponse && null != responseTemplate;
+		if (!pregenerate) {
+
+			this.pregeneratedResponses = null;
+
+		} else if (null != previous && null != previous.pregeneratedResponses
+				&& responseStatus == previous.responseStatus
+				&& entity.getResponseBody().equals(previous.entity.getResponseBody())) {
+
+			this.pregeneratedResponses = previous.pregeneratedResponses;
+
+		} else {
+
+			this.pregeneratedResponses = new PregeneratedResponses(responseTemplate, responseStatus,
+					pregenerationQueueDepth);
+		}
+	}
+
+	/**
+	 * Matches the request's query parameters and headers against this mock's
+	 * constraints, adding their match-type counts to {@code mockApiMatchData}.
+	 */
+	public boolean matchHeadersAndQueryParameters(MockApiRequest request, MockApiMatchData mockApiMatchData) {
+
+		return null != requestHeaderConstraints && null != requestQueryParameterConstraints
+				&& requestQueryParameterConstraints.match(request, mockApiMatchData)
+				&& requestHeaderConstraints.match(request, mockApiMatchData);
+	}
+
+	/**
+	 * Checks every custom regex of the mock against {@link RegexGuard}, as saving
+	 * a mock through the API does.
+	 *
+	 * @throws InvalidRegexException when one doesn't compile, or can backtrack
+	 *                               catastrophically
+	 */
+	public void validateCustomRegexes() throws InvalidRegexException {
+
+		MockApiPathTrie.validateCustomRegexes(entity.getApiPath());
+
+		if (null != requestHeaderConstraints) {
+
+			requestHeaderConstraints.validateCustomRegexes();
+		}
+
+		if (null != requestQueryParameterConstraints) {
+
+			requestQueryParameterConstraints.validateCustomRegexes();
+		}
+
+		if (null != requestBodyConstraints) {
+
+			requestBodyConstraints.validateCustomRegexes();
+		}
+	}
+
+	// a NULL column never matched in SQL, so a null constraint never matches here
+	private static KeyValueConstraints parseNullable(String stored, VariableType variableType) {
+
+		return null == stored ? null : KeyValueConstraints.parse(stored, variableType);
+	}
+
+}
@@ -0,0 +1,120 @@
+package com.niblet.virtualization.model;
+
+import java.util.random.RandomGenerator;
+
+import com.niblet.virtualization.contract.DelayModeEnum;
+import com.niblet.virtualization.exception.InvalidResponseDelayException;
+
+/**
+ * A mock's response delay, validated once so a delay can be sampled per
+ * request without re-checking its settings.
+ */
+public class DelayDistribution {
+
+	public static final long MAX_DELAY_MILLIS = 300_000L;
+
+	// standard normal quantile of the 99th percentile
+	private static final double Z_99 = 2.3263478740408408;
+
+	private final DelayModeEnum mode;
+	private final long delayMillis;
+	private final long delayUpperMillis;
+
+	// log-normal parameters, only used by PERCENTILE
+	private final double mu;
+	private final double sigma;
+
+	private DelayDistribution(DelayModeEnum mode, long delayMillis, long delayUpperMillis) {
+
+		this.mode = mode;
+		this.delayMillis = delayMillis;
+		this.delayUpperMillis = delayUpperMillis;
+
+		if (DelayModeEnum.PERCENTILE == mode) {
+
+			// the median of a log-normal is e^mu, and its p99 is e^(mu + Z_99 * sigma)
+			this.mu = Math.log(delayMillis);
+			this.sigma = (Math.log(delayUpperMillis) - mu) / Z_99;
+
+		} else {
+
+			this.mu = 0;
+			this.sigma = 0;
+		}
+	}
+
+	/**
+	 * @return null when there is no delay
+	 * @throws InvalidResponseDelayException when the settings are missing or out
+	 *                                       of range for the mode
+	 */
+	public static DelayDistribution of(DelayModeEnum mode, Long delayMillis, Long delayUpperMillis)
+			throws InvalidResponseDelayException {
+
+		if (null == mode) {
+
+			return null;
+		}
+
+		if (null == delayMillis || delayMillis < 0 || delayMillis > MAX_DELAY_MILLIS) {
+
+			throw new InvalidResponseDelayException(
+					"delayMillis (" + delayMillis + ") must be between 0 and " + MAX_DELAY_MILLIS + " for " + mode + ".");
+		}
+
+		if (DelayModeEnum.FIXED == mode) {
+
+			return new DelayDistribution(mode, delayMillis, delayMillis);
+		}
+
+		if (null == delayUpperMillis || delayUpperMillis < delayMillis || delayUpperMillis > MAX_DELAY_MILLIS) {
+
+			throw new InvalidResponseDelayException("delayUpperMillis (" + delayUpperMillis
+					+ ") must be between delayMillis (" + delayMillis + ") and " + MAX_DELAY_MILLIS + " for " + mode
+					+ ".");
+		}
+
+		if (DelayModeEnum.PERCENTILE == mode && delayMillis < 1) {
+
+			throw new InvalidResponseDelayException("delayMillis (p50) must be greater than 0 for " + mode + ".");
+		}
+
+		return new DelayDistribution(mode, delayMillis, delayUpperMillis);
+	}
+
+	public static DelayDistribution of(String mode, Long delayMillis, Long delayUpperMillis)
+			throws InvalidResponseDelayException {
+
+		if (null == mode) {
+
+			return null;
+		}
+
+		DelayModeEnum delayMode;
+
+		try {
+
+			delayMode = DelayModeEnum.valueOf(mode);
+
+		} catch (IllegalArgumentException e) {
+
+			throw new InvalidResponseDelayException("Unknown delay mode: " + mode);
+		}
+
+		return of(delayMode, delayMillis, delayUpperMillis);
+	}
+
+	public long sampleMillis(RandomGenerator random) {
+
+		switch (mode) {
+		case UNIFORM:
+			return random.nextLong(delayMillis, delayUpperMillis + 1);
+		case PERCENTILE:
+			// clamp the long tail so one unlucky sample can't hold a request open
+			return Math.min(MAX_DELAY_MILLIS, Math.round(Math.exp(mu + sigma * random.nextGaussian())));
+		default:
+			return delayMillis;
+		}
+	}
+
+}
@@ -0,0 +1,302 @@
+package com.niblet.virtualization.model;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.niblet.virtualization.exception.InvalidRegexException;
+
+/**
+ * The header or query parameter constraints of a single mock, held as one
+ * matcher per key. The stored form is still the
+ * {@code ^(a|[^a])*\<key=regex\>(a|[^a])*$} string, but it is parsed once, so
+ * a request is matched with direct key lookups instead of running that regex
+ * over a sorted, concatenated string of every request value. Keys and matchers
+ * are held in parallel arrays, so matching walks them without an iterator.
+ */
+public class KeyValueConstraints {
+
+	public static final String ANY_MATCH = ".*";
+
+	public static final String EXISTS_REGEX = "";
+	public static final String WILD_CARD_REGEX = ".+";
+	public static final String DIGITS_REGEX = "\\d+";
+	public static final String ALPHA_NUMERIC_REGEX = "[a-zA-Z0-9_]+";
+
+	private static final String ANY_CHARACTERS = "(a|[^a])*";
+	private static final String KEY_VALUE_START = "\\<";
+	private static final String KEY_VALUE_END = "\\>";
+
+	public enum VariableType {
+
+		QUERY(MatchCategory.QUERY_EXACT, MatchCategory.QUERY_CUSTOM, MatchCategory.QUERY_DIGIT,
+				MatchCategory.QUERY_ALPHA_NUMERIC, MatchCategory.QUERY_WILD_CARD, MatchCategory.QUERY_EXISTS),
+
+		HEADER(MatchCategory.HEADER_EXACT, MatchCategory.HEADER_CUSTOM, MatchCategory.HEADER_DIGIT,
+				MatchCategory.HEADER_ALPHA_NUMERIC, MatchCategory.HEADER_WILD_CARD, MatchCategory.HEADER_EXISTS);
+
+		private final MatchCategory exact;
+		private final MatchCategory custom;
+		private final MatchCategory digit;
+		private final MatchCategory alphaNumeric;
+		private final MatchCategory wildCard;
+		private final MatchCategory exists;
+
+		private VariableType(MatchCategory exact, MatchCategory custom, MatchCategory digit,
+				MatchCategory alphaNumeric, MatchCategory wildCard, MatchCategory exists) {
+
+			this.exact = exact;
+			this.custom = custom;
+			this.digit = digit;
+			this.alphaNumeric = alphaNumeric;
+			this.wildCard = wildCard;
+			this.exists = exists;
+		}
+
+		/**
+		 * Header names are case-insensitive, so they are compared in lower case.
+		 */
+		public String normalizeKey(String key) {
+
+			return this == HEADER ? key.toLowerCase(Locale.ROOT) : key;
+		}
+	}
+
+	private final VariableType variableType;
+	// normalized keys, and the matcher for each
+	private final String[] keys;
+	private final ValueMatcher[] matchers;
+
+	private KeyValueConstraints(VariableType variableType, Map<String, ValueMatcher> matchersByKey) {
+
+		this.variableType = variableType;
+		this.keys = matchersByKey.keySet().toArray(new String[0]);
+		this.matchers = matchersByKey.values().toArray(new ValueMatcher[0]);
+	}
+
+	/**
+	 * @param stored the REQUEST_HEADERS or REQUEST_QUERY_PARAMETERS column value
+	 * @throws IllegalArgumentException when the value is not in the stored
+	 *                                  constraint format
+	 */
+	public static KeyValueConstraints parse(String stored, VariableType variableType) {
+
+		Map<String, ValueMatcher> matchersByKey = new LinkedHashMap<>();
+
+		if (StringUtils.isBlank(stored) || ANY_MATCH.equals(stored)) {
+
+			return new KeyValueConstraints(variableType, matchersByKey);
+		}
+
+		if (!stored.startsWith("^" + ANY_CHARACTERS) || !stored.endsWith(ANY_CHARACTERS + "$")) {
+
+			throw new IllegalArgumentException("Unrecognized " + variableType + " constraints: " + stored);
+		}
+
+		// remove "^(a|[^a])*" from start and "(a|[^a])*$" from end
+		String keyValuesString = stored.substring(ANY_CHARACTERS.length() + 1,
+				stored.length() - ANY_CHARACTERS.length() - 1);
+
+		for (String keyValueStr : StringUtils.splitByWholeSeparator(keyValuesString, ANY_CHARACTERS)) {
+
+			if (!keyValueStr.startsWith(KEY_VALUE_START) || !keyValueStr.endsWith(KEY_VALUE_END)
+					|| !keyValueStr.contains("=")) {
+
+				throw new IllegalArgumentException("Unrecognized " + variableType + " constraint: " + keyValueStr);
+			}
+
+			// remove "\<" from start and "\>" from end of key/value pair string
+			keyValueStr = keyValueStr.substring(KEY_VALUE_START.length(),
+					keyValueStr.length() - KEY_VALUE_END.length());
+
+			int separatorIndex = keyValueStr.indexOf('=');
+			String key = variableType.normalizeKey(keyValueStr.substring(0, separatorIndex));
+			String valueRegex = keyValueStr.substring(separatorIndex + 1);
+
+			matchersByKey.put(key, new ValueMatcher(valueRegex, variableType));
+		}
+
+		return new KeyValueConstraints(variableType, matchersByKey);
+	}
+
+	/**
+	 * Inverse of {@link #parse(String, VariableType)}. Keys are sorted, matching
+	 * the alphabetized form the stored pattern has always been written against.
+	 */
+	public static String toStoredString(SortedMap<String, String> valueRegexesByKey) {
+
+		if (valueRegexesByKey.isEmpty()) {
+
+			return ANY_MATCH;
+		}
+
+		StringBuilder stored = new StringBuilder("^").append(ANY_CHARACTERS);
+
+		for (Entry<String, String> keyValue : valueRegexesByKey.entrySet()) {
+
+			stored.append(KEY_VALUE_START).append(keyValue.getKey()).append('=').append(keyValue.getValue())
+					.append(KEY_VALUE_END).append(ANY_CHARACTERS);
+		}
+
+		return stored.append('$').toString();
+	}
+
+	/**
+	 * Checks every custom regex against {@link RegexGuard}.
+	 *
+	 * @throws InvalidRegexException when one can backtrack catastrophically
+	 */
+	public void validateCustomRegexes() throws InvalidRegexException {
+
+		for (ValueMatcher matcher : matchers) {
+
+			if (null != matcher.customPattern) {
+
+				RegexGuard.validate(matcher.valueRegex);
+			}
+		}
+	}
+
+	/**
+	 * Looks up each constrained key in the request's headers or query parameters
+	 * and records the match type of every matching value.
+	 *
+	 * @return false as soon as one constraint is not satisfied
+	 */
+	public boolean match(MockApiRequest request, MockApiMatchData mockApiMatchData) {
+
+		for (int i = 0; i < keys.length; i++) {
+
+			String requestValue = VariableType.HEADER == variableType ? request.getHeader(keys[i])
+					: request.getQueryParameter(keys[i]);
+			MatchCategory matchCategory = matchers[i].match(requestValue, request);
+
+			if (null == matchCategory) {
+
+				return false;
+			}
+
+			mockApiMatchData.increment(matchCategory);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks a value against {@link #DIGITS_REGEX} or
+	 * {@link #ALPHA_NUMERIC_REGEX} without running a regex.
+	 */
+	static boolean isNonEmptyAndAll(String value, boolean alphaNumeric) {
+
+		return isNonEmptyAndAll(value, 0, value.length(), alphaNumeric);
+	}
+
+	/**
+	 * {@link #isNonEmptyAndAll(String, boolean)} over {@code start} to
+	 * {@code end} of the text, without copying it out.
+	 */
+	static boolean isNonEmptyAndAll(CharSequence text, int start, int end, boolean alphaNumeric) {
+
+		if (start == end) {
+
+			return false;
+		}
+
+		for (int i = start; i < end; i++) {
+
+			char c = text.charAt(i);
+			boolean valid = (c >= '0' && c <= '9')
+					|| (alphaNumeric && ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_'));
+
+			if (!valid) {
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static class ValueMatcher {
+
+		private final String valueRegex;
+		private final MatchCategory exactCategory;
+		private final MatchCategory regexCategory;
+		// only set for custom regexes; the built in types are checked directly
+		private final Pattern customPattern;
+		// set when the stored regex is a quoted literal
+		private final String exactValue;
+
+		private ValueMatcher(String valueRegex, VariableType variableType) {
+
+			this.valueRegex = valueRegex;
+			this.exactCategory = variableType.exact;
+
+			Pattern pattern = null;
+			String literal = null;
+
+			if (EXISTS_REGEX.equals(valueRegex)) {
+				regexCategory = variableType.exists;
+			} else if (WILD_CARD_REGEX.equals(valueRegex)) {
+				regexCategory = variableType.wildCard;
+			} else if (DIGITS_REGEX.equals(valueRegex)) {
+				regexCategory = variableType.digit;
+			} else if (ALPHA_NUMERIC_REGEX.equals(valueRegex)) {
+				regexCategory = variableType.alphaNumeric;
+			} else if (isQuotedLiteral(valueRegex)) {
+				regexCategory = variableType.exact;
+				literal = valueRegex.substring(2, valueRegex.length() - 2);
+			} else {
+				regexCategory = variableType.custom;
+				pattern = RegexGuard.compile(valueRegex);
+			}
+
+			this.customPattern = pattern;
+			this.exactValue = literal;
+		}
+
+		private MatchCategory match(String requestValue, MockApiRequest request) {
+
+			if (null == requestValue) {
+
+				return null;
+			}
+
+			// an identical value always counts as an exact match
+			if (requestValue.equals(valueRegex) || requestValue.equals(exactValue)) {
+
+				return exactCategory;
+			}
+
+			boolean matches;
+
+			if (regexCategory == exactCategory) {
+				matches = false;
+			} else if (null != customPattern) {
+				matches = RegexGuard.matches(customPattern, requestValue, request);
+			} else if (DIGITS_REGEX.equals(valueRegex)) {
+				matches = isNonEmptyAndAll(requestValue, false);
+			} else if (ALPHA_NUMERIC_REGEX.equals(valueRegex)) {
+				matches = isNonEmptyAndAll(requestValue, true);
+			} else if (WILD_CARD_REGEX.equals(valueRegex)) {
+				matches = !requestValue.isEmpty();
+			} else { // exists
+				matches = true;
+			}
+
+			return matches ? regexCategory : null;
+		}
+
+		private static boolean isQuotedLiteral(String valueRegex) {
+
+			return valueRegex.length() >= 4 && valueRegex.startsWith("\\Q") && valueRegex.endsWith("\\E")
+					&& valueRegex.indexOf("\\E") == valueRegex.length() - 2;
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+package com.niblet.virtualization.model;
+
+/**
+ * Every kind of count tracked in {@link MockApiMatchData}, declared from the
+ * highest priority to the lowest.
+ * <p>
+ * Priority order of match type: Exact, Custom Regex, Digit, AlphaNumeric, ANY,
+ * Exists. Priority order of variable type: Path, Query, Header, then Body.
+ * Match type takes priority over variable type.
+ * <p>
+ * Each category owns a fixed-width bit field in a packed {@code long} score,
+ * laid out so that comparing two scores as numbers compares their counts in
+ * this order. Path sections are the most numerous, so path fields are wider.
+ */
+public enum MatchCategory {
+
+	PATH_EXACT(3),
+	QUERY_EXACT(2),
+	HEADER_EXACT(2),
+	BODY_EXACT(2),
+
+	PATH_CUSTOM(3),
+	QUERY_CUSTOM(2),
+	HEADER_CUSTOM(2),
+	BODY_CUSTOM(2),
+
+	PATH_DIGIT(3),
+	QUERY_DIGIT(2),
+	HEADER_DIGIT(2),
+	BODY_DIGIT(2),
+
+	PATH_ALPHA_NUMERIC(3),
+	QUERY_ALPHA_NUMERIC(2),
+	HEADER_ALPHA_NUMERIC(2),
+	BODY_ALPHA_NUMERIC(2),
+
+	PATH_WILD_CARD(3),
+	QUERY_WILD_CARD(2),
+	HEADER_WILD_CARD(2),
+	BODY_WILD_CARD(2),
+
+	QUERY_EXISTS(2),
+	HEADER_EXISTS(2),
+	BODY_EXISTS(2);
+
+	private static final MatchCategory[] VALUES = values();
+
+	static {
+
+		// the lowest priority category sits in the lowest bits; the sign bit is
+		// never used, so scores compare as signed longs
+		int shift = 0;
+
+		for (int i = VALUES.length - 1; i >= 0; i--) {
+
+			VALUES[i].shift = shift;
+			shift += VALUES[i].bits;
+		}
+
+		if (shift > Long.SIZE - 1) {
+
+			throw new IllegalStateException("MatchCategory fields need " + shift + " bits.");
+		}
+	}
+
+	private final int bits;
+	private final int maxPackedCount;
+	private int shift;
+
+	private MatchCategory(int bits) {
+
+		this.bits = bits;
+		this.maxPackedCount = (1 << bits) - 1;
+	}
+
+	/**
+	 * @return the score with this category's field set to {@code count}, capped
+	 *         at {@link #maxPackedCount()}
+	 */
+	public long pack(long score, int count) {
+
+		return (score & ~((long) maxPackedCount << shift)) | ((long) Math.min(count, maxPackedCount) << shift);
+	}
+
+	/**
+	 * @return the highest count this category's packed field can hold
+	 */
+	public int maxPackedCount() {
+
+		return maxPackedCount;
+	}
+
+	public static int count() {
+
+		return VALUES.length;
+	}
+
+}
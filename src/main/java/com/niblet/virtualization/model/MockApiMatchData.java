@@ -1,32 +1,77 @@
 package com.niblet.virtualization.model;
 
-import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+import java.util.Arrays;
 
-import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
-@Data
+@Getter
+@ToString
 public class MockApiMatchData {
 
-	private MockApiRequestResponseEntity mockApiRequestResponseEntity;
-
-	private int numPathExactMatches;
-	private int numPathCustomMatches;
-	private int numPathDigitMatches;
-	private int numPathAlphaNumericMatches;
-	private int numPathWildCardMatches;
-
-	private int numHeaderExactMatches;
-	private int numHeaderCustomMatches;
-	private int numHeaderDigitMatches;
-	private int numHeaderAlphaNumericMatches;
-	private int numHeaderWildCardMatches;
-	private int numHeaderExistsMatches;
-
-	private int numQueryExactMatches;
-	private int numQueryCustomMatches;
-	private int numQueryDigitMatches;
-	private int numQueryAlphaNumericMatches;
-	private int numQueryWildCardMatches;
-	private int numQueryExistsMatches;
+	@Setter
+	private CompiledMockApi compiledMockApi;
+
+	// indexed by MatchCategory ordinal
+	private final int[] counts = new int[MatchCategory.count()];
+
+	// every count packed in MatchCategory priority order; higher is a closer match
+	private long score;
+
+	// true once any count exceeds the width of its packed field
+	private boolean scoreSaturated;
+
+	/**
+	 * Clears every count, so a {@link MockApiRequest} can reuse this for another
+	 * mock.
+	 */
+	void reset(CompiledMockApi compiledMockApi) {
+
+		this.compiledMockApi = compiledMockApi;
+		Arrays.fill(counts, 0);
+		score = 0L;
+		scoreSaturated = false;
+	}
+
+	public void increment(MatchCategory category) {
+
+		add(category, 1);
+	}
+
+	public void add(MatchCategory category, int count) {
+
+		int newCount = counts[category.ordinal()] += count;
+		score = category.pack(score, newCount);
+		scoreSaturated |= newCount > category.maxPackedCount();
+	}
+
+	public int getCount(MatchCategory category) {
+
+		return counts[category.ordinal()];
+	}
+
+	/**
+	 * @return positive when {@code a} is the closer match, negative when
+	 *         {@code b} is, and 0 when both have the same priority
+	 */
+	public static int comparePriority(MockApiMatchData a, MockApiMatchData b) {
+
+		if (!a.scoreSaturated && !b.scoreSaturated) {
+
+			return Long.compare(a.score, b.score);
+		}
+
+		// a capped field can't be trusted, so fall back to the raw counts
+		for (int i = 0; i < a.counts.length; i++) {
+
+			if (a.counts[i] != b.counts[i]) {
+
+				return Integer.compare(a.counts[i], b.counts[i]);
+			}
+		}
+
+		return 0;
+	}
 
 }
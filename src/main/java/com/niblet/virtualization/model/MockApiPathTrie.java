@@ -0,0 +1,578 @@
+package com.niblet.virtualization.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.niblet.virtualization.exception.InvalidRegexException;
+
+/**
+ * Routes a request path to the mocks whose API_PATH can match it. Literal path
+ * sections become keyed edges and named-group sections such as
+ * {@code (?<id>[^/]+)} become wildcard edges, so a lookup costs the depth of
+ * the path rather than the size of the catalog. The per-type path counts used
+ * for prioritization are collected during the walk. Literal edges are looked
+ * up by the request's segment offsets, and the built in wildcard types are
+ * checked without a regex, so a walk copies no part of the request URI.
+ * <p>
+ * A published trie is never modified: {@link #with} and {@link #without}
+ * return a new trie that copies only the nodes along the changed branch and
+ * shares every other node, and its compiled patterns, with this one.
+ */
+public class MockApiPathTrie {
+
+	public static final String SECTION_SEPARATOR = "///";
+
+	public static final String WILD_CARD_REGEX = "[^/]+";
+	public static final String DIGITS_REGEX = "\\d+";
+	public static final String ALPHA_NUMERIC_REGEX = "[a-zA-Z0-9_]+";
+
+	private static final MatchCategory[] PATH_MATCH_CATEGORIES = { MatchCategory.PATH_EXACT,
+			MatchCategory.PATH_CUSTOM, MatchCategory.PATH_DIGIT, MatchCategory.PATH_ALPHA_NUMERIC,
+			MatchCategory.PATH_WILD_CARD };
+
+	private static final Pattern NAMED_GROUP_SECTION_PATTERN = Pattern.compile("^\\(\\?\\<\\w+\\>(.*)\\)$");
+
+	private static class WildCardEdge {
+
+		private final String regex;
+		private final Pattern pattern;
+		private final MatchCategory matchCategory;
+		private final Node child;
+
+		private WildCardEdge(String regex, Node child) {
+
+			this.regex = regex;
+			this.pattern = RegexGuard.compile(regex);
+			this.child = child;
+
+			if (WILD_CARD_REGEX.equals(regex)) {
+				matchCategory = MatchCategory.PATH_WILD_CARD;
+			} else if (DIGITS_REGEX.equals(regex)) {
+				matchCategory = MatchCategory.PATH_DIGIT;
+			} else if (ALPHA_NUMERIC_REGEX.equals(regex)) {
+				matchCategory = MatchCategory.PATH_ALPHA_NUMERIC;
+			} else {
+				matchCategory = MatchCategory.PATH_CUSTOM;
+			}
+		}
+
+		private WildCardEdge(WildCardEdge edge, Node child) {
+
+			this.regex = edge.regex;
+			this.pattern = edge.pattern;
+			this.matchCategory = edge.matchCategory;
+			this.child = child;
+		}
+	}
+
+	/**
+	 * Open-addressed table of literal edges that can be probed with a region of
+	 * the request URI, where a map would need the region as a string.
+	 */
+	private static class LiteralChildren {
+
+		private String[] keys;
+		private Node[] nodes;
+		private int size;
+
+		private LiteralChildren() {
+		}
+
+		private LiteralChildren(LiteralChildren literalChildren) {
+
+			if (null != literalChildren.keys) {
+
+				keys = literalChildren.keys.clone();
+				nodes = literalChildren.nodes.clone();
+				size = literalChildren.size;
+			}
+		}
+
+		private Node get(String key) {
+
+			return get(key, 0, key.length());
+		}
+
+		private Node get(String text, int start, int end) {
+
+			if (null == keys) {
+
+				return null;
+			}
+
+			int length = end - start;
+
+			for (int i = hash(text, start, end) & (keys.length - 1);; i = (i + 1) & (keys.length - 1)) {
+
+				String key = keys[i];
+
+				if (null == key) {
+
+					return null;
+				}
+
+				if (key.length() == length && key.regionMatches(0, text, start, length)) {
+
+					return nodes[i];
+				}
+			}
+		}
+
+		private void put(String key, Node node) {
+
+			// at most half full, so a probe always reaches an empty slot
+			if (null == keys || (size + 1) * 2 > keys.length) {
+
+				resize(null == keys ? 4 : keys.length * 2);
+			}
+
+			int i = hash(key, 0, key.length()) & (keys.length - 1);
+
+			while (null != keys[i] && !keys[i].equals(key)) {
+
+				i = (i + 1) & (keys.length - 1);
+			}
+
+			if (null == keys[i]) {
+
+				keys[i] = key;
+				size++;
+			}
+
+			nodes[i] = node;
+		}
+
+		// rare, so the table is rebuilt rather than backward-shifted
+		private void remove(String key) {
+
+			if (null == get(key)) {
+
+				return;
+			}
+
+			String[] oldKeys = keys;
+			Node[] oldNodes = nodes;
+			keys = null;
+			nodes = null;
+			size = 0;
+
+			for (int i = 0; i < oldKeys.length; i++) {
+
+				if (null != oldKeys[i] && !oldKeys[i].equals(key)) {
+
+					put(oldKeys[i], oldNodes[i]);
+				}
+			}
+		}
+
+		private void resize(int capacity) {
+
+			String[] oldKeys = keys;
+			Node[] oldNodes = nodes;
+			keys = new String[capacity];
+			nodes = new Node[capacity];
+			size = 0;
+
+			if (null != oldKeys) {
+
+				for (int i = 0; i < oldKeys.length; i++) {
+
+					if (null != oldKeys[i]) {
+
+						put(oldKeys[i], oldNodes[i]);
+					}
+				}
+			}
+		}
+
+		private boolean isEmpty() {
+
+			return 0 == size;
+		}
+
+		// String.hashCode over the region, spread like HashMap's
+		private static int hash(String text, int start, int end) {
+
+			int h = 0;
+
+			for (int i = start; i < end; i++) {
+
+				h = 31 * h + text.charAt(i);
+			}
+
+			return h ^ (h >>> 16);
+		}
+	}
+
+	private static class Node {
+
+		private final LiteralChildren literalChildren;
+		private final List<WildCardEdge> wildCardEdges = new ArrayList<>();
+		private final List<CompiledMockApi> mocks = new ArrayList<>();
+
+		private Node() {
+
+			literalChildren = new LiteralChildren();
+		}
+
+		// a shallow copy, to be changed before it is published
+		private Node(Node node) {
+
+			literalChildren = new LiteralChildren(node.literalChildren);
+			wildCardEdges.addAll(node.wildCardEdges);
+			mocks.addAll(node.mocks);
+		}
+
+		private int indexOfWildCardEdge(String regex) {
+
+			for (int i = 0; i < wildCardEdges.size(); i++) {
+
+				if (wildCardEdges.get(i).regex.equals(regex)) {
+
+					return i;
+				}
+			}
+
+			return -1;
+		}
+
+		private Node wildCardChild(String regex) {
+
+			int index = indexOfWildCardEdge(regex);
+
+			if (index >= 0) {
+
+				return wildCardEdges.get(index).child;
+			}
+
+			WildCardEdge edge = new WildCardEdge(regex, new Node());
+			wildCardEdges.add(edge);
+
+			return edge.child;
+		}
+
+		private boolean isEmpty() {
+
+			return literalChildren.isEmpty() && wildCardEdges.isEmpty() && mocks.isEmpty();
+		}
+	}
+
+	private final Node root;
+
+	public MockApiPathTrie() {
+
+		this(new Node());
+	}
+
+	private MockApiPathTrie(Node root) {
+
+		this.root = root;
+	}
+
+	/**
+	 * Adds a mock in place, so only for building a trie that isn't published
+	 * yet.
+	 */
+	public void insert(CompiledMockApi compiledMockApi) {
+
+		Node node = root;
+
+		for (String section : splitApiPath(compiledMockApi.getEntity().getApiPath())) {
+
+			Matcher sectionMatcher = NAMED_GROUP_SECTION_PATTERN.matcher(section);
+
+			if (sectionMatcher.find()) {
+
+				node = node.wildCardChild(sectionMatcher.group(1));
+
+			} else {
+
+				Node literalChild = node.literalChildren.get(section);
+
+				if (null == literalChild) {
+
+					literalChild = new Node();
+					node.literalChildren.put(section, literalChild);
+				}
+
+				node = literalChild;
+			}
+		}
+
+		node.mocks.add(compiledMockApi);
+	}
+
+	/**
+	 * @return a copy of this trie with the mock added
+	 */
+	public MockApiPathTrie with(CompiledMockApi compiledMockApi) {
+
+		return new MockApiPathTrie(
+				with(root, splitApiPath(compiledMockApi.getEntity().getApiPath()), 0, compiledMockApi));
+	}
+
+	/**
+	 * @param apiPath the API_PATH the mock was inserted with
+	 * @return a copy of this trie without the mock with this ID, or this trie
+	 *         when it doesn't hold it
+	 */
+	public MockApiPathTrie without(String apiPath, Long mockApiId) {
+
+		Node newRoot = without(root, splitApiPath(apiPath), 0, mockApiId);
+
+		if (newRoot == root) {
+
+			return this;
+		}
+
+		return new MockApiPathTrie(null == newRoot ? new Node() : newRoot);
+	}
+
+	/**
+	 * Compiles the regex of every named-group section, as inserting the mock
+	 * would, so a mock with one that doesn't compile is refused before any trie
+	 * is touched.
+	 *
+	 * @throws PatternSyntaxException when one doesn't compile
+	 */
+	public static void checkSectionRegexes(String apiPath) {
+
+		for (String section : splitApiPath(apiPath)) {
+
+			Matcher sectionMatcher = NAMED_GROUP_SECTION_PATTERN.matcher(section);
+
+			if (sectionMatcher.find()) {
+
+				Pattern.compile(sectionMatcher.group(1));
+			}
+		}
+	}
+
+	/**
+	 * Checks the regex of every named-group section against {@link RegexGuard}.
+	 *
+	 * @throws InvalidRegexException when one doesn't compile, or can backtrack
+	 *                               catastrophically
+	 */
+	public static void validateCustomRegexes(String apiPath) throws InvalidRegexException {
+
+		for (String section : splitApiPath(apiPath)) {
+
+			Matcher sectionMatcher = NAMED_GROUP_SECTION_PATTERN.matcher(section);
+
+			if (sectionMatcher.find()) {
+
+				RegexGuard.validate(sectionMatcher.group(1));
+			}
+		}
+	}
+
+	public boolean isEmpty() {
+
+		return root.isEmpty();
+	}
+
+	private static Node with(Node node, String[] sections, int depth, CompiledMockApi compiledMockApi) {
+
+		Node copy = null == node ? new Node() : new Node(node);
+
+		if (depth == sections.length) {
+
+			copy.mocks.add(compiledMockApi);
+			return copy;
+		}
+
+		String section = sections[depth];
+		Matcher sectionMatcher = NAMED_GROUP_SECTION_PATTERN.matcher(section);
+
+		if (sectionMatcher.find()) {
+
+			int index = copy.indexOfWildCardEdge(sectionMatcher.group(1));
+
+			if (index < 0) {
+
+				copy.wildCardEdges.add(new WildCardEdge(sectionMatcher.group(1),
+						with(null, sections, depth + 1, compiledMockApi)));
+
+			} else {
+
+				WildCardEdge edge = copy.wildCardEdges.get(index);
+				copy.wildCardEdges.set(index,
+						new WildCardEdge(edge, with(edge.child, sections, depth + 1, compiledMockApi)));
+			}
+
+		} else {
+
+			copy.literalChildren.put(section,
+					with(copy.literalChildren.get(section), sections, depth + 1, compiledMockApi));
+		}
+
+		return copy;
+	}
+
+	/**
+	 * @return the node unchanged when the mock isn't under it, otherwise a copy
+	 *         without it, or null when that copy would be empty
+	 */
+	private static Node without(Node node, String[] sections, int depth, Long mockApiId) {
+
+		if (null == node) {
+
+			return null;
+		}
+
+		Node copy;
+
+		if (depth == sections.length) {
+
+			copy = new Node(node);
+
+			if (!copy.mocks.removeIf(mock -> mockApiId.equals(mock.getEntity().getId()))) {
+
+				return node;
+			}
+
+		} else {
+
+			String section = sections[depth];
+			Matcher sectionMatcher = NAMED_GROUP_SECTION_PATTERN.matcher(section);
+
+			if (sectionMatcher.find()) {
+
+				int index = node.indexOfWildCardEdge(sectionMatcher.group(1));
+
+				if (index < 0) {
+
+					return node;
+				}
+
+				WildCardEdge edge = node.wildCardEdges.get(index);
+				Node child = without(edge.child, sections, depth + 1, mockApiId);
+
+				if (child == edge.child) {
+
+					return node;
+				}
+
+				copy = new Node(node);
+
+				if (null == child) {
+					copy.wildCardEdges.remove(index);
+				} else {
+					copy.wildCardEdges.set(index, new WildCardEdge(edge, child));
+				}
+
+			} else {
+
+				Node literalChild = node.literalChildren.get(section);
+				Node child = without(literalChild, sections, depth + 1, mockApiId);
+
+				if (child == literalChild) {
+
+					return node;
+				}
+
+				copy = new Node(node);
+
+				if (null == child) {
+					copy.literalChildren.remove(section);
+				} else {
+					copy.literalChildren.put(section, child);
+				}
+			}
+		}
+
+		return copy.isEmpty() ? null : copy;
+	}
+
+	/**
+	 * Adds a {@link MockApiMatchData}, with path counts, to the request's matches
+	 * for every mock whose API_PATH matches the request's canonicalized path.
+	 */
+	public void find(MockApiRequest request) {
+
+		request.clearMatches();
+
+		int[] counts = request.getPathCounts();
+		Arrays.fill(counts, 0);
+		walk(root, request, 0, counts);
+	}
+
+	private void walk(Node node, MockApiRequest request, int depth, int[] counts) {
+
+		if (depth == request.getSegmentCount()) {
+
+			for (int i = 0; i < node.mocks.size(); i++) {
+
+				request.getMatches().add(toMockApiMatchData(request, node.mocks.get(i), counts));
+			}
+
+			return;
+		}
+
+		String requestURI = request.getRequestURI();
+		int start = request.getSegmentStart(depth);
+		int end = request.getSegmentEnd(depth);
+		Node literalChild = node.literalChildren.get(requestURI, start, end);
+
+		if (null != literalChild) {
+
+			counts[MatchCategory.PATH_EXACT.ordinal()]++;
+			walk(literalChild, request, depth + 1, counts);
+			counts[MatchCategory.PATH_EXACT.ordinal()]--;
+		}
+
+		for (int i = 0; i < node.wildCardEdges.size(); i++) {
+
+			WildCardEdge edge = node.wildCardEdges.get(i);
+
+			if (matches(edge, request, start, end)) {
+
+				counts[edge.matchCategory.ordinal()]++;
+				walk(edge.child, request, depth + 1, counts);
+				counts[edge.matchCategory.ordinal()]--;
+			}
+		}
+	}
+
+	private static boolean matches(WildCardEdge edge, MockApiRequest request, int start, int end) {
+
+		String requestURI = request.getRequestURI();
+
+		return switch (edge.matchCategory) {
+			case PATH_WILD_CARD -> end > start;
+			case PATH_DIGIT -> KeyValueConstraints.isNonEmptyAndAll(requestURI, start, end, false);
+			case PATH_ALPHA_NUMERIC -> KeyValueConstraints.isNonEmptyAndAll(requestURI, start, end, true);
+			// custom regexes are user-supplied, so they run under a step budget
+			default -> RegexGuard.matches(edge.pattern, requestURI.substring(start, end), request);
+		};
+	}
+
+	private static MockApiMatchData toMockApiMatchData(MockApiRequest request, CompiledMockApi compiledMockApi,
+			int[] counts) {
+
+		MockApiMatchData mockApiMatchData = request.newMatchData(compiledMockApi);
+
+		for (MatchCategory matchCategory : PATH_MATCH_CATEGORIES) {
+
+			mockApiMatchData.add(matchCategory, counts[matchCategory.ordinal()]);
+		}
+
+		return mockApiMatchData;
+	}
+
+	private static String[] splitApiPath(String apiPath) {
+
+		// remove '^' from string start and '$' from end
+		String mockApiPath = StringUtils.removeEnd(StringUtils.removeStart(apiPath, "^"), "$");
+
+		return mockApiPath.split(SECTION_SEPARATOR);
+	}
+
+}
@@ -0,0 +1,348 @@
+package com.niblet.virtualization.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A mock request as the matcher reads it, without copying it. Path segments
+ * are offsets into the request URI, and headers and query parameters are
+ * parallel arrays of the name and value strings the front end already holds.
+ * <p>
+ * One instance per thread is reset for each request, together with the match
+ * data the catalog fills in, so once its arrays have grown to fit, routing and
+ * matching a request allocates nothing beyond what custom regexes and body
+ * constraints need. On virtual threads every request has a thread of its own,
+ * so there the pool would save nothing and only keep the arrays alive as long
+ * as the thread; each request allocates its own instance instead.
+ */
+public class MockApiRequest {
+
+	private static final ThreadLocal<MockApiRequest> POOL = ThreadLocal.withInitial(MockApiRequest::new);
+
+	private String httpMethod;
+	private String requestURI;
+	private String requestBody;
+
+	// start and end offset in requestURI of each path segment
+	private int[] segmentBounds = new int[32];
+	private int segmentCount;
+	private boolean canonicalized;
+
+	private String[] headerNames = new String[16];
+	private String[] headerValues = new String[16];
+	private int headerCount;
+
+	private String[] queryParameterNames = new String[8];
+	private String[] queryParameterValues = new String[8];
+	private int queryParameterCount;
+
+	private final List<MockApiMatchData> matches = new ArrayList<>();
+	// every match data created on this thread, reused from the start for each
+	// request
+	private final List<MockApiMatchData> matchDataPool = new ArrayList<>();
+	private int matchDataUsed;
+	private final int[] pathCounts = new int[MatchCategory.count()];
+	private int regexBudgetExceededCount;
+
+	private MockApiRequest() {
+	}
+
+	/**
+	 * @return this thread's request, or a new one on a virtual thread, reset to
+	 *         hold the given one, without headers or query parameters yet
+	 */
+	public static MockApiRequest of(String httpMethod, String requestURI, String requestBody) {
+
+		MockApiRequest request = Thread.currentThread().isVirtual() ? new MockApiRequest() : POOL.get();
+
+		return request.reset(httpMethod, requestURI, requestBody);
+	}
+
+	/**
+	 * @return this thread's request, or a new one on a virtual thread, reset to
+	 *         hold the given one
+	 */
+	public static MockApiRequest of(String httpMethod, String requestURI, String requestBody,
+			Map<String, String> headers, Map<String, String> queryParameters) {
+
+		MockApiRequest request = of(httpMethod, requestURI, requestBody);
+
+		for (Entry<String, String> header : headers.entrySet()) {
+
+			request.addHeader(header.getKey(), header.getValue());
+		}
+
+		for (Entry<String, String> queryParameter : queryParameters.entrySet()) {
+
+			request.addQueryParameter(queryParameter.getKey(), queryParameter.getValue());
+		}
+
+		return request;
+	}
+
+	private MockApiRequest reset(String httpMethod, String requestURI, String requestBody) {
+
+		this.httpMethod = httpMethod;
+		this.requestURI = requestURI;
+		this.requestBody = requestBody;
+		this.segmentCount = 0;
+		this.canonicalized = false;
+		this.headerCount = 0;
+		this.queryParameterCount = 0;
+		this.regexBudgetExceededCount = 0;
+		clearMatches();
+
+		return this;
+	}
+
+	/**
+	 * Adds a header; names are looked up case-insensitively, and only the first
+	 * header with a name is ever read.
+	 */
+	public void addHeader(String name, String value) {
+
+		if (headerCount == headerNames.length) {
+
+			headerNames = Arrays.copyOf(headerNames, headerCount * 2);
+			headerValues = Arrays.copyOf(headerValues, headerCount * 2);
+		}
+
+		headerNames[headerCount] = name;
+		headerValues[headerCount++] = value;
+	}
+
+	/**
+	 * Adds a query parameter; only the first with a name is ever read.
+	 */
+	public void addQueryParameter(String name, String value) {
+
+		if (queryParameterCount == queryParameterNames.length) {
+
+			queryParameterNames = Arrays.copyOf(queryParameterNames, queryParameterCount * 2);
+			queryParameterValues = Arrays.copyOf(queryParameterValues, queryParameterCount * 2);
+		}
+
+		queryParameterNames[queryParameterCount] = name;
+		queryParameterValues[queryParameterCount++] = value;
+	}
+
+	/**
+	 * Splits the path into segments, as {@code "/a/b/"} to {@code a} and
+	 * {@code b}, by recording their offsets. Like {@link String#split}, trailing
+	 * empty segments are dropped, except for a lone one.
+	 */
+	public void canonicalize() {
+
+		if (canonicalized) {
+
+			return;
+		}
+
+		int start = requestURI.startsWith("/") ? 1 : 0;
+		int end = requestURI.length();
+
+		if (end > start && requestURI.charAt(end - 1) == '/') {
+
+			end--;
+		}
+
+		int segmentStart = start;
+
+		for (int i = start; i <= end; i++) {
+
+			if (i == end || requestURI.charAt(i) == '/') {
+
+				addSegment(segmentStart, i);
+				segmentStart = i + 1;
+			}
+		}
+
+		while (segmentCount > 1 && getSegmentStart(segmentCount - 1) == getSegmentEnd(segmentCount - 1)) {
+
+			segmentCount--;
+		}
+
+		canonicalized = true;
+	}
+
+	private void addSegment(int start, int end) {
+
+		if (segmentCount * 2 == segmentBounds.length) {
+
+			segmentBounds = Arrays.copyOf(segmentBounds, segmentBounds.length * 2);
+		}
+
+		segmentBounds[segmentCount * 2] = start;
+		segmentBounds[segmentCount * 2 + 1] = end;
+		segmentCount++;
+	}
+
+	public String getHttpMethod() {
+
+		return httpMethod;
+	}
+
+	public String getRequestURI() {
+
+		return requestURI;
+	}
+
+	public String getRequestBody() {
+
+		return requestBody;
+	}
+
+	public int getSegmentCount() {
+
+		return segmentCount;
+	}
+
+	/**
+	 * @return the offset in the request URI where the segment starts
+	 */
+	public int getSegmentStart(int segment) {
+
+		return segmentBounds[segment * 2];
+	}
+
+	/**
+	 * @return the offset in the request URI just past the segment
+	 */
+	public int getSegmentEnd(int segment) {
+
+		return segmentBounds[segment * 2 + 1];
+	}
+
+	/**
+	 * @param name compared case-insensitively
+	 * @return the header's value, or null when there is no such header
+	 */
+	public String getHeader(String name) {
+
+		for (int i = 0; i < headerCount; i++) {
+
+			if (headerNames[i].equalsIgnoreCase(name)) {
+
+				return headerValues[i];
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return the parameter's value, or null when there is no such parameter
+	 */
+	public String getQueryParameter(String name) {
+
+		for (int i = 0; i < queryParameterCount; i++) {
+
+			if (queryParameterNames[i].equals(name)) {
+
+				return queryParameterValues[i];
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return a copy of the headers, safe to keep after the thread moves on to
+	 *         its next request
+	 */
+	public Map<String, String> copyHeaders() {
+
+		return copy(headerNames, headerValues, headerCount);
+	}
+
+	/**
+	 * @return a copy of the query parameters, safe to keep after the thread moves
+	 *         on to its next request
+	 */
+	public Map<String, String> copyQueryParameters() {
+
+		return copy(queryParameterNames, queryParameterValues, queryParameterCount);
+	}
+
+	private static Map<String, String> copy(String[] names, String[] values, int count) {
+
+		Map<String, String> copy = new LinkedHashMap<>(count * 2);
+
+		for (int i = 0; i < count; i++) {
+
+			copy.putIfAbsent(names[i], values[i]);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * The mocks matched so far, filled in by {@link MockApiPathTrie#find} and
+	 * only valid until this thread's next request.
+	 */
+	public List<MockApiMatchData> getMatches() {
+
+		return matches;
+	}
+
+	/**
+	 * Empties the matches and returns their match data to the pool.
+	 */
+	void clearMatches() {
+
+		matches.clear();
+		matchDataUsed = 0;
+	}
+
+	/**
+	 * @return how many custom regex matches for this request {@link RegexGuard}
+	 *         abandoned for using up their step budget
+	 */
+	public int getRegexBudgetExceededCount() {
+
+		return regexBudgetExceededCount;
+	}
+
+	void regexBudgetExceeded() {
+
+		regexBudgetExceededCount++;
+	}
+
+	/**
+	 * Path match-type counts, by {@link MatchCategory} ordinal, for the trie to
+	 * keep while it walks.
+	 */
+	int[] getPathCounts() {
+
+		return pathCounts;
+	}
+
+	/**
+	 * @return cleared match data for the mock, reused from an earlier request
+	 *         where possible
+	 */
+	MockApiMatchData newMatchData(CompiledMockApi compiledMockApi) {
+
+		MockApiMatchData matchData;
+
+		if (matchDataUsed < matchDataPool.size()) {
+
+			matchData = matchDataPool.get(matchDataUsed);
+
+		} else {
+
+			matchData = new MockApiMatchData();
+			matchDataPool.add(matchData);
+		}
+
+		matchDataUsed++;
+		matchData.reset(compiledMockApi);
+
+		return matchData;
+	}
+
+}
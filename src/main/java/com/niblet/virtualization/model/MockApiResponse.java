@@ -0,0 +1,50 @@
+package com.niblet.virtualization.model;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.http.ResponseEntity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The response to a mock request, and how long to hold it before sending.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class MockApiResponse {
+
+	private final ResponseEntity<byte[]> response;
+	// when set, the body is streamed from this file rather than taken from
+	// response
+	private final Path bodyFile;
+	// 0 to respond immediately
+	private final long delayMillis;
+	// when set, the response is whatever the upstream answers, and the other
+	// fields are unused
+	private final CompletableFuture<ResponseEntity<byte[]>> proxiedResponse;
+
+	public MockApiResponse(ResponseEntity<byte[]> response, Path bodyFile, long delayMillis) {
+
+		this(response, bodyFile, delayMillis, null);
+	}
+
+	public MockApiResponse(ResponseEntity<byte[]> response, long delayMillis) {
+
+		this(response, null, delayMillis);
+	}
+
+	public static MockApiResponse immediate(ResponseEntity<byte[]> response) {
+
+		return new MockApiResponse(response, 0L);
+	}
+
+	public static MockApiResponse proxied(CompletableFuture<ResponseEntity<byte[]>> proxiedResponse) {
+
+		return new MockApiResponse(null, null, 0L, proxiedResponse);
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.niblet.virtualization.model;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.random.RandomGenerator;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.niblet.virtualization.util.NibletServiceVirtualizationUtils;
+
+/**
+ * A bounded queue of responses rendered ahead of time from one mock's
+ * {@link ResponseTemplate}. A background worker keeps it topped up, so a
+ * request for a mock with many generator tokens only has to take one. Each
+ * response is taken once, so generated values are never repeated.
+ */
+public class PregeneratedResponses {
+
+	private final ResponseTemplate responseTemplate;
+	private final HttpStatus responseStatus;
+	private final BlockingQueue<ResponseEntity<byte[]>> queue;
+
+	public PregeneratedResponses(ResponseTemplate responseTemplate, HttpStatus responseStatus, int queueDepth) {
+
+		this.responseTemplate = responseTemplate;
+		this.responseStatus = responseStatus;
+		this.queue = new ArrayBlockingQueue<>(queueDepth);
+	}
+
+	/**
+	 * @return a rendered response, or null when none is ready
+	 */
+	public ResponseEntity<byte[]> poll() {
+
+		return queue.poll();
+	}
+
+	/**
+	 * Renders responses until the queue is full or {@code maxRendered} have been
+	 * rendered.
+	 *
+	 * @return how many were rendered
+	 */
+	public int refill(RandomGenerator random, int maxRendered) {
+
+		int rendered = 0;
+
+		while (rendered < maxRendered && queue.remainingCapacity() > 0) {
+
+			queue.offer(NibletServiceVirtualizationUtils.toResponseEntity(responseTemplate.render(random),
+					responseStatus));
+			rendered++;
+		}
+
+		return rendered;
+	}
+
+	public int size() {
+
+		return queue.size();
+	}
+
+}
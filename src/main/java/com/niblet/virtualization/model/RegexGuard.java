@@ -0,0 +1,1207 @@
+package com.niblet.virtualization.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.niblet.virtualization.exception.InvalidRegexException;
+
+/**
+ * Keeps user-supplied regexes from pinning a CPU. {@link #rewrite} turns a
+ * repeat into a possessive one wherever the literal after it can't be confused
+ * with it, collapses directly nested repeats, and then rejects any repeated
+ * group that can still backtrack catastrophically: a group repeating a
+ * backtracking repeat, or repeating alternatives that don't part ways at a
+ * character only one of them can match. A mock is validated against it when saved, and its regexes are
+ * compiled in the rewritten form while the stored form stays as written. When
+ * a request is matched, {@link #matches} runs the regex under a step budget,
+ * so a regex that slips past the save-time checks, or was stored before them,
+ * only costs a bounded amount per request.
+ */
+public class RegexGuard {
+
+	// characters the regex engine may read in one match attempt, or more for a
+	// long input
+	public static final int MAX_MATCH_STEPS = 1_000_000;
+	private static final int MAX_MATCH_STEPS_PER_CHARACTER = 16;
+
+	// flags the overlap checks assume when inline flags may have changed what a
+	// character matches
+	private static final int WIDEST_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL;
+
+	private RegexGuard() {
+	}
+
+	/**
+	 * @param request counts the match when it uses up its step budget
+	 * @return false when the regex doesn't match, or used up its step budget
+	 *         trying to
+	 */
+	public static boolean matches(Pattern pattern, String input, MockApiRequest request) {
+
+		try {
+
+			return pattern.matcher(new BudgetedCharSequence(input)).matches();
+
+		} catch (BudgetExceededException e) {
+
+			request.regexBudgetExceeded();
+
+			return false;
+		}
+	}
+
+	/**
+	 * Compiles a stored regex in its {@link #rewrite rewritten} form, so the mock
+	 * keeps the regex as the user wrote it. One the guard would reject, stored
+	 * before it, is compiled as it is and left to the step budget.
+	 */
+	public static Pattern compile(String regex) {
+
+		try {
+
+			return Pattern.compile(rewrite(regex));
+
+		} catch (InvalidRegexException e) {
+
+			return Pattern.compile(regex);
+		}
+	}
+
+	/**
+	 * @throws InvalidRegexException when the regex doesn't compile, or can
+	 *                               backtrack catastrophically even once
+	 *                               rewritten
+	 */
+	public static void validate(String regex) throws InvalidRegexException {
+
+		rewrite(regex);
+	}
+
+	/**
+	 * @return a regex matching the same strings, with backtracking removed where
+	 *         that is provably safe
+	 * @throws InvalidRegexException when the regex doesn't compile, or can still
+	 *                               backtrack catastrophically
+	 */
+	static String rewrite(String regex) throws InvalidRegexException {
+
+		try {
+
+			Pattern.compile(regex);
+
+		} catch (PatternSyntaxException e) {
+
+			throw new InvalidRegexException(e.getDescription() + " in '" + regex + "'");
+		}
+
+		Parser parser = new Parser(regex);
+		List<List<Node>> alternatives;
+
+		try {
+
+			alternatives = parser.parseAlternatives();
+
+		} catch (RuntimeException e) {
+
+			// syntax this parser doesn't follow; left as it is, under the step budget
+			return regex;
+		}
+
+		if (parser.hasComments) {
+
+			return regex;
+		}
+
+		Rewriter rewriter = new Rewriter(parser);
+		List<List<Node>> rewritten = new ArrayList<>(alternatives.size());
+
+		for (List<Node> alternative : alternatives) {
+
+			rewritten.add(rewriter.rewrite(alternative, true));
+		}
+
+		int flags = parser.hasInlineFlags ? WIDEST_FLAGS : 0;
+
+		for (List<Node> alternative : rewritten) {
+
+			for (Node node : alternative) {
+
+				check(node, flags);
+			}
+		}
+
+		StringBuilder rewrittenRegex = new StringBuilder(regex.length() + 8);
+		Group.renderAlternatives(rewritten, rewrittenRegex);
+
+		return rewrittenRegex.toString();
+	}
+
+	private static void check(Node node, int flags) throws InvalidRegexException {
+
+		if (node instanceof Quantified quantified) {
+
+			if (quantified.repeats() && !quantified.isPossessive() && quantified.operand() instanceof Group group
+					&& !group.isAtomic()) {
+
+				if (containsBacktrackingRepeat(group)) {
+
+					throw new InvalidRegexException("nested repeats in '" + render(quantified)
+							+ "' can backtrack catastrophically; make the inner repeat possessive, as in x++,"
+							+ " or atomic, as in (?>x+)");
+				}
+
+				if (group.alternatives().size() > 1 && alternativesOverlap(group, flags)) {
+
+					throw new InvalidRegexException("alternatives in '" + render(quantified)
+							+ "' can match the same characters, so the repeat can backtrack catastrophically");
+				}
+			}
+
+			check(quantified.operand(), flags);
+
+		} else if (node instanceof Group group) {
+
+			for (List<Node> alternative : group.alternatives()) {
+
+				for (Node child : alternative) {
+
+					check(child, flags);
+				}
+			}
+		}
+	}
+
+	private static boolean containsBacktrackingRepeat(Node node) {
+
+		if (node instanceof Quantified quantified) {
+
+			return quantified.isUnbounded() && !quantified.isPossessive()
+					|| containsBacktrackingRepeat(quantified.operand());
+		}
+
+		if (node instanceof Group group && !group.isAtomic()) {
+
+			for (List<Node> alternative : group.alternatives()) {
+
+				for (Node child : alternative) {
+
+					if (containsBacktrackingRepeat(child)) {
+
+						return true;
+					}
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean alternativesOverlap(Group group, int flags) {
+
+		List<List<Node>> alternatives = group.alternatives();
+
+		for (int i = 1; i < alternatives.size(); i++) {
+
+			for (int j = 0; j < i; j++) {
+
+				if (!diverge(alternatives.get(i), alternatives.get(j), flags)) {
+
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return whether the alternatives start with the same run of single
+	 *         characters, such as {@code ab} and {@code ac}, up to a character
+	 *         they can't share, so at most one of them can match at any position
+	 */
+	private static boolean diverge(List<Node> alternative, List<Node> other, int flags) {
+
+		for (int i = 0;; i++) {
+
+			Atom atom = 0 == i ? firstAtom(alternative) : atomAt(alternative, i);
+			Atom otherAtom = 0 == i ? firstAtom(other) : atomAt(other, i);
+
+			// can't tell what comes next, so assume the worst
+			if (null == atom || null == otherAtom) {
+
+				return false;
+			}
+
+			if (!overlap(atom, otherAtom, flags)) {
+
+				return true;
+			}
+
+			// after a repeated first character, the next one can be at any position
+			if (alternative.get(i) != atom || other.get(i) != otherAtom) {
+
+				return false;
+			}
+		}
+	}
+
+	private static Atom atomAt(List<Node> alternative, int index) {
+
+		return index < alternative.size() && alternative.get(index) instanceof Atom atom && atom.singleCharacter()
+				? atom
+				: null;
+	}
+
+	/**
+	 * @return the single-character atom every match of the alternative starts
+	 *         with, or null when there isn't one
+	 */
+	private static Atom firstAtom(List<Node> alternative) {
+
+		if (alternative.isEmpty()) {
+
+			return null;
+		}
+
+		Node first = alternative.get(0);
+
+		if (first instanceof Quantified quantified && quantified.minimum() > 0) {
+
+			first = quantified.operand();
+		}
+
+		return first instanceof Atom atom && atom.singleCharacter() ? atom : null;
+	}
+
+	private static boolean overlap(Atom atom, Atom other, int flags) {
+
+		CodePointRanges ranges = CodePointRanges.of(atom, flags);
+		CodePointRanges otherRanges = CodePointRanges.of(other, flags);
+
+		// can't tell what one of them matches, so assume the worst
+		if (null == ranges || null == otherRanges) {
+
+			return true;
+		}
+
+		if ((flags & Pattern.CASE_INSENSITIVE) != 0) {
+
+			// Unicode case folding isn't modelled beyond ASCII letters
+			if (!ranges.isAscii() || !otherRanges.isAscii()) {
+
+				return true;
+			}
+
+			ranges = ranges.withAsciiCaseVariants();
+			otherRanges = otherRanges.withAsciiCaseVariants();
+		}
+
+		return ranges.intersects(otherRanges);
+	}
+
+	private static String render(Node node) {
+
+		StringBuilder regex = new StringBuilder();
+		node.render(regex);
+
+		return regex.toString();
+	}
+
+	private interface Node {
+
+		void render(StringBuilder regex);
+	}
+
+	/**
+	 * @param singleCharacter whether it always matches exactly one character
+	 */
+	private record Atom(String text, boolean singleCharacter) implements Node {
+
+		/**
+		 * A plain character, or a backslash-escaped one that isn't a letter or
+		 * digit.
+		 */
+		private boolean isLiteral() {
+
+			if (!singleCharacter) {
+
+				return false;
+			}
+
+			if (text.length() == 1) {
+
+				return text.charAt(0) != '.';
+			}
+
+			return text.length() == 2 && text.charAt(0) == '\\' && !Character.isLetterOrDigit(text.charAt(1));
+		}
+
+		private char literal() {
+
+			return text.charAt(text.length() - 1);
+		}
+
+		@Override
+		public void render(StringBuilder regex) {
+
+			regex.append(text);
+		}
+	}
+
+	/**
+	 * @param opening {@code (}, {@code (?:}, {@code (?<name>}, a lookaround or
+	 *                another group opening, as written
+	 */
+	private record Group(String opening, List<List<Node>> alternatives) implements Node {
+
+		private boolean isAtomic() {
+
+			return opening.equals("(?>");
+		}
+
+		private boolean isCapturing() {
+
+			return opening.equals("(") || (opening.startsWith("(?<") && !opening.startsWith("(?<=")
+					&& !opening.startsWith("(?<!"));
+		}
+
+		@Override
+		public void render(StringBuilder regex) {
+
+			regex.append(opening);
+			renderAlternatives(alternatives, regex);
+			regex.append(')');
+		}
+
+		private static void renderAlternatives(List<List<Node>> alternatives, StringBuilder regex) {
+
+			for (int i = 0; i < alternatives.size(); i++) {
+
+				if (i > 0) {
+
+					regex.append('|');
+				}
+
+				for (Node node : alternatives.get(i)) {
+
+					node.render(regex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param quantifier {@code *}, {@code +}, {@code ?} or a {@code {n,m}} form
+	 * @param mode       empty for greedy, {@code ?} for lazy or {@code +} for
+	 *                   possessive
+	 */
+	private record Quantified(Node operand, String quantifier, String mode) implements Node {
+
+		private boolean isUnbounded() {
+
+			return quantifier.equals("*") || quantifier.equals("+") || quantifier.endsWith(",}");
+		}
+
+		/**
+		 * Whether the operand can be matched more than once.
+		 */
+		private boolean repeats() {
+
+			if (quantifier.startsWith("{")) {
+
+				return isUnbounded() || maximum() > 1;
+			}
+
+			return !quantifier.equals("?");
+		}
+
+		private boolean isPossessive() {
+
+			return mode.equals("+");
+		}
+
+		private boolean isGreedy() {
+
+			return mode.isEmpty();
+		}
+
+		private int minimum() {
+
+			if (quantifier.startsWith("{")) {
+
+				return parseBound(quantifier.substring(1, quantifier.length() - 1).split(",", -1)[0]);
+			}
+
+			return quantifier.equals("+") ? 1 : 0;
+		}
+
+		private int maximum() {
+
+			String[] bounds = quantifier.substring(1, quantifier.length() - 1).split(",", -1);
+
+			return parseBound(bounds[bounds.length - 1]);
+		}
+
+		private static int parseBound(String bound) {
+
+			// counts beyond int range are as good as unbounded
+			return bound.length() > 9 ? Integer.MAX_VALUE : Integer.parseInt(bound.strip());
+		}
+
+		@Override
+		public void render(StringBuilder regex) {
+
+			operand.render(regex);
+			regex.append(quantifier).append(mode);
+		}
+	}
+
+	/**
+	 * Reads the structure of a regex that has already compiled, so it only
+	 * distinguishes what the checks and rewrites need: groups, alternatives,
+	 * quantifiers and single-character atoms. Anything else is kept verbatim.
+	 */
+	private static class Parser {
+
+		private final String regex;
+		private int index;
+		private boolean hasBackReference;
+		private boolean hasInlineFlags;
+		// whitespace and # comments change meaning under the COMMENTS flag
+		private boolean hasComments;
+
+		private Parser(String regex) {
+
+			this.regex = regex;
+		}
+
+		private List<List<Node>> parseAlternatives() {
+
+			List<List<Node>> alternatives = new ArrayList<>();
+			List<Node> sequence = new ArrayList<>();
+
+			while (index < regex.length() && regex.charAt(index) != ')') {
+
+				if (regex.charAt(index) == '|') {
+
+					alternatives.add(sequence);
+					sequence = new ArrayList<>();
+					index++;
+					continue;
+				}
+
+				sequence.add(parseQuantifier(parseAtom()));
+			}
+
+			alternatives.add(sequence);
+
+			return alternatives;
+		}
+
+		private Node parseAtom() {
+
+			int start = index;
+			char c = regex.charAt(index);
+
+			switch (c) {
+			case '(':
+				return parseGroup();
+			case '[':
+				skipCharacterClass();
+				return new Atom(regex.substring(start, index), true);
+			case '\\':
+				return parseEscape();
+			case '^', '$':
+				index++;
+				return new Atom(String.valueOf(c), false);
+			default:
+				index += Character.charCount(regex.codePointAt(index));
+				return new Atom(regex.substring(start, index), true);
+			}
+		}
+
+		private Node parseGroup() {
+
+			int start = index;
+			String opening;
+
+			if (regex.startsWith("(?:", start) || regex.startsWith("(?=", start) || regex.startsWith("(?!", start)
+					|| regex.startsWith("(?>", start)) {
+
+				opening = regex.substring(start, start + 3);
+
+			} else if (regex.startsWith("(?<=", start) || regex.startsWith("(?<!", start)) {
+
+				opening = regex.substring(start, start + 4);
+
+			} else if (regex.startsWith("(?<", start)) {
+
+				opening = regex.substring(start, regex.indexOf('>', start) + 1);
+
+			} else if (regex.startsWith("(?", start)) {
+
+				// inline flags, alone or scoping a group
+				int end = start + 2;
+
+				while (regex.charAt(end) != ')' && regex.charAt(end) != ':') {
+
+					end++;
+				}
+
+				String flags = regex.substring(start + 2, end);
+				hasInlineFlags = true;
+				hasComments |= flags.indexOf('x') >= 0 && flags.indexOf('-') < 0;
+
+				if (regex.charAt(end) == ')') {
+
+					index = end + 1;
+					return new Atom(regex.substring(start, index), false);
+				}
+
+				opening = regex.substring(start, end + 1);
+
+			} else {
+
+				opening = "(";
+			}
+
+			index = start + opening.length();
+			List<List<Node>> alternatives = parseAlternatives();
+
+			if (index >= regex.length()) {
+
+				throw new IllegalArgumentException("Unclosed group");
+			}
+
+			index++;
+
+			return new Group(opening, alternatives);
+		}
+
+		private Node parseEscape() {
+
+			int start = index;
+			char escaped = regex.charAt(index + 1);
+			index += 2;
+			boolean singleCharacter = true;
+
+			switch (escaped) {
+			case 'Q':
+				int end = regex.indexOf("\\E", index);
+				index = end < 0 ? regex.length() : end + 2;
+				singleCharacter = false;
+				break;
+			case 'p', 'P', 'x', 'N':
+				if (index < regex.length() && regex.charAt(index) == '{') {
+					index = regex.indexOf('}', index) + 1;
+				} else {
+					index += escaped == 'x' ? 2 : 1;
+				}
+				break;
+			case 'u':
+				index += 4;
+				break;
+			case 'c':
+				index++;
+				break;
+			case '0':
+				while (index < regex.length() && index < start + 5 && regex.charAt(index) >= '0'
+						&& regex.charAt(index) <= '7') {
+					index++;
+				}
+				break;
+			case 'k':
+				index = regex.indexOf('>', index) + 1;
+				hasBackReference = true;
+				singleCharacter = false;
+				break;
+			case '1', '2', '3', '4', '5', '6', '7', '8', '9':
+				while (index < regex.length() && Character.isDigit(regex.charAt(index))) {
+					index++;
+				}
+				hasBackReference = true;
+				singleCharacter = false;
+				break;
+			case 'b', 'B', 'A', 'G', 'Z', 'z', 'R', 'X':
+				// boundaries, and escapes that can match more than one character
+				singleCharacter = false;
+				break;
+			default:
+				break;
+			}
+
+			return new Atom(regex.substring(start, index), singleCharacter);
+		}
+
+		private void skipCharacterClass() {
+
+			index++;
+
+			if (regex.charAt(index) == '^') {
+
+				index++;
+			}
+
+			// a ']' straight after the opening is a literal
+			if (regex.charAt(index) == ']') {
+
+				index++;
+			}
+
+			int depth = 1;
+
+			while (depth > 0) {
+
+				char c = regex.charAt(index);
+
+				if (c == '\\') {
+
+					if (regex.charAt(index + 1) == 'Q') {
+
+						int end = regex.indexOf("\\E", index + 2);
+						index = end < 0 ? regex.length() : end + 2;
+
+					} else {
+
+						index += 2;
+					}
+
+					continue;
+				}
+
+				if (c == '[') {
+					depth++;
+				} else if (c == ']') {
+					depth--;
+				}
+
+				index++;
+			}
+		}
+
+		private Node parseQuantifier(Node operand) {
+
+			if (index >= regex.length()) {
+
+				return operand;
+			}
+
+			char c = regex.charAt(index);
+			String quantifier;
+
+			if (c == '*' || c == '+' || c == '?') {
+
+				quantifier = String.valueOf(c);
+				index++;
+
+			} else if (c == '{') {
+
+				int end = regex.indexOf('}', index) + 1;
+				quantifier = regex.substring(index, end);
+				index = end;
+
+			} else {
+
+				return operand;
+			}
+
+			String mode = "";
+
+			if (index < regex.length() && (regex.charAt(index) == '?' || regex.charAt(index) == '+')) {
+
+				mode = String.valueOf(regex.charAt(index));
+				index++;
+			}
+
+			return new Quantified(operand, quantifier, mode);
+		}
+	}
+
+	/**
+	 * Rewrites that never change which strings the regex matches.
+	 */
+	private static class Rewriter {
+
+		private final Parser parser;
+
+		private Rewriter(Parser parser) {
+
+			this.parser = parser;
+		}
+
+		/**
+		 * @param atEnd whether nothing can follow the sequence but the end of the
+		 *              input
+		 */
+		private List<Node> rewrite(List<Node> sequence, boolean atEnd) {
+
+			List<Node> rewritten = new ArrayList<>(sequence.size());
+
+			for (Node node : sequence) {
+
+				rewritten.add(rewrite(node));
+			}
+
+			for (int i = 0; i < rewritten.size(); i++) {
+
+				if (rewritten.get(i) instanceof Quantified quantified && canBePossessive(quantified,
+						i + 1 < rewritten.size() ? rewritten.get(i + 1) : null, atEnd)) {
+
+					rewritten.set(i, new Quantified(quantified.operand(), quantified.quantifier(), "+"));
+				}
+			}
+
+			return rewritten;
+		}
+
+		private Node rewrite(Node node) {
+
+			if (node instanceof Group group) {
+
+				List<List<Node>> alternatives = new ArrayList<>(group.alternatives().size());
+
+				for (List<Node> alternative : group.alternatives()) {
+
+					alternatives.add(rewrite(alternative, false));
+				}
+
+				return new Group(group.opening(), alternatives);
+			}
+
+			if (node instanceof Quantified quantified) {
+
+				Node operand = rewrite(quantified.operand());
+				Quantified inner = onlyQuantified(operand);
+
+				// (x+)+ is x+, and (x*)*, (x+)*, (x*)+, (x?)* and (x?)+ are all x*
+				if (null != inner && quantified.isGreedy() && inner.isGreedy()
+						&& (quantified.quantifier().equals("*") || quantified.quantifier().equals("+"))
+						&& (inner.quantifier().equals("*") || inner.quantifier().equals("+")
+								|| inner.quantifier().equals("?"))) {
+
+					boolean bothPlus = quantified.quantifier().equals("+") && inner.quantifier().equals("+");
+
+					return new Quantified(inner.operand(), bothPlus ? "+" : "*", "");
+				}
+
+				return new Quantified(operand, quantified.quantifier(), quantified.mode());
+			}
+
+			return node;
+		}
+
+		/**
+		 * @return the greedy single-character repeat that is a group's only content,
+		 *         when dropping the group can't change a back reference
+		 */
+		private Quantified onlyQuantified(Node node) {
+
+			if (!(node instanceof Group group) || group.alternatives().size() != 1
+					|| group.alternatives().get(0).size() != 1) {
+
+				return null;
+			}
+
+			boolean plainGroup = group.opening().equals("(?:") || group.isCapturing() && !parser.hasBackReference;
+
+			if (!plainGroup || !(group.alternatives().get(0).get(0) instanceof Quantified inner)
+					|| !(inner.operand() instanceof Atom atom) || !atom.singleCharacter()) {
+
+				return null;
+			}
+
+			return inner;
+		}
+
+		/**
+		 * A greedy repeat of a single character can't usefully give a character back
+		 * when the next thing to match is a literal it doesn't match, or the end of
+		 * the input.
+		 */
+		private boolean canBePossessive(Quantified quantified, Node next, boolean atEnd) {
+
+			if (!quantified.isGreedy() || !(quantified.operand() instanceof Atom atom) || !atom.singleCharacter()
+					|| parser.hasInlineFlags) {
+
+				return false;
+			}
+
+			if (null == next) {
+
+				return atEnd;
+			}
+
+			if (!(next instanceof Atom nextAtom) || !nextAtom.isLiteral()) {
+
+				return false;
+			}
+
+			return !Pattern.compile(atom.text()).matcher(String.valueOf(nextAtom.literal())).matches();
+		}
+	}
+
+	/**
+	 * The characters a single-character atom matches, as sorted, disjoint,
+	 * inclusive code point ranges, so two atoms are compared without trying
+	 * characters against either. Only literals, {@code .}, the predefined
+	 * classes and character classes built from those are read; anything else,
+	 * such as {@code \p{L}} or a nested class, is left unknown.
+	 */
+	private static final class CodePointRanges {
+
+		private static final CodePointRanges ALL = new CodePointRanges(new int[] { 0, Character.MAX_CODE_POINT });
+		private static final CodePointRanges NOT_LINE_TERMINATORS = new CodePointRanges(
+				new int[] { '\n', '\n', '\r', '\r', 0x85, 0x85, 0x2028, 0x2029 }).complement();
+		private static final CodePointRanges DIGITS = new CodePointRanges(new int[] { '0', '9' });
+		private static final CodePointRanges WORD_CHARACTERS = new CodePointRanges(
+				new int[] { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' });
+		private static final CodePointRanges WHITESPACE = new CodePointRanges(new int[] { '\t', '\r', ' ', ' ' });
+
+		// low and high bound of each range, in order
+		private final int[] bounds;
+
+		private CodePointRanges(int[] bounds) {
+
+			this.bounds = bounds;
+		}
+
+		/**
+		 * @return what the atom matches, or null when that isn't known
+		 */
+		private static CodePointRanges of(Atom atom, int flags) {
+
+			String text = atom.text();
+
+			if (text.equals(".")) {
+
+				return (flags & Pattern.DOTALL) != 0 ? ALL : NOT_LINE_TERMINATORS;
+			}
+
+			Reader reader = new Reader(text);
+			CodePointRanges ranges = text.charAt(0) == '[' ? reader.readClass() : reader.readCharacter();
+
+			// only the whole atom is understood
+			return reader.index == text.length() ? ranges : null;
+		}
+
+		private static CodePointRanges single(int codePoint) {
+
+			return new CodePointRanges(new int[] { codePoint, codePoint });
+		}
+
+		private boolean isSingle() {
+
+			return bounds.length == 2 && bounds[0] == bounds[1];
+		}
+
+		private boolean isAscii() {
+
+			return bounds.length == 0 || bounds[bounds.length - 1] < 0x80;
+		}
+
+		private boolean intersects(CodePointRanges other) {
+
+			int i = 0;
+			int j = 0;
+
+			while (i < bounds.length && j < other.bounds.length) {
+
+				if (bounds[i + 1] < other.bounds[j]) {
+					i += 2;
+				} else if (other.bounds[j + 1] < bounds[i]) {
+					j += 2;
+				} else {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		private CodePointRanges union(CodePointRanges other) {
+
+			int[] all = new int[bounds.length + other.bounds.length];
+			System.arraycopy(bounds, 0, all, 0, bounds.length);
+			System.arraycopy(other.bounds, 0, all, bounds.length, other.bounds.length);
+
+			return normalized(all);
+		}
+
+		private CodePointRanges complement() {
+
+			int[] complement = new int[bounds.length + 2];
+			int size = 0;
+			int next = 0;
+
+			for (int i = 0; i < bounds.length; i += 2) {
+
+				if (bounds[i] > next) {
+
+					complement[size++] = next;
+					complement[size++] = bounds[i] - 1;
+				}
+
+				next = bounds[i + 1] + 1;
+			}
+
+			if (next <= Character.MAX_CODE_POINT) {
+
+				complement[size++] = next;
+				complement[size++] = Character.MAX_CODE_POINT;
+			}
+
+			return new CodePointRanges(Arrays.copyOf(complement, size));
+		}
+
+		/**
+		 * @return these ranges, plus the other case of every ASCII letter in them
+		 */
+		private CodePointRanges withAsciiCaseVariants() {
+
+			CodePointRanges variants = this;
+
+			for (int upper = 'A'; upper <= 'Z'; upper++) {
+
+				int lower = upper + ('a' - 'A');
+
+				if (intersects(single(upper)) || intersects(single(lower))) {
+
+					variants = variants.union(new CodePointRanges(new int[] { upper, upper, lower, lower }));
+				}
+			}
+
+			return variants;
+		}
+
+		private static CodePointRanges normalized(int[] bounds) {
+
+			int rangeCount = bounds.length / 2;
+			long[] ranges = new long[rangeCount];
+
+			for (int i = 0; i < rangeCount; i++) {
+
+				ranges[i] = (long) bounds[i * 2] << 32 | bounds[i * 2 + 1];
+			}
+
+			Arrays.sort(ranges);
+
+			int[] merged = new int[bounds.length];
+			int size = 0;
+
+			for (long range : ranges) {
+
+				int low = (int) (range >>> 32);
+				int high = (int) range;
+
+				if (size > 0 && low <= merged[size - 1] + 1) {
+
+					merged[size - 1] = Math.max(merged[size - 1], high);
+
+				} else {
+
+					merged[size++] = low;
+					merged[size++] = high;
+				}
+			}
+
+			return new CodePointRanges(Arrays.copyOf(merged, size));
+		}
+
+		/**
+		 * Reads a character, an escape or a character class from an atom's text.
+		 * Each read returns null for syntax it doesn't model.
+		 */
+		private static class Reader {
+
+			private final String text;
+			private int index;
+
+			private Reader(String text) {
+
+				this.text = text;
+			}
+
+			private CodePointRanges readClass() {
+
+				index++;
+				boolean negated = index < text.length() && text.charAt(index) == '^';
+
+				if (negated) {
+
+					index++;
+				}
+
+				CodePointRanges ranges = new CodePointRanges(new int[0]);
+				boolean first = true;
+
+				while (index < text.length() && (first || text.charAt(index) != ']')) {
+
+					first = false;
+
+					// unions, intersections and quoting
+					if (text.charAt(index) == '[' || text.startsWith("&&", index) || text.startsWith("\\Q", index)) {
+
+						return null;
+					}
+
+					CodePointRanges item = readCharacter();
+
+					if (null == item) {
+
+						return null;
+					}
+
+					if (item.isSingle() && text.startsWith("-", index) && index + 1 < text.length()
+							&& text.charAt(index + 1) != ']') {
+
+						index++;
+						CodePointRanges end = readCharacter();
+
+						if (null == end || !end.isSingle()) {
+
+							return null;
+						}
+
+						item = new CodePointRanges(new int[] { item.bounds[0], end.bounds[0] });
+					}
+
+					ranges = ranges.union(item);
+				}
+
+				if (index >= text.length()) {
+
+					return null;
+				}
+
+				index++;
+
+				return negated ? ranges.complement() : ranges;
+			}
+
+			private CodePointRanges readCharacter() {
+
+				if (text.charAt(index) != '\\') {
+
+					int codePoint = text.codePointAt(index);
+					index += Character.charCount(codePoint);
+
+					return single(codePoint);
+				}
+
+				if (index + 1 >= text.length()) {
+
+					return null;
+				}
+
+				char escaped = text.charAt(index + 1);
+				index += 2;
+
+				return switch (escaped) {
+				case 'd' -> DIGITS;
+				case 'D' -> DIGITS.complement();
+				case 'w' -> WORD_CHARACTERS;
+				case 'W' -> WORD_CHARACTERS.complement();
+				case 's' -> WHITESPACE;
+				case 'S' -> WHITESPACE.complement();
+				case 't' -> single('\t');
+				case 'n' -> single('\n');
+				case 'r' -> single('\r');
+				case 'f' -> single('\f');
+				case 'a' -> single(0x07);
+				case 'e' -> single(0x1B);
+				case 'x' -> readHex(text.startsWith("{", index) ? text.indexOf('}', index) : index + 2);
+				case 'u' -> readHex(index + 4);
+				default -> Character.isLetterOrDigit(escaped) ? null : single(escaped);
+				};
+			}
+
+			/**
+			 * @param end the index just past the hex digits, or of the closing brace
+			 */
+			private CodePointRanges readHex(int end) {
+
+				boolean braced = text.startsWith("{", index);
+				int start = braced ? index + 1 : index;
+
+				if (end < start || end > text.length()) {
+
+					return null;
+				}
+
+				int codePoint;
+
+				try {
+
+					codePoint = Integer.parseInt(text.substring(start, end), 16);
+
+				} catch (NumberFormatException e) {
+
+					return null;
+				}
+
+				index = braced ? end + 1 : end;
+
+				return single(codePoint);
+			}
+		}
+	}
+
+	private static class BudgetExceededException extends RuntimeException {
+
+		private static final long serialVersionUID = -1618546317446025842L;
+
+		private BudgetExceededException() {
+
+			super(null, null, false, false);
+		}
+	}
+
+	/**
+	 * Counts every character the regex engine reads, and stops the match once
+	 * the budget is spent.
+	 */
+	private static class BudgetedCharSequence implements CharSequence {
+
+		private final String text;
+		private long remainingSteps;
+
+		private BudgetedCharSequence(String text) {
+
+			this.text = text;
+			this.remainingSteps = Math.max(MAX_MATCH_STEPS, (long) MAX_MATCH_STEPS_PER_CHARACTER * text.length());
+		}
+
+		@Override
+		public char charAt(int index) {
+
+			if (--remainingSteps < 0) {
+
+				throw new BudgetExceededException();
+			}
+
+			return text.charAt(index);
+		}
+
+		@Override
+		public int length() {
+
+			return text.length();
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+
+			return text.subSequence(start, end);
+		}
+
+		@Override
+		public String toString() {
+
+			return text;
+		}
+	}
+
+}
@@ -0,0 +1,343 @@
+package com.niblet.virtualization.model;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.niblet.virtualization.contract.MatchModeEnum;
+import com.niblet.virtualization.contract.RequestBodyDetails;
+import com.niblet.virtualization.contract.RequestVariableDetails;
+import com.niblet.virtualization.exception.InvalidRegexException;
+import com.niblet.virtualization.exception.InvalidRequestBodyException;
+
+import lombok.Getter;
+
+/**
+ * The request body constraints of a single mock: an exact body, and one
+ * matcher per JSON or XML field path. The stored form is the
+ * {@link RequestBodyDetails} JSON, with keys sorted so equal constraints are
+ * stored, and fingerprinted, identically. Field paths are split into their
+ * ancestors once, so {@link RequestBodyMatcher} can skip every part of a body
+ * no path runs through.
+ */
+public class RequestBodyConstraints {
+
+	public enum BodyFormat {
+		JSON, XML
+	}
+
+	// $, $.order, $.order.items[0].sku
+	private static final Pattern JSON_PATH_PATTERN = Pattern.compile("^\\$(\\.[^.\\[\\]]+|\\[\\d+\\])*$");
+	// /order, /order/item/@sku
+	private static final Pattern XML_PATH_PATTERN = Pattern.compile("^(/[^/@]+)+(/@[^/@]+)?$");
+
+	private static final ObjectMapper STORED_FORM_MAPPER = JsonMapper.builder()
+			.enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+			.enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+			.serializationInclusion(JsonInclude.Include.NON_NULL).build();
+
+	@Getter
+	private final String exactMatch;
+	@Getter
+	private final BodyFormat format;
+	private final Map<String, FieldMatcher> matchersByPath;
+	// every proper ancestor of a field path; a body outside these is never read
+	private final Set<String> ancestorPaths;
+
+	private RequestBodyConstraints(String exactMatch, BodyFormat format, Map<String, FieldMatcher> matchersByPath,
+			Set<String> ancestorPaths) {
+
+		this.exactMatch = exactMatch;
+		this.format = format;
+		this.matchersByPath = matchersByPath;
+		this.ancestorPaths = ancestorPaths;
+	}
+
+	/**
+	 * @return null when {@code details} has no constraints
+	 * @throws InvalidRequestBodyException when a path or regex is not valid
+	 */
+	public static RequestBodyConstraints compile(RequestBodyDetails details) throws InvalidRequestBodyException {
+
+		if (hasNoConstraints(details)) {
+
+			return null;
+		}
+
+		Map<String, FieldMatcher> matchersByPath = new LinkedHashMap<>();
+		Set<String> ancestorPaths = new HashSet<>();
+		BodyFormat format = null;
+
+		if (null != details.getFields()) {
+
+			for (Entry<String, RequestVariableDetails> pathDetails : details.getFields().entrySet()) {
+
+				String path = pathDetails.getKey();
+				BodyFormat pathFormat = toFormat(path);
+
+				if (null != format && format != pathFormat) {
+
+					throw new InvalidRequestBodyException("Field paths must all be JSON paths or all XML paths.");
+				}
+
+				format = pathFormat;
+				matchersByPath.put(path, new FieldMatcher(pathDetails.getValue()));
+				addAncestorPaths(path, format, ancestorPaths);
+			}
+		}
+
+		return new RequestBodyConstraints(details.getExactMatch(), format, Collections.unmodifiableMap(matchersByPath),
+				Collections.unmodifiableSet(ancestorPaths));
+	}
+
+	/**
+	 * @param stored the REQUEST_BODY column value
+	 * @return null when the column is NULL, so any body matches
+	 * @throws IllegalArgumentException when the value is not in the stored
+	 *                                  constraint format
+	 */
+	public static RequestBodyConstraints parse(String stored) {
+
+		if (null == stored) {
+
+			return null;
+		}
+
+		try {
+
+			return compile(STORED_FORM_MAPPER.readValue(stored, RequestBodyDetails.class));
+
+		} catch (JsonProcessingException e) {
+
+			throw new IllegalArgumentException("Unrecognized request body constraints: " + stored, e);
+
+		} catch (InvalidRequestBodyException e) {
+
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Inverse of {@link #parse(String)}. Only the settings a match mode uses are
+	 * kept, and paths and properties are sorted.
+	 *
+	 * @return null when {@code details} has no constraints
+	 */
+	public static String toStoredString(RequestBodyDetails details) {
+
+		if (hasNoConstraints(details)) {
+
+			return null;
+		}
+
+		RequestBodyDetails stored = new RequestBodyDetails();
+		stored.setExactMatch(details.getExactMatch());
+
+		if (null != details.getFields()) {
+
+			Map<String, RequestVariableDetails> fields = new TreeMap<>();
+
+			for (Entry<String, RequestVariableDetails> pathDetails : details.getFields().entrySet()) {
+
+				MatchModeEnum matchMode = FieldMatcher.matchMode(pathDetails.getValue());
+
+				RequestVariableDetails storedDetails = new RequestVariableDetails();
+				storedDetails.setMatchMode(matchMode);
+
+				if (MatchModeEnum.CUSTOM_REGEX == matchMode || MatchModeEnum.EXACT_MATCH == matchMode) {
+
+					storedDetails.setCustomRegexString(
+							StringUtils.defaultString(pathDetails.getValue().getCustomRegexString()));
+				}
+
+				fields.put(pathDetails.getKey(), storedDetails);
+			}
+
+			stored.setFields(fields);
+		}
+
+		try {
+
+			return STORED_FORM_MAPPER.writeValueAsString(stored);
+
+		} catch (JsonProcessingException e) {
+
+			// plain strings and enums always serialize
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public Set<String> getFieldPaths() {
+
+		return matchersByPath.keySet();
+	}
+
+	public boolean isAncestorPath(String path) {
+
+		return ancestorPaths.contains(path);
+	}
+
+	/**
+	 * @param text    the field's text, or null for a JSON object or array, or a
+	 *                null value
+	 * @param isNull  true for a JSON null or an {@code xsi:nil} XML element
+	 * @param request counts custom regex matches that use up their step budget
+	 * @return the match type, or null when the field doesn't match
+	 */
+	public MatchCategory matchField(String path, String text, boolean isNull, MockApiRequest request) {
+
+		return matchersByPath.get(path).match(text, isNull, request);
+	}
+
+	/**
+	 * @return the match type for a field the body doesn't have, which only
+	 *         IS_NULL matches, or null when it doesn't match
+	 */
+	public MatchCategory matchAbsentField(String path) {
+
+		return MatchModeEnum.IS_NULL == matchersByPath.get(path).matchMode ? MatchCategory.BODY_EXACT : null;
+	}
+
+	/**
+	 * Checks every custom regex against {@link RegexGuard}.
+	 *
+	 * @throws InvalidRegexException when one can backtrack catastrophically
+	 */
+	public void validateCustomRegexes() throws InvalidRegexException {
+
+		for (FieldMatcher fieldMatcher : matchersByPath.values()) {
+
+			if (null != fieldMatcher.customRegex) {
+
+				RegexGuard.validate(fieldMatcher.customRegex);
+			}
+		}
+	}
+
+	private static boolean hasNoConstraints(RequestBodyDetails details) {
+
+		return null == details || (null == details.getExactMatch()
+				&& (null == details.getFields() || details.getFields().isEmpty()));
+	}
+
+	private static BodyFormat toFormat(String path) throws InvalidRequestBodyException {
+
+		if (null != path && JSON_PATH_PATTERN.matcher(path).matches()) {
+
+			return BodyFormat.JSON;
+		}
+
+		if (null != path && XML_PATH_PATTERN.matcher(path).matches()) {
+
+			return BodyFormat.XML;
+		}
+
+		throw new InvalidRequestBodyException("Field path (" + path
+				+ ") must be a JSON path, like $.order.items[0].sku, or an XML path, like /order/item/@sku.");
+	}
+
+	private static void addAncestorPaths(String path, BodyFormat format, Set<String> ancestorPaths) {
+
+		for (int i = 1; i < path.length(); i++) {
+
+			char c = path.charAt(i);
+
+			if (BodyFormat.JSON == format ? c == '.' || c == '[' : c == '/') {
+
+				ancestorPaths.add(path.substring(0, i));
+			}
+		}
+	}
+
+	private static class FieldMatcher {
+
+		private final MatchModeEnum matchMode;
+		// only set for custom regexes, as written and as compiled
+		private final String customRegex;
+		private final Pattern customPattern;
+		// only set for exact matches
+		private final String exactValue;
+
+		private FieldMatcher(RequestVariableDetails details) throws InvalidRequestBodyException {
+
+			this.matchMode = matchMode(details);
+			this.exactValue = MatchModeEnum.EXACT_MATCH == matchMode
+					? StringUtils.defaultString(details.getCustomRegexString())
+					: null;
+
+			this.customRegex = MatchModeEnum.CUSTOM_REGEX == matchMode
+					? StringUtils.defaultString(details.getCustomRegexString())
+					: null;
+
+			try {
+
+				this.customPattern = null != customRegex ? RegexGuard.compile(customRegex) : null;
+
+			} catch (PatternSyntaxException e) {
+
+				throw new InvalidRequestBodyException("Invalid customRegexString: " + e.getDescription());
+			}
+		}
+
+		private static MatchModeEnum matchMode(RequestVariableDetails details) {
+
+			return null == details || null == details.getMatchMode() ? MatchModeEnum.EXISTS : details.getMatchMode();
+		}
+
+		private MatchCategory match(String text, boolean isNull, MockApiRequest request) {
+
+			switch (matchMode) {
+			case EXISTS:
+				return MatchCategory.BODY_EXISTS;
+			case IS_NULL:
+				return isNull ? MatchCategory.BODY_EXACT : null;
+			case IS_NOT_NULL:
+				return isNull ? null : MatchCategory.BODY_WILD_CARD;
+			default:
+				break;
+			}
+
+			// the remaining modes only match scalar values
+			if (null == text) {
+
+				return null;
+			}
+
+			boolean matches = switch (matchMode) {
+			case EXACT_MATCH -> text.equals(exactValue);
+			case CUSTOM_REGEX -> RegexGuard.matches(customPattern, text, request);
+			case DIGITS -> KeyValueConstraints.isNonEmptyAndAll(text, false);
+			case ALPHA_NUMERIC -> KeyValueConstraints.isNonEmptyAndAll(text, true);
+			default -> !text.isEmpty();
+			};
+
+			if (!matches) {
+
+				return null;
+			}
+
+			return switch (matchMode) {
+			case EXACT_MATCH -> MatchCategory.BODY_EXACT;
+			case CUSTOM_REGEX -> MatchCategory.BODY_CUSTOM;
+			case DIGITS -> MatchCategory.BODY_DIGIT;
+			case ALPHA_NUMERIC -> MatchCategory.BODY_ALPHA_NUMERIC;
+			default -> MatchCategory.BODY_WILD_CARD;
+			};
+		}
+	}
+
+}
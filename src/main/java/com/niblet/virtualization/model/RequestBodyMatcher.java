@@ -0,0 +1,449 @@
+package com.niblet.virtualization.model;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.niblet.virtualization.model.RequestBodyConstraints.BodyFormat;
+
+/**
+ * Filters match candidates by their {@link RequestBodyConstraints} in a single
+ * streaming pass over the request body. No tree is built: the tokenizer skips
+ * every object, array or element that no candidate's field path runs through,
+ * each referenced field is evaluated for every candidate waiting on it the
+ * first time it is read, and the pass ends as soon as every candidate has
+ * matched or failed.
+ */
+public class RequestBodyMatcher {
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	// shared, as a per-thread factory would be built for every request on virtual
+	// threads; it is configured once here and only creates readers afterwards
+	private static final XMLInputFactory XML_INPUT_FACTORY = newXmlInputFactory();
+
+	// the candidates still waiting on each field path; a path is removed once read
+	private final Map<String, List<PendingMatch>> pendingMatchesByPath = new HashMap<>();
+	private final List<RequestBodyConstraints> constraints = new ArrayList<>();
+	private final Set<MockApiMatchData> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final MockApiRequest request;
+	private int undecidedCount;
+
+	private RequestBodyMatcher(MockApiRequest request) {
+
+		this.request = request;
+	}
+
+	/**
+	 * Removes every candidate whose body constraints the request body doesn't
+	 * satisfy, and adds the body match-type counts to the rest. Candidates
+	 * without body constraints are left as they are.
+	 */
+	public static void filter(List<MockApiMatchData> candidates, MockApiRequest request) {
+
+		String requestBody = request.getRequestBody();
+		RequestBodyMatcher matcher = null;
+		BodyFormat bodyFormat = null;
+
+		for (MockApiMatchData candidate : candidates) {
+
+			RequestBodyConstraints candidateConstraints = candidate.getCompiledMockApi().getRequestBodyConstraints();
+
+			if (null == candidateConstraints) {
+
+				continue;
+			}
+
+			if (null == matcher) {
+
+				matcher = new RequestBodyMatcher(request);
+				bodyFormat = detectFormat(requestBody);
+			}
+
+			matcher.add(candidate, candidateConstraints, requestBody, bodyFormat);
+		}
+
+		// nothing constrains the body, so it is never read
+		if (null == matcher) {
+
+			return;
+		}
+
+		if (matcher.undecidedCount > 0) {
+
+			boolean wellFormed;
+
+			try {
+
+				if (BodyFormat.JSON == bodyFormat) {
+
+					matcher.scanJson(requestBody);
+
+				} else {
+
+					matcher.scanXml(requestBody);
+				}
+
+				wellFormed = true;
+
+			} catch (IOException | XMLStreamException e) {
+
+				// a malformed body decides nothing more; candidates still waiting fail below
+				wellFormed = false;
+			}
+
+			// the paths left were never found in the body
+			for (Entry<String, List<PendingMatch>> pathPendingMatches : matcher.pendingMatchesByPath.entrySet()) {
+
+				for (PendingMatch pendingMatch : pathPendingMatches.getValue()) {
+
+					if (!wellFormed) {
+
+						matcher.rejected.add(pendingMatch.matchData);
+
+					} else if (!pendingMatch.decided) {
+
+						matcher.decide(pendingMatch,
+								pendingMatch.constraints.matchAbsentField(pathPendingMatches.getKey()));
+					}
+				}
+			}
+		}
+
+		candidates.removeIf(matcher.rejected::contains);
+	}
+
+	private void add(MockApiMatchData candidate, RequestBodyConstraints candidateConstraints, String requestBody,
+			BodyFormat bodyFormat) {
+
+		if (null != candidateConstraints.getExactMatch()) {
+
+			if (!candidateConstraints.getExactMatch().equals(null == requestBody ? "" : requestBody)) {
+
+				rejected.add(candidate);
+				return;
+			}
+
+			candidate.increment(MatchCategory.BODY_EXACT);
+		}
+
+		if (candidateConstraints.getFieldPaths().isEmpty()) {
+
+			return;
+		}
+
+		if (candidateConstraints.getFormat() != bodyFormat) {
+
+			rejected.add(candidate);
+			return;
+		}
+
+		PendingMatch pendingMatch = new PendingMatch(candidate, candidateConstraints);
+
+		for (String path : candidateConstraints.getFieldPaths()) {
+
+			pendingMatchesByPath.computeIfAbsent(path, k -> new ArrayList<>()).add(pendingMatch);
+		}
+
+		constraints.add(candidateConstraints);
+		undecidedCount++;
+	}
+
+	private boolean isAncestorPath(String path) {
+
+		for (RequestBodyConstraints candidateConstraints : constraints) {
+
+			if (candidateConstraints.isAncestorPath(path)) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Evaluates a field for every candidate waiting on it.
+	 *
+	 * @return false once every candidate is decided, so the scan can stop
+	 */
+	private boolean accept(String path, String text, boolean isNull) {
+
+		List<PendingMatch> pendingMatches = pendingMatchesByPath.remove(path);
+
+		for (PendingMatch pendingMatch : pendingMatches) {
+
+			if (pendingMatch.decided) {
+
+				continue;
+			}
+
+			decide(pendingMatch, pendingMatch.constraints.matchField(path, text, isNull, request));
+		}
+
+		return undecidedCount > 0;
+	}
+
+	/**
+	 * @param matchCategory how one of the candidate's fields matched, or null
+	 *                      when it didn't
+	 */
+	private void decide(PendingMatch pendingMatch, MatchCategory matchCategory) {
+
+		if (null == matchCategory) {
+
+			pendingMatch.decided = true;
+			rejected.add(pendingMatch.matchData);
+			undecidedCount--;
+
+		} else {
+
+			pendingMatch.matchData.increment(matchCategory);
+
+			if (--pendingMatch.remainingFieldCount == 0) {
+
+				pendingMatch.decided = true;
+				undecidedCount--;
+			}
+		}
+	}
+
+	private void scanJson(String requestBody) throws IOException {
+
+		try (JsonParser parser = JSON_FACTORY.createParser(requestBody)) {
+
+			// only containers on the way to a field path are entered, so this is no
+			// deeper than the longest path
+			Deque<JsonContainer> containers = new ArrayDeque<>();
+			String fieldName = null;
+			JsonToken token;
+
+			while (null != (token = parser.nextToken())) {
+
+				if (JsonToken.FIELD_NAME == token) {
+
+					fieldName = parser.currentName();
+					continue;
+				}
+
+				if (token.isStructEnd()) {
+
+					containers.pop();
+					continue;
+				}
+
+				JsonContainer parent = containers.peek();
+				String path = null == parent ? "$"
+						: parent.array ? parent.path + "[" + parent.nextIndex++ + "]" : parent.path + "." + fieldName;
+
+				if (pendingMatchesByPath.containsKey(path)) {
+
+					boolean isNull = JsonToken.VALUE_NULL == token;
+
+					if (!accept(path, token.isScalarValue() && !isNull ? parser.getText() : null, isNull)) {
+
+						return;
+					}
+				}
+
+				if (token.isStructStart()) {
+
+					if (isAncestorPath(path)) {
+
+						containers.push(new JsonContainer(path, JsonToken.START_ARRAY == token));
+
+					} else {
+
+						parser.skipChildren();
+					}
+				}
+			}
+		}
+	}
+
+	private void scanXml(String requestBody) throws XMLStreamException {
+
+		XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(requestBody));
+
+		try {
+
+			// like the JSON scan, only elements on the way to a field path are entered
+			Deque<XmlElement> elements = new ArrayDeque<>();
+			int skippedDepth = 0;
+
+			while (reader.hasNext()) {
+
+				int event = reader.next();
+
+				if (skippedDepth > 0) {
+
+					if (XMLStreamConstants.START_ELEMENT == event) {
+						skippedDepth++;
+					} else if (XMLStreamConstants.END_ELEMENT == event) {
+						skippedDepth--;
+					}
+
+					continue;
+				}
+
+				if (XMLStreamConstants.START_ELEMENT == event) {
+
+					XmlElement parent = elements.peek();
+					String path = (null == parent ? "" : parent.path) + "/" + reader.getLocalName();
+					boolean isField = pendingMatchesByPath.containsKey(path);
+
+					if (!isField && !isAncestorPath(path)) {
+
+						skippedDepth = 1;
+						continue;
+					}
+
+					for (int i = 0; i < reader.getAttributeCount(); i++) {
+
+						String attributePath = path + "/@" + reader.getAttributeLocalName(i);
+
+						if (pendingMatchesByPath.containsKey(attributePath)
+								&& !accept(attributePath, reader.getAttributeValue(i), false)) {
+
+							return;
+						}
+					}
+
+					boolean isNil = isField && "true"
+							.equals(reader.getAttributeValue(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "nil"));
+					elements.push(new XmlElement(path, isField ? new StringBuilder() : null, isNil));
+
+				} else if (XMLStreamConstants.CHARACTERS == event || XMLStreamConstants.CDATA == event) {
+
+					XmlElement element = elements.peek();
+
+					if (null != element && null != element.text) {
+
+						element.text.append(reader.getText());
+					}
+
+				} else if (XMLStreamConstants.END_ELEMENT == event) {
+
+					XmlElement element = elements.pop();
+
+					// an element's value is its own text, without its children's
+					if (null != element.text && pendingMatchesByPath.containsKey(element.path)
+							&& !accept(element.path, element.isNil ? null : element.text.toString().strip(),
+									element.isNil)) {
+
+						return;
+					}
+				}
+			}
+
+		} finally {
+
+			reader.close();
+		}
+	}
+
+	/**
+	 * @return the format implied by the body's first character, or null when the
+	 *         body is empty or neither JSON nor XML
+	 */
+	private static BodyFormat detectFormat(String requestBody) {
+
+		if (null == requestBody) {
+
+			return null;
+		}
+
+		for (int i = 0; i < requestBody.length(); i++) {
+
+			char c = requestBody.charAt(i);
+
+			if (c == '{' || c == '[') {
+
+				return BodyFormat.JSON;
+			}
+
+			if (c == '<') {
+
+				return BodyFormat.XML;
+			}
+
+			if (!Character.isWhitespace(c) && c != '\uFEFF') {
+
+				return null;
+			}
+		}
+
+		return null;
+	}
+
+	private static XMLInputFactory newXmlInputFactory() {
+
+		// request bodies are untrusted, so DTDs and external entities are refused
+		XMLInputFactory xmlInputFactory = XMLInputFactory.newFactory();
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+		return xmlInputFactory;
+	}
+
+	private static class PendingMatch {
+
+		private final MockApiMatchData matchData;
+		private final RequestBodyConstraints constraints;
+		private int remainingFieldCount;
+		private boolean decided;
+
+		private PendingMatch(MockApiMatchData matchData, RequestBodyConstraints constraints) {
+
+			this.matchData = matchData;
+			this.constraints = constraints;
+			this.remainingFieldCount = constraints.getFieldPaths().size();
+		}
+	}
+
+	private static class JsonContainer {
+
+		private final String path;
+		private final boolean array;
+		private int nextIndex;
+
+		private JsonContainer(String path, boolean array) {
+
+			this.path = path;
+			this.array = array;
+		}
+	}
+
+	private static class XmlElement {
+
+		private final String path;
+		// only collected for field paths
+		private final StringBuilder text;
+		private final boolean isNil;
+
+		private XmlElement(String path, StringBuilder text, boolean isNil) {
+
+			this.path = path;
+			this.text = text;
+			this.isNil = isNil;
+		}
+	}
+
+}
@@ -0,0 +1,367 @@
+package com.niblet.virtualization.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.random.RandomGenerator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.niblet.virtualization.exception.InvalidResponseBodyException;
+
+/**
+ * A responseBody compiled into literal chunks and generator nodes. Compiling
+ * parses the data generation syntax and validates its arguments once, so
+ * rendering is a single pass into a pre-sized buffer. Character tokens index
+ * into primitive alphabet tables, filled from a few random bits per character.
+ */
+public class ResponseTemplate {
+
+	private static final String ALPHA_LOWER = "abcdefghijklmnopqrstuvwxyz";
+	private static final String ALPHA_UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+	private static final String DIGITS = "0123456789";
+
+	// never modified; shared by every template
+	private static final char[] ALPHA_LOWER_ALPHABET = ALPHA_LOWER.toCharArray();
+	private static final char[] ALPHA_UPPER_ALPHABET = ALPHA_UPPER.toCharArray();
+	private static final char[] ALPHA_ALPHABET = (ALPHA_LOWER + ALPHA_UPPER).toCharArray();
+	private static final char[] DIGIT_ALPHABET = DIGITS.toCharArray();
+	private static final char[] ALPHA_NUMERIC_ALPHABET = (ALPHA_LOWER + ALPHA_UPPER + DIGITS).toCharArray();
+	private static final char[] CHARACTER_ALPHABET = (ALPHA_LOWER + ALPHA_UPPER + DIGITS
+			+ "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~").toCharArray();
+
+	private static final String SELECT_CHARACTERS = "[\\w!@#\\$%\\^&\\*\\(\\)\\-\\+=\\`~\\{\\}\\[\\]\\|\\\\\\;\\:\\\",\\.\\'\\?\\/<>]+";
+	private static final String DECIMAL = "-?\\d*\\.?\\d*";
+
+	// every generator token, each with an exact length or a length range
+	private static final Pattern TOKEN_PATTERN = Pattern.compile("\\{(?:"
+			+ "(?<charset>lower|upper|alpha|alphanumeric|characters|digits)\\((?<charsetMin>\\d+)(?:,(?<charsetMax>\\d+))?\\)"
+			+ "|select\\[(?<select>" + SELECT_CHARACTERS + ")\\]\\((?<selectMin>\\d+)(?:,(?<selectMax>\\d+))?\\)"
+			+ "|number\\((?<numberMin>-?\\d+),(?<numberMax>-?\\d+)\\)"
+			+ "|decimal\\((?<decimalMin>" + DECIMAL + "),(?<decimalMax>" + DECIMAL
+			+ "),(?<decimalPlacesMin>\\d+)(?:,(?<decimalPlacesMax>\\d+))?\\)" + ")\\}");
+
+	private final List<Node> nodes;
+	private final int estimatedLength;
+
+	private ResponseTemplate(List<Node> nodes) {
+
+		this.nodes = Collections.unmodifiableList(nodes);
+		this.estimatedLength = nodes.stream().mapToInt(Node::estimatedLength).sum();
+	}
+
+	public static ResponseTemplate compile(String payload) throws InvalidResponseBodyException {
+
+		List<Node> nodes = new ArrayList<>();
+		Matcher tokenMatcher = TOKEN_PATTERN.matcher(payload);
+		int literalStart = 0;
+
+		while (tokenMatcher.find()) {
+
+			if (tokenMatcher.start() > literalStart) {
+
+				nodes.add(new LiteralNode(payload.substring(literalStart, tokenMatcher.start())));
+			}
+
+			nodes.add(compileToken(tokenMatcher));
+			literalStart = tokenMatcher.end();
+		}
+
+		if (literalStart < payload.length()) {
+
+			nodes.add(new LiteralNode(payload.substring(literalStart)));
+		}
+
+		return new ResponseTemplate(nodes);
+	}
+
+	/**
+	 * @return true when the template has no generator tokens, so every render
+	 *         produces the same text
+	 */
+	public boolean isStatic() {
+
+		return nodes.stream().allMatch(LiteralNode.class::isInstance);
+	}
+
+	public String render(RandomGenerator random) {
+
+		StringBuilder rendered = new StringBuilder(estimatedLength);
+
+		for (Node node : nodes) {
+
+			node.appendTo(rendered, random);
+		}
+
+		return rendered.toString();
+	}
+
+	private static Node compileToken(Matcher tokenMatcher) throws InvalidResponseBodyException {
+
+		String token = tokenMatcher.group();
+
+		if (null != tokenMatcher.group("charset")) {
+
+			char[] alphabet = switch (tokenMatcher.group("charset")) {
+			case "lower" -> ALPHA_LOWER_ALPHABET;
+			case "upper" -> ALPHA_UPPER_ALPHABET;
+			case "alpha" -> ALPHA_ALPHABET;
+			case "alphanumeric" -> ALPHA_NUMERIC_ALPHABET;
+			case "digits" -> DIGIT_ALPHABET;
+			default -> CHARACTER_ALPHABET;
+			};
+
+			return new CharacterNode(token, alphabet, tokenMatcher.group("charsetMin"),
+					tokenMatcher.group("charsetMax"));
+		}
+
+		if (null != tokenMatcher.group("select")) {
+
+			return new CharacterNode(token, toAlphabet(tokenMatcher.group("select")),
+					tokenMatcher.group("selectMin"), tokenMatcher.group("selectMax"));
+		}
+
+		if (null != tokenMatcher.group("numberMin")) {
+
+			return new NumberNode(token, tokenMatcher.group("numberMin"), tokenMatcher.group("numberMax"));
+		}
+
+		return new DecimalNode(token, tokenMatcher.group("decimalMin"), tokenMatcher.group("decimalMax"),
+				tokenMatcher.group("decimalPlacesMin"), tokenMatcher.group("decimalPlacesMax"));
+	}
+
+	private static int parseInt(String token, String value) throws InvalidResponseBodyException {
+
+		try {
+
+			return Integer.parseInt(value);
+
+		} catch (NumberFormatException e) {
+
+			throw new InvalidResponseBodyException("Invalid number (" + value + ") in " + token + ".");
+		}
+	}
+
+	private static double parseDouble(String token, String value) throws InvalidResponseBodyException {
+
+		try {
+
+			return Double.parseDouble(value);
+
+		} catch (NumberFormatException e) {
+
+			throw new InvalidResponseBodyException("Invalid number (" + value + ") in " + token + ".");
+		}
+	}
+
+	/**
+	 * @return the distinct characters, so a repeated one is not picked more often
+	 */
+	private static char[] toAlphabet(String characters) {
+
+		StringBuilder alphabet = new StringBuilder(characters.length());
+		characters.chars().distinct().forEach(c -> alphabet.append((char) c));
+
+		return alphabet.toString().toCharArray();
+	}
+
+	private interface Node {
+
+		void appendTo(StringBuilder rendered, RandomGenerator random);
+
+		int estimatedLength();
+	}
+
+	private static class LiteralNode implements Node {
+
+		private final String literal;
+
+		private LiteralNode(String literal) {
+
+			this.literal = literal;
+		}
+
+		@Override
+		public void appendTo(StringBuilder rendered, RandomGenerator random) {
+
+			rendered.append(literal);
+		}
+
+		@Override
+		public int estimatedLength() {
+
+			return literal.length();
+		}
+	}
+
+	private static class CharacterNode implements Node {
+
+		private final char[] alphabet;
+		// characters cut from each random long
+		private final int charactersPerLong;
+		private final int lengthRangeStart;
+		private final int lengthRangeEnd;
+
+		private CharacterNode(String token, char[] alphabet, String lengthRangeStart, String lengthRangeEnd)
+				throws InvalidResponseBodyException {
+
+			this.alphabet = alphabet;
+			this.charactersPerLong = charactersPerLong(alphabet.length);
+			this.lengthRangeStart = parseInt(token, lengthRangeStart);
+			// no range end means an exact length
+			this.lengthRangeEnd = null == lengthRangeEnd ? this.lengthRangeStart : parseInt(token, lengthRangeEnd);
+
+			if (this.lengthRangeStart > this.lengthRangeEnd) {
+
+				throw new InvalidResponseBodyException("Length range start (" + this.lengthRangeStart
+						+ ") should not be greater than range end (" + this.lengthRangeEnd + ") in " + token + ".");
+			}
+		}
+
+		/**
+		 * Each character takes an alphabet-sized share of the long's bits, so as
+		 * many are cut from it as still leave 32 bits unused. That keeps every
+		 * character within 2^-32 of equally likely.
+		 */
+		private static int charactersPerLong(int alphabetSize) {
+
+			long combinations = 1L;
+			int characters = 0;
+
+			while (characters < 16 && combinations * alphabetSize <= 1L << 32) {
+
+				combinations *= alphabetSize;
+				characters++;
+			}
+
+			return characters;
+		}
+
+		@Override
+		public void appendTo(StringBuilder rendered, RandomGenerator random) {
+
+			int length = random.nextInt(lengthRangeEnd - lengthRangeStart + 1) + lengthRangeStart;
+			char[] characters = new char[length];
+			int i = 0;
+
+			while (i < length) {
+
+				// the long is read as a fraction of 2^64: scaling it by the alphabet size
+				// gives an index in the high bits and leaves the rest for the next one
+				long bits = random.nextLong();
+
+				for (int j = 0; j < charactersPerLong && i < length; j++) {
+
+					characters[i++] = alphabet[(int) Math.unsignedMultiplyHigh(bits, alphabet.length)];
+					bits *= alphabet.length;
+				}
+			}
+
+			rendered.append(characters);
+		}
+
+		@Override
+		public int estimatedLength() {
+
+			return lengthRangeEnd;
+		}
+	}
+
+	private static class NumberNode implements Node {
+
+		private final int rangeStart;
+		private final int rangeEnd;
+
+		private NumberNode(String token, String rangeStart, String rangeEnd) throws InvalidResponseBodyException {
+
+			this.rangeStart = parseInt(token, rangeStart);
+			this.rangeEnd = parseInt(token, rangeEnd);
+
+			if ((long) this.rangeEnd - this.rangeStart + 1 > Integer.MAX_VALUE || this.rangeStart > this.rangeEnd) {
+
+				throw new InvalidResponseBodyException("Number range (" + this.rangeStart + " to " + this.rangeEnd
+						+ ") is not valid in " + token + ".");
+			}
+		}
+
+		@Override
+		public void appendTo(StringBuilder rendered, RandomGenerator random) {
+
+			rendered.append(random.nextInt(rangeEnd - rangeStart + 1) + rangeStart);
+		}
+
+		@Override
+		public int estimatedLength() {
+
+			return 11;
+		}
+	}
+
+	private static class DecimalNode implements Node {
+
+		private final double rangeStart;
+		private final double rangeEnd;
+		private final int minDecimalPlaces;
+		private final int maxDecimalPlaces;
+
+		private DecimalNode(String token, String rangeStart, String rangeEnd, String minDecimalPlaces,
+				String maxDecimalPlaces) throws InvalidResponseBodyException {
+
+			this.rangeStart = parseDouble(token, rangeStart);
+			this.rangeEnd = parseDouble(token, rangeEnd);
+			this.minDecimalPlaces = parseInt(token, minDecimalPlaces);
+			// no max means exact decimal places
+			this.maxDecimalPlaces = null == maxDecimalPlaces ? this.minDecimalPlaces
+					: parseInt(token, maxDecimalPlaces);
+
+			if (this.minDecimalPlaces > this.maxDecimalPlaces) {
+
+				throw new InvalidResponseBodyException(
+						"minDecimalPlaces (" + this.minDecimalPlaces + ") should be less than maxDecimalPlaces ("
+								+ this.maxDecimalPlaces + ") for floating point numbers.");
+
+			} else if (this.minDecimalPlaces < 1) {
+
+				throw new InvalidResponseBodyException("minDecimalPlaces (" + this.minDecimalPlaces
+						+ ") must be greater than 0 for floating point numbers.");
+
+			} else if (this.maxDecimalPlaces > 10) {
+
+				throw new InvalidResponseBodyException("maxDecimalPlaces (" + this.maxDecimalPlaces
+						+ ") should be less than 11 for floating point numbers.");
+			}
+
+			if (!(this.rangeEnd - this.rangeStart + 1 > 0)) {
+
+				throw new InvalidResponseBodyException("Decimal range (" + this.rangeStart + " to " + this.rangeEnd
+						+ ") is not valid in " + token + ".");
+			}
+		}
+
+		@Override
+		public void appendTo(StringBuilder rendered, RandomGenerator random) {
+
+			double randomDouble = random.nextDouble(rangeEnd - rangeStart + 1) + rangeStart;
+			String str = Double.toString(randomDouble);
+			str = str.substring(0, Math.min(str.length(), str.indexOf('.') + maxDecimalPlaces + 1));
+
+			String truncatedZeros = Double.valueOf(str).toString();
+
+			if (minDecimalPlaces > truncatedZeros.length() - truncatedZeros.indexOf('.') - 1) {
+
+				rendered.append(str, 0, Math.min(str.length(), str.indexOf('.') + minDecimalPlaces + 1));
+
+			} else {
+
+				rendered.append(truncatedZeros);
+			}
+		}
+
+		@Override
+		public int estimatedLength() {
+
+			return 24;
+		}
+	}
+
+}
@@ -0,0 +1,341 @@
+package com.niblet.virtualization.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.contract.BulkImportResponse;
+import com.niblet.virtualization.contract.MockApiDefinition;
+import com.niblet.virtualization.contract.StatusEnum;
+import com.niblet.virtualization.exception.InvalidRegexException;
+import com.niblet.virtualization.exception.InvalidResponseBodyException;
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+import com.niblet.virtualization.jpa.repository.MockApiRequestResponseJdbcRepository;
+import com.niblet.virtualization.model.CompiledMockApi;
+import com.niblet.virtualization.util.NibletServiceVirtualizationUtils;
+
+/**
+ * NDJSON import and export of mocks in their stored form. An import is read
+ * line by line, validated as saving a mock through the API would, checked for
+ * duplicates against the catalog's fingerprints, written in JDBC batches inside
+ * a single transaction, and the catalog is rebuilt once at the end. A batch the
+ * DB refuses is retried row by row, so a row that lost a race to a concurrent
+ * save is reported with the other rejected lines.
+ */
+@Component
+public class MockApiBulkService {
+
+	private static final int MAX_REPORTED_ERRORS = 100;
+
+	private final MockApiCatalog mockApiCatalog;
+	private final MockApiRequestResponseJdbcRepository mockApiRequestResponseJdbcRepository;
+	private final TransactionTemplate transactionTemplate;
+	private final ObjectMapper objectMapper;
+	private final NibletServiceVirtualizationProperties properties;
+
+	public MockApiBulkService(MockApiCatalog mockApiCatalog,
+			MockApiRequestResponseJdbcRepository mockApiRequestResponseJdbcRepository, DataSource dataSource,
+			ObjectMapper objectMapper, NibletServiceVirtualizationProperties properties) {
+
+		this.mockApiCatalog = mockApiCatalog;
+		this.mockApiRequestResponseJdbcRepository = mockApiRequestResponseJdbcRepository;
+		// the import only writes through JDBC, and unlike the JPA transaction
+		// manager, a JDBC one can set savepoints
+		this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		this.objectMapper = objectMapper;
+		this.properties = properties;
+	}
+
+	public ResponseEntity<BulkImportResponse> importMockApis(InputStream ndjson) {
+
+		mockApiCatalog.loadDatabase();
+
+		BulkImportResponse bulkImportResponse = new BulkImportResponse();
+		bulkImportResponse.setErrors(new ArrayList<>());
+
+		try {
+
+			transactionTemplate.executeWithoutResult(status -> importLines(ndjson, bulkImportResponse, status));
+
+		} catch (UncheckedIOException e) {
+
+			bulkImportResponse.setMessage("Unable to read request body, nothing was imported: " + e.getMessage());
+			bulkImportResponse.setStatus(StatusEnum.FAILURE);
+			bulkImportResponse.setCreatedCount(0);
+
+			return new ResponseEntity<>(bulkImportResponse, HttpStatus.BAD_REQUEST);
+		}
+
+		mockApiCatalog.refresh();
+
+		bulkImportResponse.setMessage("Imported " + bulkImportResponse.getCreatedCount() + " Mock APIs, rejected "
+				+ bulkImportResponse.getRejectedCount() + ".");
+		bulkImportResponse.setStatus(StatusEnum.SUCCESS);
+
+		return new ResponseEntity<>(bulkImportResponse, HttpStatus.OK);
+	}
+
+	public void exportMockApis(OutputStream ndjson) throws IOException {
+
+		mockApiCatalog.loadDatabase();
+
+		try {
+
+			mockApiRequestResponseJdbcRepository.forEach(entity -> {
+
+				try {
+
+					ndjson.write(objectMapper.writeValueAsBytes(toDefinition(entity)));
+					ndjson.write('\n');
+
+				} catch (IOException e) {
+
+					throw new UncheckedIOException(e);
+				}
+			});
+
+		} catch (UncheckedIOException e) {
+
+			throw e.getCause();
+		}
+	}
+
+	private void importLines(InputStream ndjson, BulkImportResponse bulkImportResponse, TransactionStatus status) {
+
+		Set<String> fingerprints = new HashSet<>(mockApiCatalog.getFingerprints());
+
+		List<MockApiRequestResponseEntity> batch = new ArrayList<>(MockApiRequestResponseJdbcRepository.BATCH_SIZE);
+		List<Integer> batchLineNumbers = new ArrayList<>(MockApiRequestResponseJdbcRepository.BATCH_SIZE);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+		int lineNumber = 0;
+		String line;
+
+		try {
+
+			while (null != (line = reader.readLine())) {
+
+				lineNumber++;
+
+				if (StringUtils.isBlank(line)) {
+
+					continue;
+				}
+
+				String error = null;
+
+				try {
+
+					MockApiRequestResponseEntity entity = toEntity(objectMapper.readValue(line, MockApiDefinition.class));
+					error = validate(entity);
+
+					if (null == error && !fingerprints.add(entity.getMatchFingerprint())) {
+
+						error = "request details are an exact match for an existing Mock API";
+					}
+
+					if (null == error) {
+
+						batch.add(entity);
+						batchLineNumbers.add(lineNumber);
+					}
+
+				} catch (JsonProcessingException e) {
+
+					error = "invalid JSON: " + e.getOriginalMessage();
+				}
+
+				if (null != error) {
+
+					reject(bulkImportResponse, lineNumber, error);
+				}
+
+				if (batch.size() == MockApiRequestResponseJdbcRepository.BATCH_SIZE) {
+
+					insertBatch(batch, batchLineNumbers, bulkImportResponse, status);
+				}
+			}
+
+		} catch (IOException e) {
+
+			throw new UncheckedIOException(e);
+		}
+
+		insertBatch(batch, batchLineNumbers, bulkImportResponse, status);
+	}
+
+	private void insertBatch(List<MockApiRequestResponseEntity> batch, List<Integer> batchLineNumbers,
+			BulkImportResponse bulkImportResponse, TransactionStatus status) {
+
+		if (batch.isEmpty()) {
+
+			return;
+		}
+
+		if (null == insert(batch, status)) {
+
+			bulkImportResponse.setCreatedCount(bulkImportResponse.getCreatedCount() + batch.size());
+
+		} else {
+
+			// a mock saved since the fingerprints were read can claim one of them; find
+			// the rows the DB refuses by inserting them one at a time
+			for (int i = 0; i < batch.size(); i++) {
+
+				DataIntegrityViolationException e = insert(List.of(batch.get(i)), status);
+
+				if (null == e) {
+
+					bulkImportResponse.setCreatedCount(bulkImportResponse.getCreatedCount() + 1);
+
+				} else {
+
+					reject(bulkImportResponse, batchLineNumbers.get(i), e instanceof DuplicateKeyException
+							? "request details are an exact match for an existing Mock API"
+							: "rejected by the database: " + e.getMostSpecificCause().getMessage());
+				}
+			}
+		}
+
+		batch.clear();
+		batchLineNumbers.clear();
+	}
+
+	/**
+	 * Inserts the mocks behind a savepoint, so a refused insert leaves the rest of
+	 * the import intact.
+	 *
+	 * @return why the DB refused them, in which case none were inserted, or null
+	 */
+	private DataIntegrityViolationException insert(List<MockApiRequestResponseEntity> entities,
+			TransactionStatus status) {
+
+		Object savepoint = status.createSavepoint();
+
+		try {
+
+			mockApiRequestResponseJdbcRepository.insertAll(entities);
+
+		} catch (DataIntegrityViolationException e) {
+
+			status.rollbackToSavepoint(savepoint);
+
+			return e;
+		}
+
+		status.releaseSavepoint(savepoint);
+
+		return null;
+	}
+
+	/**
+	 * @return why the mock can't be imported, or null if it can
+	 */
+	private String validate(MockApiRequestResponseEntity entity) {
+
+		if (StringUtils.isAnyBlank(entity.getApiPath(), entity.getRequestVerb(), entity.getRequestQueryParameters(),
+				entity.getResponseStatus())) {
+
+			return "apiPath, requestVerb, requestQueryParameters and responseStatus are required";
+		}
+
+		String bodyFileDirectory = properties.getBodyFiles().getDirectory();
+
+		try {
+
+			// the same checks as saving a mock through the API
+			NibletServiceVirtualizationUtils.validateResponseBody(bodyFileDirectory, entity.getResponseBody(),
+					entity.getResponseBodyFile());
+
+			// only validated, so no responses are pre-generated for it
+			new CompiledMockApi(entity, bodyFileDirectory, 0).validateCustomRegexes();
+
+			return null;
+
+		} catch (IllegalArgumentException e) {
+
+			return e.getMessage();
+
+		} catch (InvalidResponseBodyException e) {
+
+			return "invalid responseBody: " + e.getMessage();
+
+		} catch (InvalidRegexException e) {
+
+			return "invalid custom regex: " + e.getMessage();
+		}
+	}
+
+	private static void reject(BulkImportResponse bulkImportResponse, int lineNumber, String error) {
+
+		bulkImportResponse.setRejectedCount(bulkImportResponse.getRejectedCount() + 1);
+
+		if (bulkImportResponse.getErrors().size() < MAX_REPORTED_ERRORS) {
+
+			bulkImportResponse.getErrors().add("line " + lineNumber + ": " + error);
+		}
+	}
+
+	private static MockApiRequestResponseEntity toEntity(MockApiDefinition definition) {
+
+		MockApiRequestResponseEntity entity = new MockApiRequestResponseEntity();
+		entity.setApiPath(definition.getApiPath());
+		entity.setRequestVerb(definition.getRequestVerb());
+		entity.setRequestHeaders(definition.getRequestHeaders());
+		entity.setRequestQueryParameters(definition.getRequestQueryParameters());
+		entity.setRequestBody(definition.getRequestBody());
+		entity.setResponseBody(definition.getResponseBody());
+		entity.setResponseBodyFile(definition.getResponseBodyFile());
+		entity.setResponseStatus(definition.getResponseStatus());
+		entity.setDelayMode(definition.getDelayMode());
+		entity.setDelayMillis(definition.getDelayMillis());
+		entity.setDelayUpperMillis(definition.getDelayUpperMillis());
+		entity.setPregenerateResponses(definition.getPregenerateResponses());
+		entity.updateMatchFingerprint();
+
+		return entity;
+	}
+
+	private static MockApiDefinition toDefinition(MockApiRequestResponseEntity entity) {
+
+		MockApiDefinition definition = new MockApiDefinition();
+		definition.setId(entity.getId());
+		definition.setApiPath(entity.getApiPath());
+		definition.setRequestVerb(entity.getRequestVerb());
+		definition.setRequestHeaders(entity.getRequestHeaders());
+		definition.setRequestQueryParameters(entity.getRequestQueryParameters());
+		definition.setRequestBody(entity.getRequestBody());
+		definition.setResponseBody(entity.getResponseBody());
+		definition.setResponseBodyFile(entity.getResponseBodyFile());
+		definition.setResponseStatus(entity.getResponseStatus());
+		definition.setDelayMode(entity.getDelayMode());
+		definition.setDelayMillis(entity.getDelayMillis());
+		definition.setDelayUpperMillis(entity.getDelayUpperMillis());
+		definition.setPregenerateResponses(entity.getPregenerateResponses());
+
+		return definition;
+	}
+
+}
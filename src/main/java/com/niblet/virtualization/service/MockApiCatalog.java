@@ -0,0 +1,338 @@
+package com.niblet.virtualization.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+import com.niblet.virtualization.jpa.repository.MockApiRequestResponseJdbcRepository;
+import com.niblet.virtualization.jpa.repository.MockApiRequestResponseJpaRepository;
+import com.niblet.virtualization.model.CompiledMockApi;
+import com.niblet.virtualization.model.MockApiMatchData;
+import com.niblet.virtualization.model.MockApiPathTrie;
+import com.niblet.virtualization.model.MockApiRequest;
+import com.niblet.virtualization.model.PregeneratedResponses;
+import com.niblet.virtualization.util.MockApiFingerprint;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index of every mock definition, compiled once and partitioned by
+ * request verb into a {@link MockApiPathTrie}. Matching runs entirely in the
+ * JVM; the DB is only read when the catalog is rebuilt. When a
+ * {@link MockApiCatalogSnapshot} is enabled, startup reads the snapshot instead
+ * of the DB.
+ * <p>
+ * The index is an immutable {@link Version} behind an atomic reference. A
+ * request reads the reference once and matches against that version
+ * throughout, so it never blocks and never sees a half-applied write. Writers
+ * are serialized, and a single saved mock is applied as a delta that copies
+ * only the verbs and path branches it touches.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MockApiCatalog {
+
+	/**
+	 * One published state of the catalog. Neither the maps nor anything they
+	 * reach is modified once published.
+	 *
+	 * @param entitiesById      every loaded mock, including ones with invalid
+	 *                          patterns
+	 * @param pregeneratedMocks the mocks with {@link PregeneratedResponses} to
+	 *                          keep topped up
+	 */
+	private record Version(Map<String, MockApiPathTrie> pathTriesByVerb,
+			Map<Long, MockApiRequestResponseEntity> entitiesById, Map<String, Long> mockApiIdsByFingerprint,
+			List<CompiledMockApi> pregeneratedMocks) {
+	}
+
+	private final MockApiRequestResponseJpaRepository mockApiRequestResponseJpaRepository;
+	private final NibletServiceVirtualizationProperties properties;
+	private final MockApiCatalogSnapshot mockApiCatalogSnapshot;
+	private final MockApiRequestResponseJdbcRepository mockApiRequestResponseJdbcRepository;
+
+	private final AtomicReference<Version> version = new AtomicReference<>(
+			new Version(Map.of(), Map.of(), Map.of(), List.of()));
+
+	// set when the catalog was started from a snapshot, until the DB is loaded
+	// from it
+	private List<MockApiRequestResponseEntity> snapshotEntitiesNotInDatabase;
+
+	@PostConstruct
+	public synchronized void init() {
+
+		List<MockApiRequestResponseEntity> snapshotEntities = mockApiCatalogSnapshot.read();
+
+		if (null == snapshotEntities) {
+
+			refresh();
+			return;
+		}
+
+		// the DB is only needed for writes, so it is left until the first one
+		rebuild(snapshotEntities);
+		snapshotEntitiesNotInDatabase = snapshotEntities;
+	}
+
+	/**
+	 * Reloads every mock from the DB, publishes a freshly compiled index and
+	 * snapshots it.
+	 */
+	public synchronized void refresh() {
+
+		loadDatabase();
+
+		List<MockApiRequestResponseEntity> entities = mockApiRequestResponseJpaRepository.findAll();
+		rebuild(entities);
+		mockApiCatalogSnapshot.write(entities);
+	}
+
+	/**
+	 * Brings the DB in line with the snapshot the catalog was started from. Must
+	 * be called before the DB is read or written.
+	 */
+	public synchronized void loadDatabase() {
+
+		if (null != snapshotEntitiesNotInDatabase) {
+
+			mockApiRequestResponseJdbcRepository.replaceAll(snapshotEntitiesNotInDatabase);
+			snapshotEntitiesNotInDatabase = null;
+
+			log.info("DB loaded from the catalog snapshot.");
+		}
+	}
+
+	public synchronized void rebuild(List<MockApiRequestResponseEntity> entities) {
+
+		Map<String, MockApiPathTrie> newPathTriesByVerb = new HashMap<>();
+		Map<Long, MockApiRequestResponseEntity> newEntitiesById = new HashMap<>(entities.size() * 2);
+		Map<String, Long> newMockApiIdsByFingerprint = new HashMap<>(entities.size() * 2);
+		List<CompiledMockApi> newPregeneratedMocks = new ArrayList<>();
+
+		// rebuilt mocks keep the responses rendered for them so far
+		Map<Long, CompiledMockApi> previousPregeneratedMocks = new HashMap<>();
+
+		for (CompiledMockApi previous : version.get().pregeneratedMocks()) {
+
+			previousPregeneratedMocks.put(previous.getEntity().getId(), previous);
+		}
+
+		for (MockApiRequestResponseEntity entity : entities) {
+
+			newEntitiesById.put(entity.getId(), entity);
+			newMockApiIdsByFingerprint.put(fingerprint(entity), entity.getId());
+
+			CompiledMockApi compiledMockApi = compile(entity, previousPregeneratedMocks.get(entity.getId()));
+
+			if (null != compiledMockApi) {
+
+				newPathTriesByVerb.computeIfAbsent(compiledMockApi.getRequestVerb(), k -> new MockApiPathTrie())
+						.insert(compiledMockApi);
+
+				if (null != compiledMockApi.getPregeneratedResponses()) {
+
+					newPregeneratedMocks.add(compiledMockApi);
+				}
+			}
+		}
+
+		version.set(new Version(Collections.unmodifiableMap(newPathTriesByVerb),
+				Collections.unmodifiableMap(newEntitiesById), Collections.unmodifiableMap(newMockApiIdsByFingerprint),
+				Collections.unmodifiableList(newPregeneratedMocks)));
+
+		log.info("Mock API catalog rebuilt with {} mocks.", entities.size());
+	}
+
+	/**
+	 * Saves the mock to the DB and applies it, as one step, so concurrent saves
+	 * of the same mock reach the catalog in the order they were committed.
+	 *
+	 * @throws DataIntegrityViolationException when another mock with the same
+	 *                                         match definition was saved first
+	 */
+	public synchronized void save(MockApiRequestResponseEntity entity) {
+
+		loadDatabase();
+		mockApiRequestResponseJpaRepository.save(entity);
+		apply(entity);
+	}
+
+	/**
+	 * Publishes a new version with a saved mock added, or replacing the mock with
+	 * its ID, and snapshots it. Only the new mock is compiled; the tries of other
+	 * verbs, and every node off the branches it leaves and joins, are shared with
+	 * the current version.
+	 */
+	public synchronized void apply(MockApiRequestResponseEntity entity) {
+
+		Version current = version.get();
+		Map<String, MockApiPathTrie> newPathTriesByVerb = new HashMap<>(current.pathTriesByVerb());
+		Map<Long, MockApiRequestResponseEntity> newEntitiesById = new HashMap<>(current.entitiesById());
+		Map<String, Long> newMockApiIdsByFingerprint = new HashMap<>(current.mockApiIdsByFingerprint());
+		List<CompiledMockApi> newPregeneratedMocks = new ArrayList<>(current.pregeneratedMocks());
+
+		MockApiRequestResponseEntity previous = newEntitiesById.put(entity.getId(), entity);
+
+		if (null != previous) {
+
+			newMockApiIdsByFingerprint.remove(fingerprint(previous));
+
+			MockApiPathTrie previousPathTrie = newPathTriesByVerb.get(previous.getRequestVerb());
+
+			if (null != previousPathTrie) {
+
+				MockApiPathTrie pathTrie = previousPathTrie.without(previous.getApiPath(), previous.getId());
+
+				if (pathTrie.isEmpty()) {
+					newPathTriesByVerb.remove(previous.getRequestVerb());
+				} else {
+					newPathTriesByVerb.put(previous.getRequestVerb(), pathTrie);
+				}
+			}
+		}
+
+		newMockApiIdsByFingerprint.put(fingerprint(entity), entity.getId());
+
+		CompiledMockApi previousPregeneratedMock = null;
+
+		for (CompiledMockApi mock : current.pregeneratedMocks()) {
+
+			if (entity.getId().equals(mock.getEntity().getId())) {
+
+				previousPregeneratedMock = mock;
+			}
+		}
+
+		newPregeneratedMocks.remove(previousPregeneratedMock);
+
+		CompiledMockApi compiledMockApi = compile(entity, previousPregeneratedMock);
+
+		if (null != compiledMockApi) {
+
+			newPathTriesByVerb.put(compiledMockApi.getRequestVerb(),
+					newPathTriesByVerb.getOrDefault(compiledMockApi.getRequestVerb(), new MockApiPathTrie())
+							.with(compiledMockApi));
+
+			if (null != compiledMockApi.getPregeneratedResponses()) {
+
+				newPregeneratedMocks.add(compiledMockApi);
+			}
+		}
+
+		version.set(new Version(Collections.unmodifiableMap(newPathTriesByVerb),
+				Collections.unmodifiableMap(newEntitiesById), Collections.unmodifiableMap(newMockApiIdsByFingerprint),
+				Collections.unmodifiableList(newPregeneratedMocks)));
+
+		log.info("Mock API with ID {} applied to the catalog.", entity.getId());
+
+		mockApiCatalogSnapshot.write(new ArrayList<>(newEntitiesById.values()));
+	}
+
+	/**
+	 * @param request a canonicalized request
+	 * @return match data, with match-type counts already set, for every mock
+	 *         matching the request verb, path, headers and query parameters. The
+	 *         list and its entries belong to the request and are reused for this
+	 *         thread's next one.
+	 */
+	public List<MockApiMatchData> gatherApiMocks(MockApiRequest request) {
+
+		MockApiPathTrie pathTrie = version.get().pathTriesByVerb().get(request.getHttpMethod());
+
+		if (null == pathTrie) {
+
+			return List.of();
+		}
+
+		pathTrie.find(request);
+
+		// compacted in place, keeping the order the trie found them in
+		List<MockApiMatchData> matches = request.getMatches();
+		int kept = 0;
+
+		for (int i = 0; i < matches.size(); i++) {
+
+			MockApiMatchData match = matches.get(i);
+
+			if (match.getCompiledMockApi().matchHeadersAndQueryParameters(request, match)) {
+
+				matches.set(kept++, match);
+			}
+		}
+
+		while (matches.size() > kept) {
+
+			matches.remove(matches.size() - 1);
+		}
+
+		return matches;
+	}
+
+	/**
+	 * @return the current version's mocks with {@link PregeneratedResponses};
+	 *         a mock replaced since is simply never matched again
+	 */
+	public List<CompiledMockApi> getPregeneratedMocks() {
+
+		return version.get().pregeneratedMocks();
+	}
+
+	public Set<Long> getMockApiIds() {
+
+		return version.get().entitiesById().keySet();
+	}
+
+	/**
+	 * @return the ID of the mock with this {@link MockApiFingerprint}, or null
+	 */
+	public Long findMockApiIdByFingerprint(String fingerprint) {
+
+		return version.get().mockApiIdsByFingerprint().get(fingerprint);
+	}
+
+	public Set<String> getFingerprints() {
+
+		return version.get().mockApiIdsByFingerprint().keySet();
+	}
+
+	private static String fingerprint(MockApiRequestResponseEntity entity) {
+
+		return MockApiFingerprint.of(entity.getRequestVerb(), entity.getApiPath(), entity.getRequestHeaders(),
+				entity.getRequestQueryParameters(), entity.getRequestBody());
+	}
+
+	/**
+	 * @param previous the mock's compiled form in the current version, whose
+	 *                 pre-generated responses are kept if it still renders them
+	 * @return the compiled mock, or null when it has an invalid pattern, delay or
+	 *         body file
+	 */
+	private CompiledMockApi compile(MockApiRequestResponseEntity entity, CompiledMockApi previous) {
+
+		try {
+
+			return new CompiledMockApi(entity, properties.getBodyFiles().getDirectory(),
+					properties.getPregenerationQueueDepth(), previous);
+
+		} catch (IllegalArgumentException e) {
+
+			log.error("Mock API with ID {} has an invalid pattern, delay or body file and will never match: {}",
+					entity.getId(), e.getMessage());
+
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,279 @@
+package com.niblet.virtualization.service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compact binary copy of every mock definition, written after each catalog
+ * rebuild and memory-mapped on startup, so the catalog can be built without
+ * waiting on a JDBC read.
+ * <p>
+ * Layout: magic, version, record count and CRC32 of the records, then per
+ * record the ID followed by each column as a length-prefixed UTF-8 string
+ * (length -1 for NULL), a flagged long or a flagged boolean.
+ * <p>
+ * Each write re-encodes every mock and fsyncs the file, so saving one mock
+ * costs O(N) in the catalog size. That is fine for admin writes at human pace;
+ * bulk imports and recorded responses write it once per batch, not per mock.
+ */
+@Component
+@Slf4j
+public class MockApiCatalogSnapshot {
+
+	private static final int MAGIC = 0x4E535643; // "NSVC"
+	private static final int VERSION = 3;
+	private static final int HEADER_LENGTH = 4 + 4 + 4 + 8;
+
+	private final Path snapshotFile;
+
+	public MockApiCatalogSnapshot(NibletServiceVirtualizationProperties properties) {
+
+		String file = properties.getSnapshot().getFile();
+		this.snapshotFile = StringUtils.isBlank(file) ? null : Paths.get(file);
+	}
+
+	public boolean isEnabled() {
+
+		return null != snapshotFile;
+	}
+
+	/**
+	 * @return the mocks in the snapshot, or null when snapshots are disabled or
+	 *         the file is missing, from another version or corrupt
+	 */
+	public List<MockApiRequestResponseEntity> read() {
+
+		if (!isEnabled() || !Files.isRegularFile(snapshotFile)) {
+
+			return null;
+		}
+
+		try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+
+				log.warn("Ignoring catalog snapshot {} written by another version.", snapshotFile);
+
+				return null;
+			}
+
+			int count = buffer.getInt();
+			long checksum = buffer.getLong();
+
+			CRC32 crc = new CRC32();
+			crc.update(buffer.slice());
+
+			if (crc.getValue() != checksum) {
+
+				log.warn("Ignoring corrupt catalog snapshot {}.", snapshotFile);
+
+				return null;
+			}
+
+			List<MockApiRequestResponseEntity> entities = new ArrayList<>(count);
+
+			for (int i = 0; i < count; i++) {
+
+				entities.add(readEntity(buffer));
+			}
+
+			return entities;
+
+		} catch (IOException | BufferUnderflowException e) {
+
+			log.warn("Unable to read catalog snapshot {}: {}", snapshotFile, e.toString());
+
+			return null;
+		}
+	}
+
+	/**
+	 * Writes to a temporary file first, so a crash never leaves a partial
+	 * snapshot behind.
+	 */
+	public void write(List<MockApiRequestResponseEntity> entities) {
+
+		if (!isEnabled()) {
+
+			return;
+		}
+
+		try {
+
+			ByteBuffer records = encode(entities);
+			CRC32 crc = new CRC32();
+			crc.update(records.duplicate());
+
+			Path directory = snapshotFile.toAbsolutePath().getParent();
+			Files.createDirectories(directory);
+			Path tempFile = Files.createTempFile(directory, snapshotFile.getFileName().toString(), ".tmp");
+
+			try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+
+				ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putInt(VERSION)
+						.putInt(entities.size()).putLong(crc.getValue()).flip();
+
+				ByteBuffer[] buffers = { header, records };
+
+				// a gathering write may stop short of the end
+				while (records.hasRemaining()) {
+
+					channel.write(buffers);
+				}
+
+				channel.force(false);
+			}
+
+			Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException e) {
+
+			log.error("Unable to write catalog snapshot {}: {}", snapshotFile, e.toString());
+		}
+	}
+
+	private static ByteBuffer encode(List<MockApiRequestResponseEntity> entities) throws IOException {
+
+		ExposedByteArrayOutputStream bytes = new ExposedByteArrayOutputStream(entities.size() * 256);
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(bytes))) {
+
+			for (MockApiRequestResponseEntity entity : entities) {
+
+				out.writeLong(entity.getId());
+				writeString(out, entity.getApiPath());
+				writeString(out, entity.getRequestVerb());
+				writeString(out, entity.getRequestHeaders());
+				writeString(out, entity.getRequestQueryParameters());
+				writeString(out, entity.getRequestBody());
+				writeString(out, entity.getResponseBody());
+				writeString(out, entity.getResponseBodyFile());
+				writeString(out, entity.getResponseStatus());
+				writeString(out, entity.getDelayMode());
+				writeLong(out, entity.getDelayMillis());
+				writeLong(out, entity.getDelayUpperMillis());
+				writeBoolean(out, entity.getPregenerateResponses());
+			}
+		}
+
+		return bytes.toByteBuffer();
+	}
+
+	private static MockApiRequestResponseEntity readEntity(ByteBuffer buffer) {
+
+		MockApiRequestResponseEntity entity = new MockApiRequestResponseEntity();
+		entity.setId(buffer.getLong());
+		entity.setApiPath(readString(buffer));
+		entity.setRequestVerb(readString(buffer));
+		entity.setRequestHeaders(readString(buffer));
+		entity.setRequestQueryParameters(readString(buffer));
+		entity.setRequestBody(readString(buffer));
+		entity.setResponseBody(readString(buffer));
+		entity.setResponseBodyFile(readString(buffer));
+		entity.setResponseStatus(readString(buffer));
+		entity.setDelayMode(readString(buffer));
+		entity.setDelayMillis(readLong(buffer));
+		entity.setDelayUpperMillis(readLong(buffer));
+		entity.setPregenerateResponses(readBoolean(buffer));
+		entity.updateMatchFingerprint();
+
+		return entity;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+
+		if (null == value) {
+
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(encoded.length);
+		out.write(encoded);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+
+		int length = buffer.getInt();
+
+		if (length < 0) {
+
+			return null;
+		}
+
+		byte[] encoded = new byte[length];
+		buffer.get(encoded);
+
+		return new String(encoded, StandardCharsets.UTF_8);
+	}
+
+	private static void writeLong(DataOutputStream out, Long value) throws IOException {
+
+		out.writeBoolean(null != value);
+
+		if (null != value) {
+
+			out.writeLong(value);
+		}
+	}
+
+	private static Long readLong(ByteBuffer buffer) {
+
+		return buffer.get() == 0 ? null : buffer.getLong();
+	}
+
+	private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+
+		out.writeBoolean(null != value);
+
+		if (null != value) {
+
+			out.writeBoolean(value);
+		}
+	}
+
+	private static Boolean readBoolean(ByteBuffer buffer) {
+
+		return buffer.get() == 0 ? null : buffer.get() != 0;
+	}
+
+	private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+		private ExposedByteArrayOutputStream(int size) {
+
+			super(size);
+		}
+
+		private ByteBuffer toByteBuffer() {
+
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+	}
+
+}
@@ -0,0 +1,157 @@
+package com.niblet.virtualization.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.service.MockApiRequestJournal.Entry;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Appends {@link MockApiRequestJournal} entries to a file as NDJSON. A single
+ * background thread drains everything recorded since its last pass, so request
+ * threads never wait on the disk. Entries overwritten in the ring before they
+ * were drained are counted and logged instead.
+ */
+@Component
+@Slf4j
+public class MockApiJournalWriter {
+
+	private final MockApiRequestJournal mockApiRequestJournal;
+	private final ObjectMapper objectMapper;
+	private final Path journalFile;
+	private final long flushIntervalMillis;
+
+	private ScheduledThreadPoolExecutor drainer;
+	private BufferedWriter writer;
+	// the next sequence to write; guarded by drain()
+	private long drainedSequence;
+
+	public MockApiJournalWriter(MockApiRequestJournal mockApiRequestJournal, ObjectMapper objectMapper,
+			NibletServiceVirtualizationProperties properties) {
+
+		this.mockApiRequestJournal = mockApiRequestJournal;
+		this.objectMapper = objectMapper;
+
+		String file = properties.getJournal().getFile();
+		this.journalFile = StringUtils.isBlank(file) ? null : Paths.get(file);
+		this.flushIntervalMillis = properties.getJournal().getFlushIntervalMillis();
+	}
+
+	public boolean isEnabled() {
+
+		return null != journalFile && mockApiRequestJournal.isEnabled();
+	}
+
+	@PostConstruct
+	public void start() throws IOException {
+
+		if (!isEnabled()) {
+
+			return;
+		}
+
+		Path directory = journalFile.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND);
+
+		drainer = new ScheduledThreadPoolExecutor(1, runnable -> {
+
+			Thread thread = new Thread(runnable, "mock-journal-writer");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+		drainer.scheduleWithFixedDelay(this::drain, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+
+		if (null == drainer) {
+
+			return;
+		}
+
+		drainer.shutdown();
+		drainer.awaitTermination(flushIntervalMillis + 5_000L, TimeUnit.MILLISECONDS);
+
+		drain();
+
+		try {
+
+			writer.close();
+
+		} catch (IOException e) {
+
+			log.error("Unable to close request journal {}: {}", journalFile, e.toString());
+		}
+	}
+
+	private synchronized void drain() {
+
+		long end = mockApiRequestJournal.getNextSequence();
+		long dropped = 0L;
+
+		// the ring has lapped the writer, so the oldest entries are gone
+		if (end - drainedSequence > mockApiRequestJournal.getCapacity()) {
+
+			dropped = end - mockApiRequestJournal.getCapacity() - drainedSequence;
+			drainedSequence = end - mockApiRequestJournal.getCapacity();
+		}
+
+		try {
+
+			for (; drainedSequence < end; drainedSequence++) {
+
+				Entry entry = mockApiRequestJournal.get(drainedSequence);
+
+				if (null == entry) {
+
+					// the slot can only have been overwritten once a full lap has been claimed
+					// after it; otherwise it is claimed but not published yet, and picked up on
+					// the next pass
+					if (mockApiRequestJournal.getNextSequence() - drainedSequence <= mockApiRequestJournal
+							.getCapacity()) {
+
+						break;
+					}
+
+					dropped++;
+					continue;
+				}
+
+				writer.write(objectMapper.writeValueAsString(entry));
+				writer.newLine();
+			}
+
+			writer.flush();
+
+		} catch (IOException e) {
+
+			log.error("Unable to write request journal {}: {}", journalFile, e.toString());
+		}
+
+		if (dropped > 0) {
+
+			log.warn("{} request journal entries were overwritten before they could be written to {}.", dropped,
+					journalFile);
+		}
+	}
+
+}
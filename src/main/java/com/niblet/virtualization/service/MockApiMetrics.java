@@ -0,0 +1,116 @@
+package com.niblet.virtualization.service;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.stereotype.Component;
+
+import com.niblet.virtualization.model.MockApiRequest;
+import com.niblet.virtualization.model.RegexGuard;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Latency of each stage of mock request processing, counts of each request
+ * outcome, how often a pre-generated response body was ready, how often a
+ * custom regex used up its step budget, and hit counts per mock ID (to find
+ * mocks that are never used). Meters are registered once, so recording is a
+ * plain lookup in an EnumMap.
+ */
+@Component
+public class MockApiMetrics {
+
+	public enum Stage {
+		CANONICALIZE, MATCH, SELECT, RENDER
+	}
+
+	public enum Outcome {
+		MATCH, NO_MATCH, CONFLICT, TEMPLATE_ERROR, PROXIED
+	}
+
+	private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+	private final Map<Outcome, Counter> outcomeCounters = new EnumMap<>(Outcome.class);
+	private final Counter pregenerationHitCounter;
+	private final Counter pregenerationMissCounter;
+	private final Counter regexBudgetExceededCounter;
+
+	// LongAdder stripes its cells, so concurrent hits on one mock don't contend
+	private final Map<Long, LongAdder> hitCountsByMockApiId = new ConcurrentHashMap<>();
+
+	public MockApiMetrics(MeterRegistry meterRegistry) {
+
+		for (Stage stage : Stage.values()) {
+
+			stageTimers.put(stage, Timer.builder("niblet.mock.request.stage")
+					.description("Time spent in each stage of mock request processing")
+					.tag("stage", stage.name().toLowerCase(Locale.ROOT)).register(meterRegistry));
+		}
+
+		for (Outcome outcome : Outcome.values()) {
+
+			outcomeCounters.put(outcome,
+					Counter.builder("niblet.mock.request.outcome").description("Mock requests by outcome")
+							.tag("outcome", outcome.name().toLowerCase(Locale.ROOT)).register(meterRegistry));
+		}
+
+		pregenerationHitCounter = Counter.builder("niblet.mock.pregenerated")
+				.description("Pre-generated response bodies taken, or missed because none was ready")
+				.tag("result", "hit").register(meterRegistry);
+		pregenerationMissCounter = Counter.builder("niblet.mock.pregenerated")
+				.description("Pre-generated response bodies taken, or missed because none was ready")
+				.tag("result", "miss").register(meterRegistry);
+
+		regexBudgetExceededCounter = Counter.builder("niblet.mock.regex.budget.exceeded")
+				.description("Custom regex matches abandoned for using up their step budget").register(meterRegistry);
+	}
+
+	public void recordStage(Stage stage, long nanos) {
+
+		stageTimers.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void recordOutcome(Outcome outcome) {
+
+		outcomeCounters.get(outcome).increment();
+	}
+
+	/**
+	 * @param hit true when a pre-generated body was ready, false when the
+	 *            response had to be rendered inline
+	 */
+	public void recordPregeneration(boolean hit) {
+
+		(hit ? pregenerationHitCounter : pregenerationMissCounter).increment();
+	}
+
+	/**
+	 * Counts the request's custom regex matches that {@link RegexGuard} abandoned
+	 * for using up their step budget.
+	 */
+	public void recordRegexBudgetExceeded(MockApiRequest request) {
+
+		if (request.getRegexBudgetExceededCount() > 0) {
+
+			regexBudgetExceededCounter.increment(request.getRegexBudgetExceededCount());
+		}
+	}
+
+	public void recordHit(Long mockApiId) {
+
+		hitCountsByMockApiId.computeIfAbsent(mockApiId, k -> new LongAdder()).increment();
+	}
+
+	public long getHitCount(Long mockApiId) {
+
+		LongAdder hitCount = hitCountsByMockApiId.get(mockApiId);
+
+		return null == hitCount ? 0L : hitCount.sum();
+	}
+
+}
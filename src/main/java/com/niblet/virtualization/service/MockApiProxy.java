@@ -0,0 +1,162 @@
+package com.niblet.virtualization.service;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.util.NibletServiceVirtualizationUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Forwards requests no mock matches to the configured upstream, and hands each
+ * upstream response to the {@link MockApiRecorder} so the next identical
+ * request is answered from the catalog. The upstream call is asynchronous, so
+ * neither front end holds a thread while it is in flight.
+ */
+@Component
+@Slf4j
+public class MockApiProxy {
+
+	// connection-level headers, and headers the HTTP client sets itself.
+	// Accept-Encoding is dropped so the upstream body is recorded uncompressed
+	private static final Set<String> UNFORWARDED_HEADERS = Set.of("accept-encoding", "connection", "content-length",
+			"expect", "host", "keep-alive", "proxy-authenticate", "proxy-authorization", "proxy-connection", "te",
+			"trailer", "transfer-encoding", "upgrade");
+
+	private final MockApiRecorder mockApiRecorder;
+	private final String upstream;
+	private final Duration timeout;
+	private final HttpClient httpClient;
+
+	public MockApiProxy(MockApiRecorder mockApiRecorder, NibletServiceVirtualizationProperties properties) {
+
+		this.mockApiRecorder = mockApiRecorder;
+		this.upstream = StringUtils.removeEnd(properties.getProxy().getUpstream(), "/");
+		this.timeout = Duration.ofMillis(properties.getProxy().getTimeoutMillis());
+		// HTTP/1.1, so a plain-text upstream is never sent an h2c upgrade
+		this.httpClient = isEnabled() ? HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(timeout).followRedirects(HttpClient.Redirect.NEVER).build() : null;
+	}
+
+	public boolean isEnabled() {
+
+		return StringUtils.isNotBlank(upstream);
+	}
+
+	/**
+	 * @return the upstream's response, or 502 when the upstream can't be reached
+	 */
+	public CompletableFuture<ResponseEntity<byte[]>> forward(String httpMethod, String requestURI, String requestBody,
+			Map<String, String> headers, Map<String, String> queryParameters) {
+
+		HttpRequest upstreamRequest;
+
+		try {
+
+			upstreamRequest = toUpstreamRequest(httpMethod, requestURI, requestBody, headers, queryParameters);
+
+		} catch (IllegalArgumentException e) {
+
+			log.warn("Unable to proxy {} {}: {}", httpMethod, requestURI, e.getMessage());
+
+			return CompletableFuture.completedFuture(badGateway());
+		}
+
+		return httpClient.sendAsync(upstreamRequest, HttpResponse.BodyHandlers.ofByteArray())
+				.thenApply(upstreamResponse -> {
+
+					mockApiRecorder.record(httpMethod, requestURI, requestBody, queryParameters,
+							upstreamResponse.statusCode(),
+							upstreamResponse.headers().firstValue(HttpHeaders.CONTENT_TYPE).orElse(null),
+							upstreamResponse.body());
+
+					return toResponseEntity(upstreamResponse);
+
+				}).exceptionally(e -> {
+
+					log.warn("Unable to proxy {} {} to {}: {}", httpMethod, requestURI, upstream, e.toString());
+
+					return badGateway();
+				});
+	}
+
+	/**
+	 * @throws IllegalArgumentException when the URI or a header can't be sent
+	 */
+	private HttpRequest toUpstreamRequest(String httpMethod, String requestURI, String requestBody,
+			Map<String, String> headers, Map<String, String> queryParameters) {
+
+		HttpRequest.Builder upstreamRequest = HttpRequest.newBuilder(toUpstreamURI(requestURI, queryParameters))
+				.timeout(timeout).method(httpMethod, null == requestBody ? HttpRequest.BodyPublishers.noBody()
+						: HttpRequest.BodyPublishers.ofString(requestBody, StandardCharsets.UTF_8));
+
+		for (Entry<String, String> header : headers.entrySet()) {
+
+			if (!UNFORWARDED_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+
+				upstreamRequest.header(header.getKey(), header.getValue());
+			}
+		}
+
+		return upstreamRequest.build();
+	}
+
+	private URI toUpstreamURI(String requestURI, Map<String, String> queryParameters) {
+
+		StringBuilder uri = new StringBuilder(upstream).append(requestURI);
+		char separator = '?';
+
+		for (Entry<String, String> queryParameter : queryParameters.entrySet()) {
+
+			uri.append(separator).append(URLEncoder.encode(queryParameter.getKey(), StandardCharsets.UTF_8))
+					.append('=')
+					.append(URLEncoder.encode(StringUtils.defaultString(queryParameter.getValue()),
+							StandardCharsets.UTF_8));
+			separator = '&';
+		}
+
+		return URI.create(uri.toString());
+	}
+
+	private static ResponseEntity<byte[]> toResponseEntity(HttpResponse<byte[]> upstreamResponse) {
+
+		HttpHeaders headers = new HttpHeaders();
+
+		for (Entry<String, List<String>> header : upstreamResponse.headers().map().entrySet()) {
+
+			if (!UNFORWARDED_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+
+				headers.addAll(header.getKey(), header.getValue());
+			}
+		}
+
+		headers.setContentLength(upstreamResponse.body().length);
+
+		return ResponseEntity.status(upstreamResponse.statusCode()).headers(headers).body(upstreamResponse.body());
+	}
+
+	private static ResponseEntity<byte[]> badGateway() {
+
+		return NibletServiceVirtualizationUtils.toResponseEntity("Unable to reach the upstream.",
+				HttpStatus.BAD_GATEWAY);
+	}
+
+}
@@ -0,0 +1,298 @@
+package com.niblet.virtualization.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.contract.RequestBodyDetails;
+import com.niblet.virtualization.exception.InvalidResponseBodyException;
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+import com.niblet.virtualization.jpa.repository.MockApiRequestResponseJdbcRepository;
+import com.niblet.virtualization.model.KeyValueConstraints;
+import com.niblet.virtualization.model.MockApiPathTrie;
+import com.niblet.virtualization.model.RequestBodyConstraints;
+import com.niblet.virtualization.model.ResponseTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-behind recording of proxied upstream responses as new mocks. Each
+ * response is turned into a mock matching the same verb, path, query
+ * parameters and body exactly, and queued without blocking the caller. A
+ * background thread inserts the queue in JDBC batches and refreshes the catalog
+ * once per flush, after which identical requests are answered locally.
+ */
+@Component
+@Slf4j
+public class MockApiRecorder {
+
+	private final MockApiCatalog mockApiCatalog;
+	private final MockApiRequestResponseJdbcRepository mockApiRequestResponseJdbcRepository;
+	private final TransactionTemplate transactionTemplate;
+
+	private final boolean enabled;
+	private final int batchSize;
+	private final long flushIntervalMillis;
+	private final BlockingQueue<MockApiRequestResponseEntity> queue;
+	// fingerprints queued but not yet in the catalog, so a burst of identical
+	// requests is recorded once
+	private final Set<String> pendingFingerprints = ConcurrentHashMap.newKeySet();
+
+	private ScheduledThreadPoolExecutor writer;
+
+	public MockApiRecorder(MockApiCatalog mockApiCatalog,
+			MockApiRequestResponseJdbcRepository mockApiRequestResponseJdbcRepository,
+			TransactionTemplate transactionTemplate, NibletServiceVirtualizationProperties properties) {
+
+		this.mockApiCatalog = mockApiCatalog;
+		this.mockApiRequestResponseJdbcRepository = mockApiRequestResponseJdbcRepository;
+		this.transactionTemplate = transactionTemplate;
+
+		NibletServiceVirtualizationProperties.Proxy proxy = properties.getProxy();
+		this.enabled = StringUtils.isNotBlank(proxy.getUpstream()) && proxy.isRecord();
+		this.batchSize = proxy.getRecordBatchSize();
+		this.flushIntervalMillis = proxy.getRecordFlushIntervalMillis();
+		this.queue = new ArrayBlockingQueue<>(enabled ? proxy.getRecordQueueCapacity() : 1);
+	}
+
+	@PostConstruct
+	public void start() {
+
+		if (!enabled) {
+
+			return;
+		}
+
+		writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+
+			Thread thread = new Thread(runnable, "mock-recorder");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+		writer.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+
+		if (null == writer) {
+
+			return;
+		}
+
+		writer.shutdown();
+		writer.awaitTermination(flushIntervalMillis + 5_000L, TimeUnit.MILLISECONDS);
+
+		flush();
+	}
+
+	/**
+	 * Queues an upstream response to be saved as a mock. Returns at once; the
+	 * response is dropped when the queue is full, or when it can't be replayed
+	 * as it was received.
+	 */
+	public void record(String httpMethod, String requestURI, String requestBody, Map<String, String> queryParameters,
+			int status, String contentType, byte[] body) {
+
+		if (!enabled || null == HttpStatus.resolve(status)) {
+
+			return;
+		}
+
+		String responseBody = body.length == 0 ? null : toText(contentType, body);
+
+		if (body.length > 0 && null == responseBody) {
+
+			log.debug("Not recording {} {}: a {} response body can't be replayed as UTF-8 text.", httpMethod,
+					requestURI, contentType);
+
+			return;
+		}
+
+		if (null != responseBody && !isStatic(responseBody)) {
+
+			log.debug("Not recording {} {}: the response body looks like data generation syntax.", httpMethod,
+					requestURI);
+
+			return;
+		}
+
+		MockApiRequestResponseEntity entity = toEntity(httpMethod, requestURI, requestBody, queryParameters, status,
+				responseBody);
+		String fingerprint = entity.getMatchFingerprint();
+
+		if (null != mockApiCatalog.findMockApiIdByFingerprint(fingerprint) || !pendingFingerprints.add(fingerprint)) {
+
+			return;
+		}
+
+		if (!queue.offer(entity)) {
+
+			pendingFingerprints.remove(fingerprint);
+			log.warn("Recording queue is full; not recording {} {}.", httpMethod, requestURI);
+		}
+	}
+
+	private synchronized void flush() {
+
+		List<MockApiRequestResponseEntity> recorded = new ArrayList<>();
+
+		try {
+
+			List<MockApiRequestResponseEntity> batch = new ArrayList<>(batchSize);
+
+			while (queue.drainTo(batch, batchSize) > 0) {
+
+				// before the DB is touched, so the finally below releases the batch's
+				// fingerprints even when the insert fails
+				recorded.addAll(batch);
+				mockApiCatalog.loadDatabase();
+				insert(batch);
+				batch.clear();
+			}
+
+			if (!recorded.isEmpty()) {
+
+				mockApiCatalog.refresh();
+				log.info("Recorded {} upstream responses as Mock APIs.", recorded.size());
+			}
+
+		} catch (RuntimeException e) {
+
+			// an exception would cancel every later flush
+			log.error("Unable to record upstream responses: {}", e.toString());
+
+		} finally {
+
+			// now in the catalog, or failed; either way an identical request may be
+			// recorded again
+			recorded.forEach(entity -> pendingFingerprints.remove(entity.getMatchFingerprint()));
+		}
+	}
+
+	private void insert(List<MockApiRequestResponseEntity> batch) {
+
+		try {
+
+			transactionTemplate
+					.executeWithoutResult(status -> mockApiRequestResponseJdbcRepository.insertAll(batch));
+
+		} catch (DataAccessException e) {
+
+			// most likely a mock saved meanwhile with the same match definition, so
+			// retry one by one and only lose the rows the DB rejects
+			for (MockApiRequestResponseEntity entity : batch) {
+
+				try {
+
+					transactionTemplate.executeWithoutResult(
+							status -> mockApiRequestResponseJdbcRepository.insertAll(List.of(entity)));
+
+				} catch (DataAccessException rowException) {
+
+					log.warn("Unable to record {} {}: {}", entity.getRequestVerb(), entity.getApiPath(),
+							rowException.getMostSpecificCause().getMessage());
+				}
+			}
+		}
+	}
+
+	private static MockApiRequestResponseEntity toEntity(String httpMethod, String requestURI, String requestBody,
+			Map<String, String> queryParameters, int status, String responseBody) {
+
+		SortedMap<String, String> valueRegexesByKey = new TreeMap<>();
+
+		for (Entry<String, String> queryParameter : queryParameters.entrySet()) {
+
+			valueRegexesByKey.put(queryParameter.getKey(),
+					Pattern.quote(StringUtils.defaultString(queryParameter.getValue())));
+		}
+
+		RequestBodyDetails requestBodyDetails = null;
+
+		if (StringUtils.isNotEmpty(requestBody)) {
+
+			requestBodyDetails = new RequestBodyDetails();
+			requestBodyDetails.setExactMatch(requestBody);
+		}
+
+		MockApiRequestResponseEntity entity = new MockApiRequestResponseEntity();
+		entity.setApiPath("^" + String.join(MockApiPathTrie.SECTION_SEPARATOR,
+				StringUtils.strip(requestURI, "/").split("/")) + "$");
+		entity.setRequestVerb(httpMethod);
+		// headers vary from client to client, so any headers match
+		entity.setRequestHeaders(KeyValueConstraints.ANY_MATCH);
+		entity.setRequestQueryParameters(KeyValueConstraints.toStoredString(valueRegexesByKey));
+		entity.setRequestBody(RequestBodyConstraints.toStoredString(requestBodyDetails));
+		entity.setResponseBody(responseBody);
+		entity.setResponseStatus(String.valueOf(status));
+		entity.updateMatchFingerprint();
+
+		return entity;
+	}
+
+	/**
+	 * @return the body, when its content type is text, JSON or XML and it is
+	 *         valid UTF-8; otherwise null, as a mock's body is replayed as UTF-8
+	 *         text and anything else would be corrupted
+	 */
+	private static String toText(String contentType, byte[] body) {
+
+		try {
+
+			MediaType mediaType = MediaType.parseMediaType(contentType);
+			String subtype = mediaType.getSubtype();
+
+			if (!"text".equals(mediaType.getType()) && !"json".equals(subtype) && !"xml".equals(subtype)
+					&& !subtype.endsWith("+json") && !subtype.endsWith("+xml")) {
+
+				return null;
+			}
+
+			// a decoder reports malformed input rather than replacing it
+			return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(body)).toString();
+
+		} catch (InvalidMediaTypeException | CharacterCodingException e) {
+
+			return null;
+		}
+	}
+
+	private static boolean isStatic(String responseBody) {
+
+		try {
+
+			return ResponseTemplate.compile(responseBody).isStatic();
+
+		} catch (InvalidResponseBodyException e) {
+
+			return false;
+		}
+	}
+
+}
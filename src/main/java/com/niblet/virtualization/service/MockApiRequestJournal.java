@@ -0,0 +1,156 @@
+package com.niblet.virtualization.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.stereotype.Component;
+
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.service.MockApiMetrics.Outcome;
+
+/**
+ * Bounded, lock-free ring buffer of the most recent mock requests and which
+ * mock answered them. A request claims the next sequence number with a single
+ * atomic increment and publishes its entry into that slot, overwriting the
+ * oldest one, so recording never blocks or allocates beyond the entry itself.
+ * Readers check each entry's sequence, so an entry overwritten or not yet
+ * published while being read is skipped rather than misreported. The values
+ * of sensitive headers, such as credentials, are replaced before an entry is
+ * kept, so they never reach the endpoint or the journal file.
+ */
+@Component
+public class MockApiRequestJournal {
+
+	public static final String REDACTED = "[REDACTED]";
+
+	/**
+	 * @param headers         the request headers as received, with sensitive
+	 *                        values redacted
+	 * @param queryParameters held, not copied
+	 * @param mockApiId       the mock that answered, or null when none did
+	 */
+	public record Entry(long sequence, long timestampMillis, String requestVerb, String requestURI,
+			Map<String, String> headers, Map<String, String> queryParameters, Long mockApiId, Outcome outcome,
+			long durationNanos) {
+	}
+
+	private final AtomicReferenceArray<Entry> slots;
+	private final int mask;
+	// the sequence number the next request will claim
+	private final AtomicLong nextSequence = new AtomicLong();
+	// header names are case-insensitive
+	private final Set<String> redactedHeaders = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+	public MockApiRequestJournal(NibletServiceVirtualizationProperties properties) {
+
+		int capacity = properties.getJournal().getCapacity();
+		// rounded up to a power of two, so a slot is found with a mask
+		int slotCount = capacity <= 0 ? 0 : Integer.highestOneBit(Math.min(capacity, 1 << 30) * 2 - 1);
+
+		this.slots = new AtomicReferenceArray<>(slotCount);
+		this.mask = slotCount - 1;
+		this.redactedHeaders.addAll(properties.getJournal().getRedactedHeaders());
+	}
+
+	public boolean isEnabled() {
+
+		return slots.length() > 0;
+	}
+
+	public int getCapacity() {
+
+		return slots.length();
+	}
+
+	/**
+	 * @param headers held, not copied, unless a value has to be redacted
+	 */
+	public void record(String requestVerb, String requestURI, Map<String, String> headers,
+			Map<String, String> queryParameters, Long mockApiId, Outcome outcome, long durationNanos) {
+
+		if (!isEnabled()) {
+
+			return;
+		}
+
+		long sequence = nextSequence.getAndIncrement();
+
+		slots.set((int) (sequence & mask), new Entry(sequence, System.currentTimeMillis(), requestVerb, requestURI,
+				redact(headers), queryParameters, mockApiId, outcome, durationNanos));
+	}
+
+	/**
+	 * @return the sequence number the next request will claim; every entry
+	 *         before it has been claimed, though the latest may not be published
+	 *         yet
+	 */
+	public long getNextSequence() {
+
+		return nextSequence.get();
+	}
+
+	/**
+	 * @return the entry with this sequence number, or null when it has been
+	 *         overwritten or is not published yet
+	 */
+	public Entry get(long sequence) {
+
+		if (!isEnabled()) {
+
+			return null;
+		}
+
+		Entry entry = slots.get((int) (sequence & mask));
+
+		return null != entry && entry.sequence() == sequence ? entry : null;
+	}
+
+	/**
+	 * @return up to {@code limit} of the most recent entries, newest first
+	 */
+	public List<Entry> recent(int limit) {
+
+		long end = nextSequence.get();
+		long start = Math.max(0L, end - Math.min(limit, slots.length()));
+		List<Entry> entries = new ArrayList<>((int) (end - start));
+
+		for (long sequence = end - 1; sequence >= start; sequence--) {
+
+			Entry entry = get(sequence);
+
+			if (null != entry) {
+
+				entries.add(entry);
+			}
+		}
+
+		return entries;
+	}
+
+	private Map<String, String> redact(Map<String, String> headers) {
+
+		Map<String, String> redacted = null;
+
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+
+			if (redactedHeaders.contains(header.getKey())) {
+
+				if (null == redacted) {
+
+					redacted = new LinkedHashMap<>(headers);
+				}
+
+				redacted.put(header.getKey(), REDACTED);
+			}
+		}
+
+		return null == redacted ? headers : redacted;
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.niblet.virtualization.service;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.model.CompiledMockApi;
+import com.niblet.virtualization.model.PregeneratedResponses;
+import com.niblet.virtualization.util.RandomSource;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the {@link PregeneratedResponses} of every opted-in mock in the
+ * current catalog version topped up, from a single background thread. Each
+ * refill renders at most a batch per mock, so a mock that is drained faster
+ * than that falls back to rendering inline rather than starving the others.
+ * It never runs in SEEDED random mode, whose single seeded generator would
+ * otherwise be drawn from by this thread and by requests in whatever order
+ * they happen to run.
+ */
+@Component
+@Slf4j
+public class MockApiResponsePregenerator {
+
+	private final MockApiCatalog mockApiCatalog;
+	private final RandomSource randomSource;
+
+	private final boolean enabled;
+	// set even when the random mode disables it
+	private final boolean pregenerationConfigured;
+	private final int refillBatchSize;
+	private final long refillIntervalMillis;
+
+	private ScheduledThreadPoolExecutor renderer;
+
+	public MockApiResponsePregenerator(MockApiCatalog mockApiCatalog, RandomSource randomSource,
+			NibletServiceVirtualizationProperties properties) {
+
+		this.mockApiCatalog = mockApiCatalog;
+		this.randomSource = randomSource;
+
+		NibletServiceVirtualizationProperties.Pregeneration pregeneration = properties.getPregeneration();
+		this.enabled = properties.getPregenerationQueueDepth() > 0;
+		this.pregenerationConfigured = pregeneration.getQueueDepth() > 0;
+		this.refillBatchSize = pregeneration.getRefillBatchSize();
+		this.refillIntervalMillis = pregeneration.getRefillIntervalMillis();
+	}
+
+	@PostConstruct
+	public void start() {
+
+		if (!enabled) {
+
+			if (pregenerationConfigured) {
+
+				log.info("Response pre-generation is disabled in SEEDED random mode, so seeded runs are reproducible.");
+			}
+
+			return;
+		}
+
+		renderer = new ScheduledThreadPoolExecutor(1, runnable -> {
+
+			Thread thread = new Thread(runnable, "mock-pregenerator");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+		renderer.scheduleWithFixedDelay(this::refill, refillIntervalMillis, refillIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+
+		if (null != renderer) {
+
+			renderer.shutdownNow();
+		}
+	}
+
+	private void refill() {
+
+		for (CompiledMockApi compiledMockApi : mockApiCatalog.getPregeneratedMocks()) {
+
+			try {
+
+				compiledMockApi.getPregeneratedResponses().refill(randomSource.current(), refillBatchSize);
+
+			} catch (RuntimeException e) {
+
+				// an exception would cancel every later refill
+				log.error("Unable to pre-generate responses for Mock API with ID {}: {}",
+						compiledMockApi.getEntity().getId(), e.toString());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.niblet.virtualization.service;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Holds delayed mock responses without holding a thread. The request is put in
+ * async mode and a single timer thread completes it when its delay is up, so
+ * the number of responses waiting is bounded by memory, not by request
+ * threads.
+ */
+@Component
+public class MockApiResponseScheduler {
+
+	// on top of the delay, before the container gives up on a response
+	private static final long TIMEOUT_MARGIN_MILLIS = 10_000L;
+
+	private final ScheduledThreadPoolExecutor scheduler;
+
+	public MockApiResponseScheduler() {
+
+		scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+
+			Thread thread = new Thread(runnable, "mock-response-delay");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+		// drop timers of requests that time out or disconnect, instead of holding them
+		// until they would have fired
+		scheduler.setRemoveOnCancelPolicy(true);
+	}
+
+	public DeferredResult<ResponseEntity<?>> schedule(ResponseEntity<?> response, long delayMillis) {
+
+		DeferredResult<ResponseEntity<?>> deferredResult = new DeferredResult<>(delayMillis + TIMEOUT_MARGIN_MILLIS);
+
+		ScheduledFuture<?> timer = scheduler.schedule(() -> deferredResult.setResult(response), delayMillis,
+				TimeUnit.MILLISECONDS);
+
+		deferredResult.onTimeout(() -> timer.cancel(false));
+		deferredResult.onError(e -> timer.cancel(false));
+
+		return deferredResult;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+
+		scheduler.shutdownNow();
+	}
+
+}
@@ -1,34 +1,52 @@
 package com.niblet.virtualization.service;
 
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
 import com.niblet.virtualization.contract.CreateUpdateMockApiRequest;
 import com.niblet.virtualization.contract.CreateUpdateResponse;
+import com.niblet.virtualization.contract.MatchModeEnum;
 import com.niblet.virtualization.contract.RequestVariableDetails;
+import com.niblet.virtualization.contract.ResponseDelay;
 import com.niblet.virtualization.contract.StatusEnum;
+import com.niblet.virtualization.exception.InvalidRegexException;
+import com.niblet.virtualization.exception.InvalidRequestBodyException;
 import com.niblet.virtualization.exception.InvalidResponseBodyException;
+import com.niblet.virtualization.exception.InvalidResponseDelayException;
 import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
 import com.niblet.virtualization.jpa.repository.MockApiRequestResponseJpaRepository;
-import com.niblet.virtualization.jpa.repository.MockApiRequestResponseManagedRepository;
+import com.niblet.virtualization.model.CompiledMockApi;
+import com.niblet.virtualization.model.DelayDistribution;
+import com.niblet.virtualization.model.KeyValueConstraints;
+import com.niblet.virtualization.model.KeyValueConstraints.VariableType;
 import com.niblet.virtualization.model.MockApiMatchData;
+import com.niblet.virtualization.model.MockApiPathTrie;
+import com.niblet.virtualization.model.MockApiRequest;
+import com.niblet.virtualization.model.MockApiResponse;
+import com.niblet.virtualization.model.PregeneratedResponses;
+import com.niblet.virtualization.model.RegexGuard;
+import com.niblet.virtualization.model.RequestBodyConstraints;
+import com.niblet.virtualization.model.RequestBodyMatcher;
+import com.niblet.virtualization.model.ResponseTemplate;
+import com.niblet.virtualization.service.MockApiMetrics.Outcome;
+import com.niblet.virtualization.service.MockApiMetrics.Stage;
+import com.niblet.virtualization.util.MockApiFingerprint;
 import com.niblet.virtualization.util.NibletServiceVirtualizationUtils;
+import com.niblet.virtualization.util.RandomSource;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -38,947 +56,536 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class NibletServiceVirtualizationService {
 
-	private final MockApiRequestResponseManagedRepository mockApiRequestResponseManagedRepository;
-	private final MockApiRequestResponseJpaRepository mockApiRequestResponseJpaRepository;
+	private static final Pattern PATH_PARAMETER_PATTERN = Pattern.compile("^\\{(\\w+)\\}$");
 
-	public ResponseEntity<String> processAnyMockRequest(String httpMethod, String requestURI, String requestBody,
+	private final MockApiCatalog mockApiCatalog;
+	private final MockApiRequestResponseJpaRepository mockApiRequestResponseJpaRepository;
+	private final RandomSource randomSource;
+	private final MockApiMetrics mockApiMetrics;
+	private final MockApiRequestJournal mockApiRequestJournal;
+	private final MockApiProxy mockApiProxy;
+	private final NibletServiceVirtualizationProperties properties;
+
+	/**
+	 * @return the response, and how long to hold it, for the best matching mock
+	 */
+	public MockApiResponse processAnyMockRequest(String httpMethod, String requestURI, String requestBody,
 			Map<String, String> headers, Map<String, String> queryParameters) {
 
-		// alphabetize and concatenate query parameters and headers
-		// to compare with regex in DB
-		String queryParams = alphabetizeQueryParameterString(queryParameters);
-		String headerString = alphabetizeHeaderString(headers);
+		return processAnyMockRequest(
+				MockApiRequest.of(httpMethod, requestURI, requestBody, headers, queryParameters));
+	}
 
-		String requestURIFormattedForDBPatternMatch = reformatRequestURIForDBPatternMatch(requestURI);
-		List<MockApiRequestResponseEntity> mockApiRequestResponseEntityList = mockApiRequestResponseManagedRepository
-				.gatherApiMocksByRegexp(httpMethod, requestURIFormattedForDBPatternMatch, headerString, queryParams);
+	/**
+	 * @param request this thread's pooled request, which must not be used once
+	 *                the response is returned
+	 * @return the response, and how long to hold it, for the best matching mock
+	 */
+	public MockApiResponse processAnyMockRequest(MockApiRequest request) {
 
-		if (CollectionUtils.isEmpty(mockApiRequestResponseEntityList)) {
+		long requestStart = System.nanoTime();
+		long stageStart = requestStart;
 
-			log.info("API Request did not match any mocked APIs.");
+		// the path is split by offsets, so no part of the request is copied
+		request.canonicalize();
 
-			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-		}
+		stageStart = recordStage(Stage.CANONICALIZE, stageStart);
 
-		// compile a list of match-type counts
-		List<MockApiMatchData> mockApiMatchDataList = generatedMockApiMatchDataListWithPathCounts(
-				mockApiRequestResponseEntityList, requestURIFormattedForDBPatternMatch);
-		updateMockApiMatchDataListWithQueryCounts(mockApiMatchDataList, queryParameters);
-		updateMockApiMatchDataListWithHeaderCounts(mockApiMatchDataList, headers);
+		// the catalog routes the path through a trie, then matches headers and
+		// query parameters key by key, compiling the list of match-type counts
+		List<MockApiMatchData> mockApiMatchDataList = mockApiCatalog.gatherApiMocks(request);
 
-		if (CollectionUtils.isEmpty(mockApiMatchDataList)) {
+		// mocks that constrain the body are decided in one streaming pass over it,
+		// reading only the JSON or XML fields they reference
+		RequestBodyMatcher.filter(mockApiMatchDataList, request);
+		mockApiMetrics.recordRegexBudgetExceeded(request);
 
-			log.error(
-					"Internal Issue: no results should have been filtered out at this point. Contact developer at bassbonestones@yahoo.com");
-			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+		stageStart = recordStage(Stage.MATCH, stageStart);
+
+		if (CollectionUtils.isEmpty(mockApiMatchDataList) && mockApiProxy.isEnabled()) {
+
+			log.debug("API Request did not match any mocked APIs; forwarding it upstream.");
+			// the journal's duration covers matching only, not the upstream call
+			recordOutcome(Outcome.PROXIED, null, request, requestStart);
+
+			// the upstream call outlives the request, so it gets copies
+			return MockApiResponse.proxied(mockApiProxy.forward(request.getHttpMethod(), request.getRequestURI(),
+					request.getRequestBody(), request.copyHeaders(), request.copyQueryParameters()));
 		}
 
-		// TODO: add requestBody filter by exact body match (support xml and json), as
-		// well as individual field path match, support exact, regex, isNull, isNotNull
+		if (CollectionUtils.isEmpty(mockApiMatchDataList)) {
+
+			log.debug("API Request did not match any mocked APIs.");
+			recordOutcome(Outcome.NO_MATCH, null, request, requestStart);
+
+			return MockApiResponse.immediate(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+		}
 
-		// sort API data to find closest match.
-		// Priority order of variable type: Path, Query, then Header
+		// find the closest match in a single pass, using the packed priority score.
+		// Priority order of variable type: Path, Query, Header, then Body
 		// Priority order of match type: Exact, Custom Regex, Digit, AlphaNumeric, ANY
 		// Priority of match type over variable type, if match type is same,
 		// priority of variable type
-		Collections.sort(mockApiMatchDataList, NibletServiceVirtualizationUtils.MOCK_API_FILTER_DATA_COMPARITOR);
+		MockApiMatchData closestMockApiMatchData = NibletServiceVirtualizationUtils
+				.findHighestPriorityMatch(mockApiMatchDataList);
 
-		// TODO: if more than one result, see if first two results have same precedence
-		// level
-		// come up with system in comparator to set max precedence level and count
+		stageStart = recordStage(Stage.SELECT, stageStart);
 
-		if (mockApiMatchDataList.size() > 1) {
+		if (null == closestMockApiMatchData) {
 
-			// check if top 2 entities have same priority level
-			boolean firstTwoAreSamePriority = areFirstTwoSamePriority(mockApiMatchDataList.subList(0, 2));
+			recordOutcome(Outcome.CONFLICT, null, request, requestStart);
 
-			if (firstTwoAreSamePriority) {
+			// top 2 entities have same priority level
+			return MockApiResponse.immediate(NibletServiceVirtualizationUtils.toResponseEntity(
+					"Unable to process, because highest priority match belongs to more than one Mock API.",
+					HttpStatus.CONFLICT));
+		} // otherwise, there is a best match, so return it
 
-				return new ResponseEntity<>(
-						"Unable to process, because highest priority match belongs to more than one Mock API.",
-						HttpStatus.CONFLICT);
-			} // otherwise, there is a best match, so return it
-		}
+		CompiledMockApi compiledMockApi = closestMockApiMatchData.getCompiledMockApi();
+		Long mockApiId = compiledMockApi.getEntity().getId();
+		mockApiMetrics.recordHit(mockApiId);
 
-		MockApiRequestResponseEntity entity = mockApiMatchDataList.get(0).getMockApiRequestResponseEntity();
-		String responseBody = entity.getResponseBody();
-		HttpStatus responseStatus = HttpStatus.valueOf(Integer.valueOf(entity.getResponseStatus()));
+		if (null != compiledMockApi.getStaticResponse()) {
 
-		try {
+			recordOutcome(Outcome.MATCH, mockApiId, request, requestStart);
 
-			// using custom syntax, replace placeholders with randomly generated values
-			responseBody = replaceGeneratedValues(responseBody);
+			// no generated values, so the response was rendered when the mock was saved,
+			// or the body is a file for the front end to stream
+			return new MockApiResponse(compiledMockApi.getStaticResponse(), compiledMockApi.getResponseBodyFile(),
+					sampleDelayMillis(compiledMockApi));
+		}
 
-		} catch (InvalidResponseBodyException e) {
+		if (null != compiledMockApi.getResponseTemplateError()) {
 
 			log.error(
 					"Data issue in responseBody text in DB.  Value may have been manually updated in DB incorrectly. See documentation about data generation syntax.");
+			recordOutcome(Outcome.TEMPLATE_ERROR, mockApiId, request, requestStart);
 
-			return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+			return MockApiResponse.immediate(NibletServiceVirtualizationUtils.toResponseEntity(
+					compiledMockApi.getResponseTemplateError(), HttpStatus.INTERNAL_SERVER_ERROR));
 		}
 
-		if (StringUtils.isNotBlank(responseBody)) {
+		// a response rendered ahead of time, when the mock opted in and one is ready
+		PregeneratedResponses pregeneratedResponses = compiledMockApi.getPregeneratedResponses();
+		ResponseEntity<byte[]> response = null;
+
+		if (null != pregeneratedResponses) {
 
-			// only return a body if it is NOT NULL
-			return new ResponseEntity<>(responseBody, responseStatus);
+			response = pregeneratedResponses.poll();
+			mockApiMetrics.recordPregeneration(null != response);
 		}
 
-		return new ResponseEntity<>(responseStatus);
-	}
+		if (null == response) {
 
-	private boolean areFirstTwoSamePriority(List<MockApiMatchData> firstTwoIndices) {
+			// using custom syntax, replace placeholders with randomly generated values
+			String responseBody = compiledMockApi.getResponseTemplate().render(randomSource.current());
+			response = NibletServiceVirtualizationUtils.toResponseEntity(responseBody,
+					compiledMockApi.getResponseStatus());
+		}
 
-		MockApiMatchData a = firstTwoIndices.get(0);
-		MockApiMatchData b = firstTwoIndices.get(1);
+		recordStage(Stage.RENDER, stageStart);
+		recordOutcome(Outcome.MATCH, mockApiId, request, requestStart);
 
-		// IMPORTANT:
-		// !!! keep this in sync with the custom Comparator in the Utils class !!!
-		int pathExact = b.getNumPathExactMatches() - a.getNumPathExactMatches();
-		int headerExact = b.getNumHeaderExactMatches() - a.getNumHeaderExactMatches();
-		int queryExact = b.getNumQueryExactMatches() - a.getNumQueryExactMatches();
+		return new MockApiResponse(response, sampleDelayMillis(compiledMockApi));
+	}
 
-		int pathCustom = b.getNumPathCustomMatches() - a.getNumPathCustomMatches();
-		int headerCustom = b.getNumHeaderCustomMatches() - a.getNumHeaderCustomMatches();
-		int queryCustom = b.getNumQueryCustomMatches() - a.getNumQueryCustomMatches();
+	private long sampleDelayMillis(CompiledMockApi compiledMockApi) {
 
-		int pathDigit = b.getNumPathDigitMatches() - a.getNumPathDigitMatches();
-		int headerDigit = b.getNumHeaderDigitMatches() - a.getNumHeaderDigitMatches();
-		int queryDigit = b.getNumQueryDigitMatches() - a.getNumQueryDigitMatches();
+		DelayDistribution delayDistribution = compiledMockApi.getDelayDistribution();
 
-		int pathAlphaNum = b.getNumPathAlphaNumericMatches() - a.getNumPathAlphaNumericMatches();
-		int headerAlphaNum = b.getNumHeaderAlphaNumericMatches() - a.getNumHeaderAlphaNumericMatches();
-		int queryAlphaNum = b.getNumQueryAlphaNumericMatches() - a.getNumQueryAlphaNumericMatches();
+		return null == delayDistribution ? 0L : delayDistribution.sampleMillis(randomSource.current());
+	}
 
-		int pathWild = b.getNumPathWildCardMatches() - a.getNumPathWildCardMatches();
-		int headerWild = b.getNumHeaderWildCardMatches() - a.getNumHeaderWildCardMatches();
-		int queryWild = b.getNumQueryWildCardMatches() - a.getNumQueryWildCardMatches();
+	/**
+	 * Counts the outcome and journals the request, with the time taken to match
+	 * and render it.
+	 *
+	 * @param mockApiId the mock that answered, or null when none did
+	 */
+	private void recordOutcome(Outcome outcome, Long mockApiId, MockApiRequest request, long requestStart) {
 
-		int headerExists = b.getNumHeaderExistsMatches() - a.getNumHeaderExistsMatches();
-		int queryExists = b.getNumQueryExistsMatches() - a.getNumQueryExistsMatches();
+		mockApiMetrics.recordOutcome(outcome);
 
-		Set<Integer> differences = new HashSet<>(List.of(pathExact, headerExact, queryExact, pathCustom, headerCustom,
-				queryCustom, pathDigit, headerDigit, queryDigit, pathAlphaNum, headerAlphaNum, queryAlphaNum, pathWild,
-				headerWild, queryWild, headerExists, queryExists));
+		// the journal keeps the request, so it is only copied when there is one
+		if (mockApiRequestJournal.isEnabled()) {
 
-		// if the difference of all is O, then the priority is the same
-		return differences.size() == 1 && differences.contains(0);
+			mockApiRequestJournal.record(request.getHttpMethod(), request.getRequestURI(), request.copyHeaders(),
+					request.copyQueryParameters(), mockApiId, outcome, System.nanoTime() - requestStart);
+		}
 	}
 
-	private void updateMockApiMatchDataListWithHeaderCounts(List<MockApiMatchData> pathFilteredList,
-			Map<String, String> headers) {
+	/**
+	 * @return the end of the stage, which is the start of the next one
+	 */
+	private long recordStage(Stage stage, long stageStart) {
 
-		for (MockApiMatchData mockApiFilterData : pathFilteredList) {
+		long stageEnd = System.nanoTime();
+		mockApiMetrics.recordStage(stage, stageEnd - stageStart);
 
-			String entityHeadersString = mockApiFilterData.getMockApiRequestResponseEntity().getRequestHeaders();
+		return stageEnd;
+	}
 
-			// ignore when DB has generic ANY match.
-			// This is the default when no filters are set.
-			if (".*".equals(entityHeadersString))
-				continue;
+	public String replaceGeneratedValues(String payload) throws InvalidResponseBodyException {
 
-			// remove "^(a|[^a])*" from start and "(a|[^a])*$" from end
-			entityHeadersString = entityHeadersString.substring(10);
-			entityHeadersString = entityHeadersString.substring(0, entityHeadersString.length() - 10);
+		return ResponseTemplate.compile(payload).render(randomSource.current());
+	}
 
-			String[] entityHeadersSplit = entityHeadersString.split("\\(a\\|\\[\\^a\\]\\)\\*");
+	public ResponseEntity<CreateUpdateResponse> createUpdateMockApiRequest(
+			CreateUpdateMockApiRequest createUpdateMockApiRequest, Long id) {
 
-			for (String keyValueStr : entityHeadersSplit) {
+		CreateUpdateResponse createUpdateResponseEntity = new CreateUpdateResponse();
+		HttpStatus httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
 
-				// remove "\<" from start and "\>" from end of key/value pair string
-				keyValueStr = keyValueStr.substring(2);
-				keyValueStr = keyValueStr.substring(0, keyValueStr.length() - 2);
+		try {
 
-				String[] keyValue = keyValueStr.split("=");
-				String key = keyValue[0];
-				String value = keyValue[1];
+			// reject bad data generation syntax now, rather than on every request;
+			// bulk imports are checked the same way
+			NibletServiceVirtualizationUtils.validateResponseBody(properties.getBodyFiles().getDirectory(),
+					createUpdateMockApiRequest.getResponseBody(), createUpdateMockApiRequest.getResponseBodyFile());
 
-				if (headers.containsKey(key)) {
+			toDelayDistribution(createUpdateMockApiRequest.getResponseDelay());
 
-					String requestValue = headers.get(key);
+			// regexes that can backtrack catastrophically are refused
+			validateCustomRegexes(createUpdateMockApiRequest);
+			validateExactPathParameters(createUpdateMockApiRequest.getRequestPathParameters());
 
-					if (requestValue.equals(value)) {
+			RequestBodyConstraints.compile(createUpdateMockApiRequest.getRequestBody());
 
-						mockApiFilterData.setNumHeaderExactMatches(mockApiFilterData.getNumHeaderExactMatches() + 1);
+		} catch (InvalidResponseBodyException e) {
 
-					} else { // check regex type
+			createUpdateResponseEntity.setMessage("Invalid responseBody: " + e.getMessage());
+			createUpdateResponseEntity.setStatus(StatusEnum.FAILURE);
+			createUpdateResponseEntity.setId(id);
+			createUpdateResponseEntity.setMockApiDetails(null);
 
-						if (StringUtils.isBlank(value)) {
+			return new ResponseEntity<>(createUpdateResponseEntity, HttpStatus.UNPROCESSABLE_ENTITY);
 
-							mockApiFilterData
-									.setNumHeaderExistsMatches(mockApiFilterData.getNumHeaderExistsMatches() + 1);
+		} catch (InvalidResponseDelayException e) {
 
-						} else if (".+".equals(value)) {
+			createUpdateResponseEntity.setMessage("Invalid responseDelay: " + e.getMessage());
+			createUpdateResponseEntity.setStatus(StatusEnum.FAILURE);
+			createUpdateResponseEntity.setId(id);
+			createUpdateResponseEntity.setMockApiDetails(null);
 
-							mockApiFilterData
-									.setNumHeaderWildCardMatches(mockApiFilterData.getNumHeaderWildCardMatches() + 1);
+			return new ResponseEntity<>(createUpdateResponseEntity, HttpStatus.UNPROCESSABLE_ENTITY);
 
-						} else if ("\\d+".equals(value)) {
+		} catch (InvalidRegexException e) {
 
-							mockApiFilterData
-									.setNumHeaderDigitMatches(mockApiFilterData.getNumHeaderDigitMatches() + 1);
+			createUpdateResponseEntity.setMessage("Invalid customRegexString: " + e.getMessage());
+			createUpdateResponseEntity.setStatus(StatusEnum.FAILURE);
+			createUpdateResponseEntity.setId(id);
+			createUpdateResponseEntity.setMockApiDetails(null);
 
-						} else if ("[a-zA-Z0-9_]+".equals(value)) {
+			return new ResponseEntity<>(createUpdateResponseEntity, HttpStatus.UNPROCESSABLE_ENTITY);
 
-							mockApiFilterData.setNumHeaderAlphaNumericMatches(
-									mockApiFilterData.getNumHeaderAlphaNumericMatches() + 1);
+		} catch (InvalidRequestBodyException e) {
 
-						} else {
+			createUpdateResponseEntity.setMessage("Invalid requestBody: " + e.getMessage());
+			createUpdateResponseEntity.setStatus(StatusEnum.FAILURE);
+			createUpdateResponseEntity.setId(id);
+			createUpdateResponseEntity.setMockApiDetails(null);
 
-							mockApiFilterData
-									.setNumHeaderCustomMatches(mockApiFilterData.getNumHeaderCustomMatches() + 1);
-						}
-					}
-				}
-			}
+			return new ResponseEntity<>(createUpdateResponseEntity, HttpStatus.UNPROCESSABLE_ENTITY);
 		}
-	}
-
-	private void updateMockApiMatchDataListWithQueryCounts(List<MockApiMatchData> pathFilteredList,
-			Map<String, String> queryParameters) {
 
-		for (MockApiMatchData mockApiFilterData : pathFilteredList) {
-
-			String entityQueryParameterString = mockApiFilterData.getMockApiRequestResponseEntity()
-					.getRequestQueryParameters();
-
-			// ignore when DB has generic ANY match.
-			// This is the default when no filters are set.
-			if (".*".equals(entityQueryParameterString)) {
-				continue;
-			}
+		mockApiCatalog.loadDatabase();
 
-			// remove "^(a|[^a])*" from start and "(a|[^a])*$" from end
-			entityQueryParameterString = entityQueryParameterString.substring(10);
-			entityQueryParameterString = entityQueryParameterString.substring(0,
-					entityQueryParameterString.length() - 10);
+		String newPathString = generateDbPathString(createUpdateMockApiRequest.getApiPath(),
+				createUpdateMockApiRequest.getRequestPathParameters());
+		String newRequestHeaderString = generateDbHeaderString(createUpdateMockApiRequest.getRequestHeaders());
+		String newRequestQueryString = generateDbQueryString(createUpdateMockApiRequest.getRequestQueryParameters());
+		String newRequestBodyString = RequestBodyConstraints
+				.toStoredString(createUpdateMockApiRequest.getRequestBody());
+		String newRequestVerb = createUpdateMockApiRequest.getRequestVerb().name();
 
-			String[] entityQueryParameterSplit = entityQueryParameterString.split("\\(a\\|\\[\\^a\\]\\)\\*");
+		// O(1) lookup of a mock with the same match definition; the unique
+		// MATCH_FINGERPRINT column catches any concurrent write this misses
+		Long conflictingId = mockApiCatalog.findMockApiIdByFingerprint(MockApiFingerprint.of(newRequestVerb,
+				newPathString, newRequestHeaderString, newRequestQueryString, newRequestBodyString));
 
-			for (String keyValueStr : entityQueryParameterSplit) {
+		if (null != conflictingId && !conflictingId.equals(id)) { // request scenario already exists
 
-				// remove "\<" from start and "\>" from end
-				keyValueStr = keyValueStr.substring(2);
-				keyValueStr = keyValueStr.substring(0, keyValueStr.length() - 2);
+			createUpdateResponseEntity.setMessage(
+					"Request details are an exact match for an existing Mock API, ID=" + conflictingId);
+			createUpdateResponseEntity.setId(conflictingId);
+			createUpdateResponseEntity.setStatus(StatusEnum.FAILURE);
+			createUpdateResponseEntity.setMockApiDetails(null);
 
-				String[] keyValue = keyValueStr.split("=");
-				String key = keyValue[0];
-				String value = keyValue[1];
-
-				if (queryParameters.containsKey(key)) {
-
-					String requestValue = queryParameters.get(key);
-
-					if (requestValue.equals(value)) {
-
-						mockApiFilterData.setNumQueryExactMatches(mockApiFilterData.getNumQueryExactMatches() + 1);
+			return new ResponseEntity<>(createUpdateResponseEntity, HttpStatus.UNPROCESSABLE_ENTITY);
+		}
 
-					} else { // check regex type
+		if (null != id) { // update request
 
-						if (StringUtils.isBlank(value)) {
+			MockApiRequestResponseEntity existingEntity = mockApiRequestResponseJpaRepository.findById(id).orElse(null);
 
-							mockApiFilterData
-									.setNumQueryExistsMatches(mockApiFilterData.getNumQueryExistsMatches() + 1);
+			if (null == existingEntity) {
 
-						} else if (".+".equals(value)) {
+				// no entity found so returning failure message and 422 response
+				httpStatus = HttpStatus.UNPROCESSABLE_ENTITY;
+				createUpdateResponseEntity.setMessage("ID not found in database. Not able to perform update.");
+				createUpdateResponseEntity.setStatus(StatusEnum.FAILURE);
+				createUpdateResponseEntity.setId(id);
+				createUpdateResponseEntity.setMockApiDetails(null);
 
-							mockApiFilterData
-									.setNumQueryWildCardMatches(mockApiFilterData.getNumQueryWildCardMatches() + 1);
+			} else {
 
-						} else if ("\\d+".equals(value)) {
+				// process update on found entity
 
-							mockApiFilterData.setNumQueryDigitMatches(mockApiFilterData.getNumQueryDigitMatches() + 1);
+				existingEntity.setApiPath(newPathString);
+				existingEntity.setRequestHeaders(newRequestHeaderString);
+				existingEntity.setRequestQueryParameters(newRequestQueryString);
+				existingEntity.setRequestBody(newRequestBodyString);
+				existingEntity.setRequestVerb(newRequestVerb);
+				existingEntity.setResponseBody(createUpdateMockApiRequest.getResponseBody());
+				existingEntity.setResponseBodyFile(createUpdateMockApiRequest.getResponseBodyFile());
+				existingEntity.setResponseStatus(createUpdateMockApiRequest.getResponseStatusCode().getValue());
+				setDelay(existingEntity, createUpdateMockApiRequest.getResponseDelay());
+				existingEntity.setPregenerateResponses(createUpdateMockApiRequest.getPregenerateResponses());
 
-						} else if ("[a-zA-Z0-9_]+".equals(value)) {
+				if (save(existingEntity, createUpdateResponseEntity)) {
 
-							mockApiFilterData.setNumQueryAlphaNumericMatches(
-									mockApiFilterData.getNumQueryAlphaNumericMatches() + 1);
+					httpStatus = HttpStatus.OK;
+					createUpdateResponseEntity.setMessage("Mock API with ID " + id + " has been updated.");
+					createUpdateResponseEntity.setStatus(StatusEnum.SUCCESS);
+					createUpdateResponseEntity.setId(id);
+					createUpdateResponseEntity.setMockApiDetails(createUpdateMockApiRequest);
 
-						} else {
+				} else {
 
-							mockApiFilterData
-									.setNumQueryCustomMatches(mockApiFilterData.getNumQueryCustomMatches() + 1);
-						}
-					}
+					httpStatus = HttpStatus.UNPROCESSABLE_ENTITY;
 				}
 			}
-		}
-	}
-
-	private List<MockApiMatchData> generatedMockApiMatchDataListWithPathCounts(
-			List<MockApiRequestResponseEntity> mockApiRequestResponseEntityList, String requestURI) {
 
-		List<MockApiMatchData> pathFilteredList = new ArrayList<>();
-
-		for (MockApiRequestResponseEntity mockApiEntity : mockApiRequestResponseEntityList) {
+		} else { // create "new" request
 
-			MockApiMatchData possibleMockApiFilterData = new MockApiMatchData();
-			possibleMockApiFilterData.setMockApiRequestResponseEntity(mockApiEntity);
-			String mockApiPath = mockApiEntity.getApiPath();
-			// remove "^///" from string start and '$' from end
-			mockApiPath = mockApiPath.substring(1, mockApiPath.length() - 1);
+			MockApiRequestResponseEntity newMockApiEntity = new MockApiRequestResponseEntity();
 
-			boolean requestPathHasRegex = mockApiPath.contains("(?<");
-			String[] entityPathSections = mockApiPath.split("///");
-			String[] requestURIPathSections = requestURI.split("///");
+			newMockApiEntity.setApiPath(newPathString);
+			newMockApiEntity.setRequestHeaders(newRequestHeaderString);
+			newMockApiEntity.setRequestQueryParameters(newRequestQueryString);
+			newMockApiEntity.setRequestBody(newRequestBodyString);
+			newMockApiEntity.setRequestVerb(newRequestVerb);
+			newMockApiEntity.setResponseBody(createUpdateMockApiRequest.getResponseBody());
+			newMockApiEntity.setResponseBodyFile(createUpdateMockApiRequest.getResponseBodyFile());
+			newMockApiEntity.setResponseStatus(createUpdateMockApiRequest.getResponseStatusCode().getValue());
+			setDelay(newMockApiEntity, createUpdateMockApiRequest.getResponseDelay());
+			newMockApiEntity.setPregenerateResponses(createUpdateMockApiRequest.getPregenerateResponses());
 
-			if (StringUtils.equals(mockApiPath, requestURI)) {
+			if (save(newMockApiEntity, createUpdateResponseEntity)) {
 
-				possibleMockApiFilterData.setNumPathExactMatches(entityPathSections.length);
-				pathFilteredList.add(possibleMockApiFilterData);
+				httpStatus = HttpStatus.CREATED;
+				createUpdateResponseEntity
+						.setMessage("Created new Mock API Request/Response, ID=" + newMockApiEntity.getId());
+				createUpdateResponseEntity.setId(newMockApiEntity.getId());
+				createUpdateResponseEntity.setStatus(StatusEnum.SUCCESS);
+				createUpdateResponseEntity.setMockApiDetails(createUpdateMockApiRequest);
 
 			} else {
 
-				// If the number of sections doesn't match,
-				// then the path itself could never match.
-
-				// If there is no regex in the entity path,
-				// then it should have matched before with exact match.
-
-				// Both scenarios mean we don't have a match, so continue.
-
-				if (entityPathSections.length != requestURIPathSections.length || !requestPathHasRegex) {
-
-					// TODO: try for force a failure here by making a wildcard regex at end of path
-					log.error(
-							"Internal Issue: unexpected section length difference. Path section lengths should never be different at this point. Contact developer at bassbonestones@yahoo.com");
-					continue;
-				}
-
-				boolean allSectionsMatch = true;
-
-				for (int i = 0; i < entityPathSections.length; i++) {
-
-					String entityPathSection = entityPathSections[i];
-					String requestURIPathSection = requestURIPathSections[i];
-
-					if (entityPathSection.equals(requestURIPathSection)) {
-
-						possibleMockApiFilterData
-								.setNumPathExactMatches(possibleMockApiFilterData.getNumPathExactMatches() + 1);
-						continue;
-					}
-
-					Pattern sectionPattern = Pattern.compile("^\\(\\?\\<\\w+\\>(.*)\\)$");
-					Matcher sectionMatcher = sectionPattern.matcher(entityPathSection);
-
-					// If the section didn't match exactly,
-					// and now there is no regex,
-					// then it means it is NOT a match.
-					if (!sectionMatcher.find()) {
-
-						allSectionsMatch = false;
-
-					} else { // see if regex matches
-
-						String internalRegex = sectionMatcher.group(1);
-
-						if (!requestURIPathSection.matches(internalRegex)) {
-
-							// TODO: try for force a failure here by intermediate wildcard regex
-							log.error(
-									"Internal Issue: unexpected count mismatch. All sections should match at this point. Contact developer at bassbonestones@yahoo.com");
-							allSectionsMatch = false;
-
-						} else { // check regex type
-
-							if ("[^/]+".equals(internalRegex)) {
-
-								possibleMockApiFilterData.setNumPathWildCardMatches(
-										possibleMockApiFilterData.getNumPathWildCardMatches() + 1);
-
-							} else if ("\\d+".equals(internalRegex)) {
-
-								possibleMockApiFilterData
-										.setNumPathDigitMatches(possibleMockApiFilterData.getNumPathDigitMatches() + 1);
-
-							} else if ("[a-zA-Z0-9_]+".equals(internalRegex)) {
-
-								possibleMockApiFilterData.setNumPathAlphaNumericMatches(
-										possibleMockApiFilterData.getNumPathAlphaNumericMatches() + 1);
-
-							} else {
-
-								possibleMockApiFilterData.setNumPathCustomMatches(
-										possibleMockApiFilterData.getNumPathCustomMatches() + 1);
-							}
-						}
-					}
-				}
-
-				if (allSectionsMatch) {
-
-					pathFilteredList.add(possibleMockApiFilterData);
-				}
+				httpStatus = HttpStatus.UNPROCESSABLE_ENTITY;
 			}
 		}
 
-		return pathFilteredList;
+		return new ResponseEntity<>(createUpdateResponseEntity, httpStatus);
 	}
 
-	private String reformatRequestURIForDBPatternMatch(String requestURI) {
-
-		// remove '/' from string start
-		requestURI = requestURI.substring(1);
-		// remove '/' from string end
-		if (requestURI.charAt(requestURI.length() - 1) == '/')
-			requestURI = requestURI.substring(0, requestURI.length() - 1);
+	/**
+	 * Saves the mock and applies it to the catalog.
+	 *
+	 * @return false, with a failure message set, when another mock with the same
+	 *         match definition was saved first
+	 */
+	private boolean save(MockApiRequestResponseEntity entity, CreateUpdateResponse createUpdateResponseEntity) {
 
-		String[] sections = requestURI.split("/");
-
-		// using extra forwards slashes to avoid wildcard match beyond single section
-		return String.join("///", sections);
-	}
+		try {
 
-	private String alphabetizeHeaderString(Map<String, String> headers) {
+			// readers keep matching against the current catalog version until the
+			// one with this mock is published
+			mockApiCatalog.save(entity);
 
-		List<String> headersList = new ArrayList<>();
+		} catch (DataIntegrityViolationException e) {
 
-		for (Entry<String, String> keyValue : headers.entrySet()) {
+			createUpdateResponseEntity.setMessage("Request details are an exact match for an existing Mock API.");
+			createUpdateResponseEntity.setId(entity.getId());
+			createUpdateResponseEntity.setStatus(StatusEnum.FAILURE);
+			createUpdateResponseEntity.setMockApiDetails(null);
 
-			headersList.add("<" + keyValue.getKey() + "=" + keyValue.getValue() + ">");
+			return false;
 		}
 
-		Collections.sort(headersList);
-
-		return String.join("|~|", headersList);
+		return true;
 	}
 
-	protected String alphabetizeQueryParameterString(Map<String, String> queryParameters) {
+	/**
+	 * Rejects any CUSTOM_REGEX that {@link RegexGuard} can't make safe. The
+	 * regex is stored as written; the catalog compiles the rewritten form.
+	 */
+	private void validateCustomRegexes(CreateUpdateMockApiRequest createUpdateMockApiRequest)
+			throws InvalidRegexException {
 
-		List<String> queryParams = new ArrayList<>();
+		validateCustomRegexes(createUpdateMockApiRequest.getRequestPathParameters());
+		validateCustomRegexes(createUpdateMockApiRequest.getRequestHeaders());
+		validateCustomRegexes(createUpdateMockApiRequest.getRequestQueryParameters());
 
-		for (Entry<String, String> keyValue : queryParameters.entrySet()) {
+		if (null != createUpdateMockApiRequest.getRequestBody()) {
 
-			queryParams.add("<" + keyValue.getKey() + "=" + keyValue.getValue() + ">");
+			validateCustomRegexes(createUpdateMockApiRequest.getRequestBody().getFields());
 		}
-
-		Collections.sort(queryParams);
-
-		return String.join("|~|", queryParams);
 	}
 
-	public String replaceGeneratedValues(String payload) throws InvalidResponseBodyException {
-
-		Set<Character> alphaLowerSet = Set.of('a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o',
-				'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z');
-		Set<Character> alphaUpperSet = alphaLowerSet.stream().map(Character::toUpperCase).collect(Collectors.toSet());
-		Set<Character> alphaSet = new HashSet<>(alphaLowerSet);
-		alphaSet.addAll(alphaUpperSet);
-		Set<Character> digitSet = Set.of('0', '1', '2', '3', '4', '5', '6', '7', '8', '9');
-		Set<Character> alphaNumericSet = new HashSet<>(alphaSet);
-		alphaNumericSet.addAll(digitSet);
-		Set<Character> specialCharacterSet = new HashSet<>();
-		"!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~".chars().forEach(i -> specialCharacterSet.add((char) i));
-		Set<Character> characterSet = new HashSet<>(alphaNumericSet);
-		characterSet.addAll(specialCharacterSet);
-
-		log.debug("alphaLowerSet: {}", alphaLowerSet);
-		log.debug("alphaUpperSet: {}", alphaUpperSet);
-		log.debug("alphaSet: {}", alphaSet);
-		log.debug("digitSet: {}", digitSet);
-		log.debug("alphanumericSet: {}", alphaNumericSet);
-		log.debug("specialCharacterSet: {}", specialCharacterSet);
-		log.debug("characterSet: {}", characterSet);
-
-		// lower with exact length
-		Pattern alphaLowerWithExactLengthPattern = Pattern.compile("\\{lower\\((\\d+)\\)\\}");
-		Matcher alphaLowerWithExactLengthMatcher = alphaLowerWithExactLengthPattern.matcher(payload);
-
-		while (alphaLowerWithExactLengthMatcher.find()) {
-
-			Integer alphaLowerRangeStart = Integer.valueOf(alphaLowerWithExactLengthMatcher.group(1));
-			Integer alphaLowerRangeEnd = alphaLowerRangeStart;
-			log.debug("alphaLowerWithExactLengthMatcher- alphaLowerRangeStart: {}, alphaLowerRangeEnd: {}",
-					alphaLowerRangeStart, alphaLowerRangeEnd);
-			String alphaLowerReplacement = getRandomCharacters(alphaLowerSet, alphaLowerRangeStart, alphaLowerRangeEnd);
-			String alphaLowerToReplace = alphaLowerWithExactLengthMatcher.group();
-			log.debug("alphaLowerWithExactLengthMatcher - alphaLowerToReplace: {}, alphaLowerReplacement: {}",
-					alphaLowerToReplace, alphaLowerReplacement);
-			payload = payload.replaceFirst(Pattern.quote(alphaLowerToReplace),
-					Matcher.quoteReplacement(alphaLowerReplacement));
-			log.debug("alphaLowerWithExactLengthMatcher - updated payload: {}", payload);
-		}
-
-		// lower with length range
-		Pattern alphaLowerWithLengthRangePattern = Pattern.compile("\\{lower\\((\\d+),(\\d+)\\)\\}");
-		Matcher alphaLowerWithLengthRangeMatcher = alphaLowerWithLengthRangePattern.matcher(payload);
-
-		while (alphaLowerWithLengthRangeMatcher.find()) {
-
-			Integer alphaLowerRangeStart = Integer.valueOf(alphaLowerWithLengthRangeMatcher.group(1));
-			Integer alphaLowerRangeEnd = Integer.valueOf(alphaLowerWithLengthRangeMatcher.group(2));
-			log.debug("alphaLowerWithLengthRangeMatcher - alphaLowerRangeStart: {}, alphaLowerRangeEnd: {}",
-					alphaLowerRangeStart, alphaLowerRangeEnd);
-			String alphaLowerReplacement = getRandomCharacters(alphaLowerSet, alphaLowerRangeStart, alphaLowerRangeEnd);
-			String alphaLowerToReplace = alphaLowerWithLengthRangeMatcher.group();
-			log.debug("alphaLowerWithLengthRangeMatcher - alphaLowerToReplace: {}, alphaLowerReplacement: {}",
-					alphaLowerToReplace, alphaLowerReplacement);
-			payload = payload.replaceFirst(Pattern.quote(alphaLowerToReplace),
-					Matcher.quoteReplacement(alphaLowerReplacement));
-			log.debug("alphaLowerWithLengthRangeMatcher - updated payload: {}", payload);
-		}
-
-		// upper with exact length
-		Pattern alphaUpperWithExactLengthPattern = Pattern.compile("\\{upper\\((\\d+)\\)\\}");
-		Matcher alphaUpperWithExactLengthMatcher = alphaUpperWithExactLengthPattern.matcher(payload);
-
-		while (alphaUpperWithExactLengthMatcher.find()) {
-
-			String alphaRangeStart = alphaUpperWithExactLengthMatcher.group(1);
-			String alphaRangeEnd = alphaRangeStart;
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomCharacters(alphaUpperSet, Integer.valueOf(alphaRangeStart),
-					Integer.valueOf(alphaRangeEnd));
-			String toReplace = alphaUpperWithExactLengthMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
-		}
-
-		// upper with length range
-		Pattern alphaUpperWithLengthRangePattern = Pattern.compile("\\{upper\\((\\d+),(\\d+)\\)\\}");
-		Matcher alphaUpperWithLengthRangeMatcher = alphaUpperWithLengthRangePattern.matcher(payload);
-
-		while (alphaUpperWithLengthRangeMatcher.find()) {
-
-			String alphaRangeStart = alphaUpperWithLengthRangeMatcher.group(1);
-			String alphaRangeEnd = alphaUpperWithLengthRangeMatcher.group(2);
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomCharacters(alphaUpperSet, Integer.valueOf(alphaRangeStart),
-					Integer.valueOf(alphaRangeEnd));
-			String toReplace = alphaUpperWithLengthRangeMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
-		}
-
-		// alpha with exact length
-		Pattern alphaWithExactLengthPattern = Pattern.compile("\\{alpha\\((\\d+)\\)\\}");
-		Matcher alphaWithExactLengthMatcher = alphaWithExactLengthPattern.matcher(payload);
+	private void validateCustomRegexes(Map<String, RequestVariableDetails> requestVariables)
+			throws InvalidRegexException {
 
-		while (alphaWithExactLengthMatcher.find()) {
+		if (null == requestVariables) {
 
-			String alphaRangeStart = alphaWithExactLengthMatcher.group(1);
-			String alphaRangeEnd = alphaRangeStart;
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomCharacters(alphaSet, Integer.valueOf(alphaRangeStart),
-					Integer.valueOf(alphaRangeEnd));
-			String toReplace = alphaWithExactLengthMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
+			return;
 		}
 
-		// alpha with length range
-		Pattern alphaWithLengthRangePattern = Pattern.compile("\\{alpha\\((\\d+),(\\d+)\\)\\}");
-		Matcher alphaWithLengthRangeMatcher = alphaWithLengthRangePattern.matcher(payload);
+		for (RequestVariableDetails details : requestVariables.values()) {
 
-		while (alphaWithLengthRangeMatcher.find()) {
+			if (null != details && MatchModeEnum.CUSTOM_REGEX == details.getMatchMode()) {
 
-			String alphaRangeStart = alphaWithLengthRangeMatcher.group(1);
-			String alphaRangeEnd = alphaWithLengthRangeMatcher.group(2);
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomCharacters(alphaSet, Integer.valueOf(alphaRangeStart),
-					Integer.valueOf(alphaRangeEnd));
-			String toReplace = alphaWithLengthRangeMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
-		}
-
-		// alphanumeric with exact length
-		Pattern alphaNumericWithExactLengthPattern = Pattern.compile("\\{alphanumeric\\((\\d+)\\)\\}");
-		Matcher alphaNumericWithExactLengthMatcher = alphaNumericWithExactLengthPattern.matcher(payload);
-
-		while (alphaNumericWithExactLengthMatcher.find()) {
-
-			String alphaRangeStart = alphaNumericWithExactLengthMatcher.group(1);
-			String alphaRangeEnd = alphaRangeStart;
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomCharacters(alphaNumericSet, Integer.valueOf(alphaRangeStart),
-					Integer.valueOf(alphaRangeEnd));
-			String toReplace = alphaNumericWithExactLengthMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
-		}
-
-		// alphanumeric with length range
-		Pattern alphaNumericWithLengthRangePattern = Pattern.compile("\\{alphanumeric\\((\\d+),(\\d+)\\)\\}");
-		Matcher alphaNumericWithLengthRangeMatcher = alphaNumericWithLengthRangePattern.matcher(payload);
-
-		while (alphaNumericWithLengthRangeMatcher.find()) {
-
-			String alphaRangeStart = alphaNumericWithLengthRangeMatcher.group(1);
-			String alphaRangeEnd = alphaNumericWithLengthRangeMatcher.group(2);
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomCharacters(alphaNumericSet, Integer.valueOf(alphaRangeStart),
-					Integer.valueOf(alphaRangeEnd));
-			String toReplace = alphaNumericWithLengthRangeMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
-		}
-
-		// characters with exact length
-		Pattern charactersWithExactLengthPattern = Pattern.compile("\\{characters\\((\\d+)\\)\\}");
-		Matcher charactersWithExactLengthMatcher = charactersWithExactLengthPattern.matcher(payload);
-
-		while (charactersWithExactLengthMatcher.find()) {
-
-			String alphaRangeStart = charactersWithExactLengthMatcher.group(1);
-			String alphaRangeEnd = alphaRangeStart;
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomCharacters(characterSet, Integer.valueOf(alphaRangeStart),
-					Integer.valueOf(alphaRangeEnd));
-			String toReplace = charactersWithExactLengthMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
+				RegexGuard.validate(StringUtils.defaultString(details.getCustomRegexString()));
+			}
 		}
+	}
 
-		// characters with length range
-		Pattern charactersWithLengthRangePattern = Pattern.compile("\\{characters\\((\\d+),(\\d+)\\)\\}");
-		Matcher charactersWithLengthRangeMatcher = charactersWithLengthRangePattern.matcher(payload);
+	/**
+	 * An EXACT_MATCH path parameter is stored as a literal section of API_PATH, so
+	 * it needs a value, and one that can't split the section.
+	 */
+	private void validateExactPathParameters(Map<String, RequestVariableDetails> requestPathParameters)
+			throws InvalidRegexException {
 
-		while (charactersWithLengthRangeMatcher.find()) {
+		if (null == requestPathParameters) {
 
-			String alphaRangeStart = charactersWithLengthRangeMatcher.group(1);
-			String alphaRangeEnd = charactersWithLengthRangeMatcher.group(2);
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomCharacters(characterSet, Integer.valueOf(alphaRangeStart),
-					Integer.valueOf(alphaRangeEnd));
-			String toReplace = charactersWithLengthRangeMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
+			return;
 		}
 
-		// select with exact length
-		Pattern selectWithExactLengthPattern = Pattern.compile(
-				"\\{select\\[([\\w!@#\\$%\\^&\\*\\(\\)\\-\\+=\\`~\\{\\}\\[\\]\\|\\\\\\;\\:\\\",\\.\\'\\?\\/<>]+)\\]\\((\\d+)\\)\\}");
-		Matcher selectWithExactLengthMatcher = selectWithExactLengthPattern.matcher(payload);
+		for (Entry<String, RequestVariableDetails> pathParameter : requestPathParameters.entrySet()) {
 
-		while (selectWithExactLengthMatcher.find()) {
+			RequestVariableDetails details = pathParameter.getValue();
 
-			Set<Character> chosenCharacters = new HashSet<>();
-			selectWithExactLengthMatcher.group(1).chars().forEach(i -> chosenCharacters.add((char) i));
+			if (null != details && MatchModeEnum.EXACT_MATCH == details.getMatchMode()
+					&& (StringUtils.isEmpty(details.getCustomRegexString())
+							|| details.getCustomRegexString().contains("/"))) {
 
-			String alphaRangeStart = selectWithExactLengthMatcher.group(2);
-			String alphaRangeEnd = alphaRangeStart;
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomCharacters(chosenCharacters, Integer.valueOf(alphaRangeStart),
-					Integer.valueOf(alphaRangeEnd));
-			String toReplace = selectWithExactLengthMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
+				throw new InvalidRegexException("EXACT_MATCH path parameter " + pathParameter.getKey()
+						+ " needs a value without '/'");
+			}
 		}
+	}
 
-		// select with length range
-		Pattern selectWithLengthRangePattern = Pattern.compile(
-				"\\{select\\[([\\w!@#\\$%\\^&\\*\\(\\)\\-\\+=\\`~\\{\\}\\[\\]\\|\\\\\\;\\:\\\",\\.\\'\\?\\/<>]+)\\]\\((\\d+),(\\d+)\\)\\}");
-		Matcher selectWithLengthRangeMatcher = selectWithLengthRangePattern.matcher(payload);
-
-		while (selectWithLengthRangeMatcher.find()) {
-
-			Set<Character> chosenCharacters = new HashSet<>();
-			selectWithLengthRangeMatcher.group(1).chars().forEach(i -> chosenCharacters.add((char) i));
+	private static DelayDistribution toDelayDistribution(ResponseDelay responseDelay)
+			throws InvalidResponseDelayException {
 
-			String alphaRangeStart = selectWithLengthRangeMatcher.group(2);
-			String alphaRangeEnd = selectWithLengthRangeMatcher.group(3);
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomCharacters(chosenCharacters, Integer.valueOf(alphaRangeStart),
-					Integer.valueOf(alphaRangeEnd));
-			String toReplace = selectWithLengthRangeMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
-		}
+		return null == responseDelay ? null
+				: DelayDistribution.of(responseDelay.getMode(), responseDelay.getDelayMillis(),
+						responseDelay.getDelayUpperMillis());
+	}
 
-		// digits with exact length
-		Pattern digitsWithExactLengthPattern = Pattern.compile("\\{digits\\((\\d+)\\)\\}");
-		Matcher digitsWithExactLengthMatcher = digitsWithExactLengthPattern.matcher(payload);
+	private static void setDelay(MockApiRequestResponseEntity entity, ResponseDelay responseDelay) {
 
-		while (digitsWithExactLengthMatcher.find()) {
+		boolean hasDelay = null != responseDelay && null != responseDelay.getMode();
 
-			String alphaRangeStart = digitsWithExactLengthMatcher.group(1);
-			String alphaRangeEnd = alphaRangeStart;
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomCharacters(digitSet, Integer.valueOf(alphaRangeStart),
-					Integer.valueOf(alphaRangeEnd));
-			String toReplace = digitsWithExactLengthMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
-		}
+		entity.setDelayMode(hasDelay ? responseDelay.getMode().name() : null);
+		entity.setDelayMillis(hasDelay ? responseDelay.getDelayMillis() : null);
+		entity.setDelayUpperMillis(hasDelay ? responseDelay.getDelayUpperMillis() : null);
+	}
 
-		// digits with length range
-		Pattern digitsWithLengthRangePattern = Pattern.compile("\\{digits\\((\\d+),(\\d+)\\)\\}");
-		Matcher digitsWithLengthRangeMatcher = digitsWithLengthRangePattern.matcher(payload);
+	private String generateDbQueryString(Map<String, RequestVariableDetails> requestQueryParameters) {
 
-		while (digitsWithLengthRangeMatcher.find()) {
+		return generateDbKeyValueString(requestQueryParameters, VariableType.QUERY);
+	}
 
-			String alphaRangeStart = digitsWithLengthRangeMatcher.group(1);
-			String alphaRangeEnd = digitsWithLengthRangeMatcher.group(2);
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomCharacters(digitSet, Integer.valueOf(alphaRangeStart),
-					Integer.valueOf(alphaRangeEnd));
-			String toReplace = digitsWithLengthRangeMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
-		}
+	private String generateDbHeaderString(Map<String, RequestVariableDetails> requestHeaders) {
 
-		// number
-		Pattern numberPattern = Pattern.compile("\\{number\\((-?\\d+),(-?\\d+)\\)\\}");
-		Matcher numberMatcher = numberPattern.matcher(payload);
+		return generateDbKeyValueString(requestHeaders, VariableType.HEADER);
+	}
 
-		while (numberMatcher.find()) {
+	private String generateDbKeyValueString(Map<String, RequestVariableDetails> requestVariables,
+			VariableType variableType) {
 
-			Integer alphaRangeStart = Integer.valueOf(numberMatcher.group(1));
-			Integer alphaRangeEnd = Integer.valueOf(numberMatcher.group(2));
-			String replacement = Integer.toString(getRandomIntRangeInclusive(alphaRangeStart, alphaRangeEnd));
+		SortedMap<String, String> valueRegexesByKey = new TreeMap<>();
 
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String toReplace = numberMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
-		}
+		if (null != requestVariables) {
 
-		// decimal, exact decimal places
-		Pattern decimalPattern = Pattern.compile("\\{decimal\\((-?\\d*\\.?\\d*),(-?\\d*\\.?\\d*),(\\d+)\\)\\}");
-		Matcher decimalMatcher = decimalPattern.matcher(payload);
-
-		while (decimalMatcher.find()) {
-
-			Double alphaRangeStart = Double.valueOf(decimalMatcher.group(1));
-			Double alphaRangeEnd = Double.valueOf(decimalMatcher.group(2));
-			Integer maxDecimalPlaces = Integer.valueOf(decimalMatcher.group(3));
-			Integer minDecimalPlaces = maxDecimalPlaces;
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomDecimalRangeInclusive(alphaRangeStart, alphaRangeEnd, minDecimalPlaces,
-					maxDecimalPlaces);
-			String toReplace = decimalMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
-		}
+			for (Entry<String, RequestVariableDetails> keyValue : requestVariables.entrySet()) {
 
-		// decimal, decimal places range
-		Pattern decimalRangePattern = Pattern
-				.compile("\\{decimal\\((-?\\d*\\.?\\d*),(-?\\d*\\.?\\d*),(\\d+),(\\d+)\\)\\}");
-		Matcher decimalRangeMatcher = decimalRangePattern.matcher(payload);
-
-		while (decimalRangeMatcher.find()) {
-
-			Double alphaRangeStart = Double.valueOf(decimalRangeMatcher.group(1));
-			Double alphaRangeEnd = Double.valueOf(decimalRangeMatcher.group(2));
-			Integer minDecimalPlaces = Integer.valueOf(decimalRangeMatcher.group(3));
-			Integer maxDecimalPlaces = Integer.valueOf(decimalRangeMatcher.group(4));
-			log.info("alphaRangeStart: {}, alphaRangeEnd: {}", alphaRangeStart, alphaRangeEnd);
-			String replacement = getRandomDecimalRangeInclusive(alphaRangeStart, alphaRangeEnd, minDecimalPlaces,
-					maxDecimalPlaces);
-			String toReplace = decimalRangeMatcher.group();
-			log.info("toReplace: {}", toReplace);
-			payload = payload.replaceFirst(Pattern.quote(toReplace), Matcher.quoteReplacement(replacement));
+				valueRegexesByKey.put(variableType.normalizeKey(keyValue.getKey()),
+						generateValueRegex(keyValue.getValue()));
+			}
 		}
 
-		return payload;
+		return KeyValueConstraints.toStoredString(valueRegexesByKey);
 	}
 
-	private Integer getRandomIntRangeInclusive(Integer alphaRangeStart, Integer alphaRangeEnd) {
+	private String generateValueRegex(RequestVariableDetails details) {
 
-		try {
-
-			return SecureRandom.getInstanceStrong().nextInt(alphaRangeEnd - alphaRangeStart + 1) + alphaRangeStart;
+		if (null == details || null == details.getMatchMode()) {
 
-		} catch (NoSuchAlgorithmException ex) {
+			return KeyValueConstraints.EXISTS_REGEX;
+		}
 
-			log.error("error generating random number between {} and {}", alphaRangeStart, alphaRangeEnd);
-			return 0;
+		switch (details.getMatchMode()) {
+		case CUSTOM_REGEX:
+			return StringUtils.defaultString(details.getCustomRegexString());
+		case EXACT_MATCH:
+			return Pattern.quote(StringUtils.defaultString(details.getCustomRegexString()));
+		default:
+			return details.getMatchMode().getRegex();
 		}
 	}
 
-	protected String getRandomDecimalRangeInclusive(Double alphaRangeStart, Double alphaRangeEnd,
-			Integer minDecimalPlaces, Integer maxDecimalPlaces) throws InvalidResponseBodyException {
+	private String generateDbPathString(String apiPath, Map<String, RequestVariableDetails> requestPathParameters) {
 
-		try {
+		// "/consumer/{id}/fetch" becomes "^consumer///(?<id>[^/]+)///fetch$"
+		String[] pathSections = StringUtils.strip(apiPath, "/").split("/");
+		List<String> dbPathSections = new ArrayList<>();
 
-			if (minDecimalPlaces > maxDecimalPlaces) {
+		for (String pathSection : pathSections) {
 
-				throw new InvalidResponseBodyException(
-						"minDecimalPlaces (" + minDecimalPlaces + ") should be less than maxDecimalPlaces ("
-								+ maxDecimalPlaces + ") for floating point numbers.");
+			Matcher pathParameterMatcher = PATH_PARAMETER_PATTERN.matcher(pathSection);
 
-			} else if (minDecimalPlaces < 1) {
+			if (!pathParameterMatcher.matches()) {
 
-				throw new InvalidResponseBodyException("minDecimalPlaces (" + minDecimalPlaces
-						+ ") must be greater than 0 for floating point numbers.");
-
-			} else if (maxDecimalPlaces > 10) {
-
-				throw new InvalidResponseBodyException("maxDecimalPlaces (" + maxDecimalPlaces
-						+ ") should be less than 11 (" + maxDecimalPlaces + ") for floating point numbers.");
+				dbPathSections.add(pathSection);
+				continue;
 			}
 
-			Double randomDouble = SecureRandom.getInstanceStrong().nextDouble(alphaRangeEnd - alphaRangeStart + 1)
-					+ alphaRangeStart;
-			String str = Double.toString(randomDouble);
-			str = str.substring(0, str.indexOf('.') + maxDecimalPlaces + 1);
+			String pathParameterName = pathParameterMatcher.group(1);
+			RequestVariableDetails details = null == requestPathParameters ? null
+					: requestPathParameters.get(pathParameterName);
 
-			String truncatedZeros = Double.valueOf(str).toString();
+			if (null != details && MatchModeEnum.EXACT_MATCH == details.getMatchMode()) {
 
-			if (minDecimalPlaces > truncatedZeros.length() - truncatedZeros.indexOf('.') - 1) {
-
-				return str.substring(0, str.indexOf('.') + minDecimalPlaces + 1);
+				dbPathSections.add(details.getCustomRegexString());
 
 			} else {
 
-				return truncatedZeros;
+				dbPathSections.add("(?<" + pathParameterName + ">" + generatePathParameterRegex(details) + ")");
 			}
-
-		} catch (NoSuchAlgorithmException ex) {
-
-			log.error("error generating random number between {} and {}", alphaRangeStart, alphaRangeEnd);
-			return "0.0";
 		}
-	}
 
-	public String getRandomCharacters(Set<Character> set, int rangeStart, int rangeEnd) {
-
-		try {
-
-			int length = SecureRandom.getInstanceStrong().nextInt(rangeEnd - rangeStart + 1) + rangeStart;
-			StringBuilder randomChars = new StringBuilder();
-
-			for (int i = 0; i < length; i++) {
-
-				randomChars.append(getRandomCharacterFromSet(set));
-			}
-
-			return randomChars.toString();
-
-		} catch (NoSuchAlgorithmException ex) {
-
-			return "";
-		}
+		return "^" + String.join(MockApiPathTrie.SECTION_SEPARATOR, dbPathSections) + "$";
 	}
 
-	public Character getRandomCharacterFromSet(Set<Character> set) throws NoSuchAlgorithmException {
+	private String generatePathParameterRegex(RequestVariableDetails details) {
 
-		try {
-
-			int randomIndex = SecureRandom.getInstanceStrong().nextInt(set.size());
-			int i = 0;
-
-			for (Character element : set) {
-
-				if (i == randomIndex) {
-
-					return element;
-				}
-				i++;
-			}
-
-			throw new IllegalStateException("Something went wrong while picking a random character.");
+		if (null == details || null == details.getMatchMode()) {
 
-		} catch (NoSuchAlgorithmException ex) {
-
-			throw new IllegalStateException("Something went wrong while picking a random character.");
+			return MockApiPathTrie.WILD_CARD_REGEX;
 		}
-	}
-
-	public ResponseEntity<CreateUpdateResponse> createUpdateMockApiRequest(
-			CreateUpdateMockApiRequest createUpdateMockApiRequest, Long id) {
-
-		CreateUpdateResponse createUpdateResponseEntity = new CreateUpdateResponse();
-		HttpStatus httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
 
-		if (null != id) { // update request
-
-			MockApiRequestResponseEntity existingEntity = mockApiRequestResponseJpaRepository.findById(id).orElse(null);
-
-			if (null == existingEntity) {
-
-				// no entity found so returning failure message and 422 response
-				httpStatus = HttpStatus.UNPROCESSABLE_ENTITY;
-				createUpdateResponseEntity.setMessage("ID not found in database. Not able to perform update.");
-				createUpdateResponseEntity.setStatus(StatusEnum.FAILURE);
-				createUpdateResponseEntity.setId(id);
-				createUpdateResponseEntity.setMockApiDetails(null);
-
-			} else {
-
-				// process update on found entity
-
-				String newPathString = generateDbPathString(createUpdateMockApiRequest.getApiPath(),
-						createUpdateMockApiRequest.getRequestPathParameters());
-				String newRequestHeaderString = generateDbHeaderString(createUpdateMockApiRequest.getRequestHeaders());
-				String newRequestQueryString = generateDbQueryString(
-						createUpdateMockApiRequest.getRequestQueryParameters());
-
-				existingEntity.setApiPath(newPathString);
-				existingEntity.setRequestHeaders(newRequestHeaderString);
-				existingEntity.setRequestQueryParameters(newRequestQueryString);
-				existingEntity.setRequestVerb(createUpdateMockApiRequest.getRequestVerb().name());
-				existingEntity.setResponseBody(createUpdateMockApiRequest.getResponseBody());
-				existingEntity.setResponseStatus(createUpdateMockApiRequest.getResponseStatusCode().getValue());
-
-				existingEntity = mockApiRequestResponseJpaRepository.save(existingEntity);
-
-				httpStatus = HttpStatus.OK;
-				createUpdateResponseEntity.setMessage("Mock API with ID " + id + " has been updated.");
-				createUpdateResponseEntity.setStatus(StatusEnum.SUCCESS);
-				createUpdateResponseEntity.setId(id);
-				createUpdateResponseEntity.setMockApiDetails(createUpdateMockApiRequest);
-			}
-
-		} else { // create "new" request
-
-			MockApiRequestResponseEntity newMockApiEntity = new MockApiRequestResponseEntity();
-
-			String newPathString = generateDbPathString(createUpdateMockApiRequest.getApiPath(),
-					createUpdateMockApiRequest.getRequestPathParameters());
-			String newRequestHeaderString = generateDbHeaderString(createUpdateMockApiRequest.getRequestHeaders());
-			String newRequestQueryString = generateDbQueryString(
-					createUpdateMockApiRequest.getRequestQueryParameters());
-
-			newMockApiEntity.setApiPath(newPathString);
-			newMockApiEntity.setRequestHeaders(newRequestHeaderString);
-			newMockApiEntity.setRequestQueryParameters(newRequestQueryString);
-			newMockApiEntity.setRequestVerb(createUpdateMockApiRequest.getRequestVerb().name());
-			newMockApiEntity.setResponseBody(createUpdateMockApiRequest.getResponseBody());
-			newMockApiEntity.setResponseStatus(createUpdateMockApiRequest.getResponseStatusCode().getValue());
-
-			MockApiRequestResponseEntity possibleExistingEntity = mockApiRequestResponseJpaRepository
-					.findByApiPathAndRequestVerbAndRequestHeadersAndRequestQueryParameters(newPathString,
-							newMockApiEntity.getRequestVerb(), newRequestHeaderString, newRequestQueryString);
-
-			if (null != possibleExistingEntity) { // request scenario already exists, unable to process creation
-
-				httpStatus = HttpStatus.UNPROCESSABLE_ENTITY;
-				createUpdateResponseEntity.setMessage("Request details are an exact match for an existing Mock API, ID="
-						+ possibleExistingEntity.getId());
-				createUpdateResponseEntity.setId(possibleExistingEntity.getId());
-				createUpdateResponseEntity.setStatus(StatusEnum.FAILURE);
-				createUpdateResponseEntity.setMockApiDetails(null);
-
-			} else { // request scenario does not exist, so continue processing creation
-
-				newMockApiEntity = mockApiRequestResponseJpaRepository.save(newMockApiEntity);
-
-				httpStatus = HttpStatus.CREATED;
-				createUpdateResponseEntity
-						.setMessage("Created new Mock API Request/Response, ID=" + newMockApiEntity.getId());
-				createUpdateResponseEntity.setId(newMockApiEntity.getId());
-				createUpdateResponseEntity.setStatus(StatusEnum.SUCCESS);
-				createUpdateResponseEntity.setMockApiDetails(createUpdateMockApiRequest);
-			}
+		switch (details.getMatchMode()) {
+		case DIGITS:
+			return MockApiPathTrie.DIGITS_REGEX;
+		case ALPHA_NUMERIC:
+			return MockApiPathTrie.ALPHA_NUMERIC_REGEX;
+		case CUSTOM_REGEX:
+			return details.getCustomRegexString();
+		default:
+			return MockApiPathTrie.WILD_CARD_REGEX;
 		}
-
-		return new ResponseEntity<>(createUpdateResponseEntity, httpStatus);
-	}
-
-	private String generateDbQueryString(Map<String, RequestVariableDetails> requestQueryParameters) {
-		// TODO Auto-generated method stub
-		return null;
-	}
-
-	private String generateDbHeaderString(Map<String, RequestVariableDetails> requestHeaders) {
-		// TODO Auto-generated method stub
-		return null;
-	}
-
-	private String generateDbPathString(String apiPath, Map<String, RequestVariableDetails> map) {
-		// TODO Auto-generated method stub
-		return null;
 	}
 }
@@ -0,0 +1,45 @@
+package com.niblet.virtualization.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * SHA-256 of a mock's match definition: verb, API_PATH, REQUEST_HEADERS,
+ * REQUEST_QUERY_PARAMETERS and REQUEST_BODY, joined by NUL characters, with a
+ * NULL column hashed as empty. The stored header, query and body forms are
+ * already normalized and sorted by key, so two mocks that match the same
+ * requests have the same fingerprint. data.sql computes the same value with H2's HASH function.
+ */
+public class MockApiFingerprint {
+
+	private static final char SEPARATOR = '\u0000';
+
+	private MockApiFingerprint() {
+	}
+
+	public static String of(String requestVerb, String apiPath, String requestHeaders,
+			String requestQueryParameters, String requestBody) {
+
+		String canonical = StringUtils.defaultString(requestVerb) + SEPARATOR + StringUtils.defaultString(apiPath)
+				+ SEPARATOR + StringUtils.defaultString(requestHeaders) + SEPARATOR
+				+ StringUtils.defaultString(requestQueryParameters) + SEPARATOR
+				+ StringUtils.defaultString(requestBody);
+
+		try {
+
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+
+			return HexFormat.of().formatHex(digest);
+
+		} catch (NoSuchAlgorithmException e) {
+
+			// every JVM is required to provide SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -1,80 +1,158 @@
 package com.niblet.virtualization.util;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Comparator;
+import java.util.List;
 
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.niblet.virtualization.exception.InvalidResponseBodyException;
 import com.niblet.virtualization.model.MockApiMatchData;
+import com.niblet.virtualization.model.ResponseTemplate;
 
 public class NibletServiceVirtualizationUtils {
 
-	public static final Comparator<? super MockApiMatchData> MOCK_API_FILTER_DATA_COMPARITOR = (a, b) -> {
-
-		// b - a, because we want to prioritize the HIGHEST counts in the given order
-		// IMPORTANT:
-		// !!! keep this in sync with areFirstTwoSamePriority() in the Service class !!!
-		int pathExact = b.getNumPathExactMatches() - a.getNumPathExactMatches();
-		int headerExact = b.getNumHeaderExactMatches() - a.getNumHeaderExactMatches();
-		int queryExact = b.getNumQueryExactMatches() - a.getNumQueryExactMatches();
-
-		int pathCustom = b.getNumPathCustomMatches() - a.getNumPathCustomMatches();
-		int headerCustom = b.getNumHeaderCustomMatches() - a.getNumHeaderCustomMatches();
-		int queryCustom = b.getNumQueryCustomMatches() - a.getNumQueryCustomMatches();
-
-		int pathDigit = b.getNumPathDigitMatches() - a.getNumPathDigitMatches();
-		int headerDigit = b.getNumHeaderDigitMatches() - a.getNumHeaderDigitMatches();
-		int queryDigit = b.getNumQueryDigitMatches() - a.getNumQueryDigitMatches();
-
-		int pathAlphaNum = b.getNumPathAlphaNumericMatches() - a.getNumPathAlphaNumericMatches();
-		int headerAlphaNum = b.getNumHeaderAlphaNumericMatches() - a.getNumHeaderAlphaNumericMatches();
-		int queryAlphaNum = b.getNumQueryAlphaNumericMatches() - a.getNumQueryAlphaNumericMatches();
-
-		int pathWild = b.getNumPathWildCardMatches() - a.getNumPathWildCardMatches();
-		int headerWild = b.getNumHeaderWildCardMatches() - a.getNumHeaderWildCardMatches();
-		int queryWild = b.getNumQueryWildCardMatches() - a.getNumQueryWildCardMatches();
-
-		int headerExists = b.getNumHeaderExistsMatches() - a.getNumHeaderExistsMatches();
-		int queryExists = b.getNumQueryExistsMatches() - a.getNumQueryExistsMatches();
-
-		if (0 != pathExact)
-			return pathExact;
-		if (0 != queryExact)
-			return queryExact;
-		if (0 != headerExact)
-			return headerExact;
-
-		if (0 != pathCustom)
-			return pathCustom;
-		if (0 != queryCustom)
-			return queryCustom;
-		if (0 != headerCustom)
-			return headerCustom;
-
-		if (0 != pathDigit)
-			return pathDigit;
-		if (0 != queryDigit)
-			return queryDigit;
-		if (0 != headerDigit)
-			return headerDigit;
-
-		if (0 != pathAlphaNum)
-			return pathAlphaNum;
-		if (0 != queryAlphaNum)
-			return queryAlphaNum;
-		if (0 != headerAlphaNum)
-			return headerAlphaNum;
-
-		if (0 != pathWild)
-			return pathWild;
-		if (0 != queryWild)
-			return queryWild;
-		if (0 != headerWild)
-			return headerWild;
-
-		if (0 != queryExists)
-			return queryExists;
-		if (0 != headerExists)
-			return headerExists;
-
-		return 0;
-	};
+	private static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
+	// b before a, because we want to prioritize the HIGHEST counts first
+	public static final Comparator<? super MockApiMatchData> MOCK_API_FILTER_DATA_COMPARITOR = (a,
+			b) -> MockApiMatchData.comparePriority(b, a);
+
+	/**
+	 * Single pass over the candidates, keeping only the best and second best.
+	 *
+	 * @return the closest match, or null if the top two candidates share the same
+	 *         priority
+	 */
+	public static MockApiMatchData findHighestPriorityMatch(List<MockApiMatchData> mockApiMatchDataList) {
+
+		MockApiMatchData best = null;
+		MockApiMatchData secondBest = null;
+
+		for (MockApiMatchData candidate : mockApiMatchDataList) {
+
+			if (null == best || MockApiMatchData.comparePriority(candidate, best) > 0) {
+
+				secondBest = best;
+				best = candidate;
+
+			} else if (null == secondBest || MockApiMatchData.comparePriority(candidate, secondBest) > 0) {
+
+				secondBest = candidate;
+			}
+		}
+
+		if (null != secondBest && MockApiMatchData.comparePriority(best, secondBest) == 0) {
+
+			return null;
+		}
+
+		return best;
+	}
+
+	/**
+	 * Encodes the response body once, up front, so the bytes can be written as is.
+	 * Only returns a body if it is not blank. The body is labelled as UTF-8 text;
+	 * without a content type, a byte[] body would be served as octet-stream.
+	 */
+	public static ResponseEntity<byte[]> toResponseEntity(String responseBody, HttpStatusCode responseStatus) {
+
+		if (StringUtils.isBlank(responseBody)) {
+
+			return new ResponseEntity<>(responseStatus);
+		}
+
+		byte[] encodedResponseBody = responseBody.getBytes(StandardCharsets.UTF_8);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(TEXT_PLAIN_UTF8);
+		headers.setContentLength(encodedResponseBody.length);
+
+		return new ResponseEntity<>(encodedResponseBody, headers, responseStatus);
+	}
+
+	/**
+	 * Checks a mock's response body the same way whether it is saved through the
+	 * API or imported: the body's generation syntax must compile, and a body file
+	 * must be a readable file inside the body file directory, set instead of a
+	 * body.
+	 */
+	public static void validateResponseBody(String bodyFileDirectory, String responseBody, String responseBodyFile)
+			throws InvalidResponseBodyException {
+
+		if (null != responseBody) {
+
+			ResponseTemplate.compile(responseBody);
+		}
+
+		if (null == responseBodyFile) {
+
+			return;
+		}
+
+		if (null != responseBody) {
+
+			throw new InvalidResponseBodyException("Only one of responseBody and responseBodyFile can be set.");
+		}
+
+		Path bodyFile = resolveBodyFile(bodyFileDirectory, responseBodyFile);
+
+		if (!Files.isRegularFile(bodyFile) || !Files.isReadable(bodyFile)) {
+
+			throw new InvalidResponseBodyException("responseBodyFile (" + bodyFile + ") is not a readable file.");
+		}
+	}
+
+	/**
+	 * Resolves a RESPONSE_BODY_FILE value against the body file directory, so
+	 * mocks can only serve files from inside it. Symbolic links are followed
+	 * before the check, so a link inside the directory can't point outside it.
+	 *
+	 * @return the file's real path
+	 */
+	public static Path resolveBodyFile(String bodyFileDirectory, String responseBodyFile)
+			throws InvalidResponseBodyException {
+
+		Path bodyFile = null;
+
+		try {
+
+			Path directory = Paths.get(bodyFileDirectory).toAbsolutePath().normalize();
+			bodyFile = directory.resolve(responseBodyFile).normalize();
+
+			if (!bodyFile.startsWith(directory)) {
+
+				throw new InvalidResponseBodyException(
+						"responseBodyFile (" + responseBodyFile + ") must be inside " + directory + ".");
+			}
+
+			Path realDirectory = directory.toRealPath();
+			Path realBodyFile = bodyFile.toRealPath();
+
+			if (!realBodyFile.startsWith(realDirectory)) {
+
+				throw new InvalidResponseBodyException(
+						"responseBodyFile (" + responseBodyFile + ") must be inside " + directory + ".");
+			}
+
+			return realBodyFile;
+
+		} catch (InvalidPathException e) {
+
+			throw new InvalidResponseBodyException("Invalid responseBodyFile (" + responseBodyFile + ").");
+
+		} catch (IOException e) {
+
+			throw new InvalidResponseBodyException("responseBodyFile (" + bodyFile + ") is not a readable file.");
+		}
+	}
 
 }
@@ -0,0 +1,55 @@
+package com.niblet.virtualization.util;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Supplies the {@link RandomGenerator} used to fill generated values in
+ * response bodies.
+ */
+@FunctionalInterface
+public interface RandomSource {
+
+	RandomGenerator current();
+
+	/**
+	 * Non-blocking, per-thread PRNG. The default.
+	 */
+	static RandomSource fast() {
+
+		return ThreadLocalRandom::current;
+	}
+
+	/**
+	 * A single shared generator, so a single-threaded run with the same seed
+	 * always produces the same values. Intended for reproducible perf runs.
+	 */
+	static RandomSource seeded(long seed) {
+
+		Random random = new Random(seed);
+
+		return () -> random;
+	}
+
+	/**
+	 * A single shared strong {@link SecureRandom}. May block on entropy, so it is
+	 * opt-in only.
+	 */
+	static RandomSource secure() {
+
+		try {
+
+			SecureRandom secureRandom = SecureRandom.getInstanceStrong();
+
+			return () -> secureRandom;
+
+		} catch (NoSuchAlgorithmException ex) {
+
+			throw new IllegalStateException("No strong SecureRandom algorithm is available.", ex);
+		}
+	}
+
+}
@@ -1,13 +1,20 @@
 DROP TABLE IF EXISTS MOCK_API_REQUEST_RESPONSE;
 
 CREATE TABLE MOCK_API_REQUEST_RESPONSE (
-	ID BIGINT NOT NULL,
+	ID BIGINT GENERATED BY DEFAULT AS IDENTITY,
 	API_PATH VARCHAR(256) NOT NULL,
     REQUEST_VERB VARCHAR(10) NOT NULL,
     REQUEST_HEADERS VARCHAR(512) NULL,
     REQUEST_QUERY_PARAMETERS VARCHAR(256) NOT NULL,
+    REQUEST_BODY VARCHAR(2048) NULL,
     RESPONSE_BODY TEXT NULL,
+    RESPONSE_BODY_FILE VARCHAR(512) NULL,
     RESPONSE_STATUS SMALLINT NOT NULL,
+    DELAY_MODE VARCHAR(16) NULL,
+    DELAY_MILLIS BIGINT NULL,
+    DELAY_UPPER_MILLIS BIGINT NULL,
+    PREGENERATE_RESPONSES BOOLEAN NULL,
+    MATCH_FINGERPRINT CHAR(64) NULL,
     PRIMARY KEY(ID)
 );
 
@@ -75,3 +82,18 @@ INSERT INTO MOCK_API_REQUEST_RESPONSE
 (ID, API_PATH, REQUEST_VERB, REQUEST_HEADERS, REQUEST_QUERY_PARAMETERS, RESPONSE_BODY, RESPONSE_STATUS)
 VALUES
 (13, '^consumer$', 'GET', '.*', '^(a|[^a])*\<page=[abc]{5}\>(a|[^a])*$', 'customRegexQueryParam', '200');
+
+INSERT INTO MOCK_API_REQUEST_RESPONSE
+(ID, API_PATH, REQUEST_VERB, REQUEST_HEADERS, REQUEST_QUERY_PARAMETERS, REQUEST_BODY, RESPONSE_BODY, RESPONSE_STATUS)
+VALUES
+(14, '^consumer$', 'POST', '.*', '.*', '{"fields":{"$.consumer.id":{"matchMode":"DIGITS"}}}', 'digitsBodyField', '201');
+
+-- same value as MockApiFingerprint: SHA-256 of the NUL-joined match columns
+UPDATE MOCK_API_REQUEST_RESPONSE SET MATCH_FINGERPRINT = LOWER(RAWTOHEX(HASH('SHA-256', CONCAT(REQUEST_VERB, CHAR(0),
+    API_PATH, CHAR(0), COALESCE(REQUEST_HEADERS, ''), CHAR(0), REQUEST_QUERY_PARAMETERS, CHAR(0),
+    COALESCE(REQUEST_BODY, '')))));
+ALTER TABLE MOCK_API_REQUEST_RESPONSE ALTER COLUMN MATCH_FINGERPRINT SET NOT NULL;
+ALTER TABLE MOCK_API_REQUEST_RESPONSE ADD CONSTRAINT UK_MOCK_API_MATCH_FINGERPRINT UNIQUE (MATCH_FINGERPRINT);
+
+-- keep generated IDs clear of the seeded rows above
+ALTER TABLE MOCK_API_REQUEST_RESPONSE ALTER COLUMN ID RESTART WITH 15;
@@ -0,0 +1,125 @@
+package com.niblet.virtualization.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.niblet.virtualization.contract.CreateUpdateMockApiRequest;
+import com.niblet.virtualization.contract.CreateUpdateResponse;
+import com.niblet.virtualization.contract.StatusEnum;
+import com.niblet.virtualization.controller.ReactiveMockApiHandler;
+import com.niblet.virtualization.model.MockApiResponse;
+import com.niblet.virtualization.service.NibletServiceVirtualizationService;
+
+class ReactiveRouterConfigTest {
+
+	private final NibletServiceVirtualizationService service = mock(NibletServiceVirtualizationService.class);
+
+	private final WebTestClient webTestClient = WebTestClient
+			.bindToRouterFunction(new ReactiveRouterConfig().mockApiRoutes(new ReactiveMockApiHandler(service)))
+			.build();
+
+	@Test
+	void everyOtherRequestIsAMockRequest() {
+
+		when(service.processAnyMockRequest(any(), any(), any(), anyMap(), anyMap()))
+				.thenReturn(MockApiResponse.immediate(ResponseEntity.status(HttpStatus.ACCEPTED)
+						.contentType(MediaType.APPLICATION_JSON).body("{\"id\":1}".getBytes(StandardCharsets.UTF_8))));
+
+		webTestClient.get().uri("/orders/1?page=2").header("X-Variant", "4").exchange().expectStatus()
+				.isEqualTo(HttpStatus.ACCEPTED).expectHeader().contentType(MediaType.APPLICATION_JSON).expectBody()
+				.json("{\"id\":1}");
+
+		ArgumentCaptor<Map<String, String>> headers = mapCaptor();
+		ArgumentCaptor<Map<String, String>> queryParameters = mapCaptor();
+		verify(service).processAnyMockRequest(eq("GET"), eq("/orders/1"), isNull(), headers.capture(),
+				queryParameters.capture());
+		assertThat(headers.getValue()).containsEntry("X-Variant", "4");
+		assertThat(queryParameters.getValue()).containsExactlyEntriesOf(Map.of("page", "2"));
+
+		webTestClient.post().uri("/orders").bodyValue("{\"sku\":\"a1\"}").exchange().expectStatus()
+				.isEqualTo(HttpStatus.ACCEPTED);
+
+		verify(service).processAnyMockRequest(eq("POST"), eq("/orders"), eq("{\"sku\":\"a1\"}"), anyMap(), anyMap());
+	}
+
+	@Test
+	void delayedAndProxiedResponsesAreWaitedFor() {
+
+		when(service.processAnyMockRequest(eq("GET"), eq("/slow"), any(), anyMap(), anyMap()))
+				.thenReturn(new MockApiResponse(ResponseEntity.ok("slow".getBytes(StandardCharsets.UTF_8)), 200L));
+		when(service.processAnyMockRequest(eq("GET"), eq("/proxied"), any(), anyMap(), anyMap()))
+				.thenReturn(MockApiResponse.proxied(CompletableFuture.supplyAsync(
+						() -> ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(new byte[0]))));
+
+		long start = System.nanoTime();
+
+		webTestClient.get().uri("/slow").exchange().expectStatus().isOk().expectBody(String.class).isEqualTo("slow");
+
+		assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(200_000_000L);
+
+		webTestClient.get().uri("/proxied").exchange().expectStatus().isEqualTo(HttpStatus.BAD_GATEWAY);
+	}
+
+	@Test
+	void createsAndUpdatesMocks() {
+
+		when(service.createUpdateMockApiRequest(any(), any())).thenAnswer(invocation -> {
+
+			CreateUpdateResponse createUpdateResponse = new CreateUpdateResponse();
+			createUpdateResponse.setId(invocation.getArgument(1));
+			createUpdateResponse.setStatus(StatusEnum.SUCCESS);
+
+			return new ResponseEntity<>(createUpdateResponse,
+					null == invocation.getArgument(1) ? HttpStatus.CREATED : HttpStatus.OK);
+		});
+
+		webTestClient.post().uri("/mock/api").contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"apiPath\":\"/orders\"}").exchange().expectStatus().isCreated().expectBody()
+				.jsonPath("$.status").isEqualTo("SUCCESS");
+
+		webTestClient.put().uri("/mock/api/7").contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"apiPath\":\"/orders\"}").exchange().expectStatus().isOk().expectBody()
+				.jsonPath("$.id").isEqualTo(7);
+
+		ArgumentCaptor<CreateUpdateMockApiRequest> createUpdateMockApiRequest = ArgumentCaptor
+				.forClass(CreateUpdateMockApiRequest.class);
+		verify(service).createUpdateMockApiRequest(createUpdateMockApiRequest.capture(), isNull());
+		assertThat(createUpdateMockApiRequest.getValue().getApiPath()).isEqualTo("/orders");
+		verify(service).createUpdateMockApiRequest(any(), eq(7L));
+	}
+
+	@Test
+	void bulkRequestsAreRefusedRatherThanMocked() {
+
+		webTestClient.post().uri("/mock/api/bulk").bodyValue("{}\n").exchange().expectStatus()
+				.isEqualTo(HttpStatus.NOT_IMPLEMENTED);
+		webTestClient.get().uri("/mock/api/bulk").exchange().expectStatus().isEqualTo(HttpStatus.NOT_IMPLEMENTED);
+
+		verifyNoInteractions(service);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static ArgumentCaptor<Map<String, String>> mapCaptor() {
+
+		return ArgumentCaptor.forClass(Map.class);
+	}
+
+}
@@ -0,0 +1,86 @@
+package com.niblet.virtualization.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.niblet.virtualization.contract.DelayModeEnum;
+import com.niblet.virtualization.exception.InvalidResponseDelayException;
+
+class DelayDistributionTest {
+
+	private static final int SAMPLES = 100_000;
+
+	@Test
+	void fixedAlwaysGivesItsDelayAndUniformStaysWithinItsBounds() throws InvalidResponseDelayException {
+
+		assertThat(sample(DelayDistribution.of(DelayModeEnum.FIXED, 250L, null))).containsOnly(250L);
+
+		long[] uniform = sample(DelayDistribution.of(DelayModeEnum.UNIFORM, 100L, 110L));
+
+		// both bounds are inclusive
+		assertThat(Arrays.stream(uniform).min().getAsLong()).isEqualTo(100L);
+		assertThat(Arrays.stream(uniform).max().getAsLong()).isEqualTo(110L);
+	}
+
+	@Test
+	void percentileSamplesHaveTheConfiguredMedianAndP99() throws InvalidResponseDelayException {
+
+		long[] samples = sample(DelayDistribution.of(DelayModeEnum.PERCENTILE, 100L, 1_000L));
+		Arrays.sort(samples);
+
+		assertThat((double) samples[SAMPLES / 2]).isCloseTo(100.0, within(3.0));
+		assertThat((double) samples[SAMPLES * 99 / 100]).isCloseTo(1_000.0, within(50.0));
+
+		// no spread when the p99 is the median
+		assertThat(sample(DelayDistribution.of(DelayModeEnum.PERCENTILE, 40L, 40L))).containsOnly(40L);
+	}
+
+	@Test
+	void percentileSamplesAreCapped() throws InvalidResponseDelayException {
+
+		// 1% of samples land above the p99, which is already the cap
+		long[] samples = sample(DelayDistribution.of(DelayModeEnum.PERCENTILE, 100_000L,
+				DelayDistribution.MAX_DELAY_MILLIS));
+
+		assertThat(Arrays.stream(samples).max().getAsLong()).isEqualTo(DelayDistribution.MAX_DELAY_MILLIS);
+		assertThat(Arrays.stream(samples).filter(sample -> sample == DelayDistribution.MAX_DELAY_MILLIS).count())
+				.isCloseTo(SAMPLES / 100, within((long) SAMPLES / 500));
+	}
+
+	@Test
+	void rejectsSettingsOutOfRangeForTheMode() throws InvalidResponseDelayException {
+
+		assertThat(DelayDistribution.of((DelayModeEnum) null, 100L, null)).isNull();
+
+		assertThatExceptionOfType(InvalidResponseDelayException.class)
+				.isThrownBy(() -> DelayDistribution.of(DelayModeEnum.FIXED, null, null));
+		assertThatExceptionOfType(InvalidResponseDelayException.class).isThrownBy(
+				() -> DelayDistribution.of(DelayModeEnum.FIXED, DelayDistribution.MAX_DELAY_MILLIS + 1, null));
+		assertThatExceptionOfType(InvalidResponseDelayException.class)
+				.isThrownBy(() -> DelayDistribution.of(DelayModeEnum.UNIFORM, 100L, 99L));
+		assertThatExceptionOfType(InvalidResponseDelayException.class)
+				.isThrownBy(() -> DelayDistribution.of(DelayModeEnum.PERCENTILE, 0L, 100L));
+		assertThatExceptionOfType(InvalidResponseDelayException.class)
+				.isThrownBy(() -> DelayDistribution.of("GAUSSIAN", 100L, 200L));
+	}
+
+	private static long[] sample(DelayDistribution delayDistribution) {
+
+		Random random = new Random(11L);
+		long[] samples = new long[SAMPLES];
+
+		for (int i = 0; i < SAMPLES; i++) {
+
+			samples[i] = delayDistribution.sampleMillis(random);
+		}
+
+		return samples;
+	}
+
+}
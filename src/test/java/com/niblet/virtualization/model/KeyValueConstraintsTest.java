@@ -0,0 +1,141 @@
+package com.niblet.virtualization.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+import com.niblet.virtualization.contract.MatchModeEnum;
+import com.niblet.virtualization.model.KeyValueConstraints.VariableType;
+
+class KeyValueConstraintsTest {
+
+	@Test
+	void parsesTheStoredFormBackIntoOneMatcherPerKey() {
+
+		String stored = KeyValueConstraints.toStoredString(new TreeMap<>(Map.of("page", "\\d+", "sort", "")));
+
+		assertThat(stored).isEqualTo("^(a|[^a])*\\<page=\\d+\\>(a|[^a])*\\<sort=\\>(a|[^a])*$");
+		assertThat(match(stored, VariableType.QUERY, "page", "2", "sort", "asc")).containsExactlyInAnyOrderEntriesOf(
+				Map.of(MatchCategory.QUERY_DIGIT, 1, MatchCategory.QUERY_EXISTS, 1));
+		assertThat(match(stored, VariableType.QUERY, "page", "2")).isNull();
+
+		// no constraints
+		assertThat(match(".*", VariableType.QUERY, "page", "2")).isEmpty();
+		assertThat(KeyValueConstraints.toStoredString(new TreeMap<>())).isEqualTo(".*");
+
+		assertThatIllegalArgumentException().isThrownBy(() -> KeyValueConstraints.parse("page=2", VariableType.QUERY));
+		assertThatIllegalArgumentException()
+				.isThrownBy(() -> KeyValueConstraints.parse("^(a|[^a])*\\<page\\>(a|[^a])*$", VariableType.QUERY));
+	}
+
+	@Test
+	void exactMatchesAreLiteralAndCustomRegexesAreNot() {
+
+		String exact = stored("id", Pattern.quote("ab.c"));
+
+		assertThat(match(exact, VariableType.QUERY, "id", "ab.c")).containsEntry(MatchCategory.QUERY_EXACT, 1);
+		assertThat(match(exact, VariableType.QUERY, "id", "abxc")).isNull();
+
+		String custom = stored("id", "ab.c");
+
+		assertThat(match(custom, VariableType.QUERY, "id", "abxc")).containsEntry(MatchCategory.QUERY_CUSTOM, 1);
+		// a value identical to the regex is still an exact match
+		assertThat(match(custom, VariableType.QUERY, "id", "ab.c")).containsEntry(MatchCategory.QUERY_EXACT, 1);
+		assertThat(match(custom, VariableType.QUERY, "id", "abxcd")).isNull();
+	}
+
+	@Test
+	void headerNamesAreCaseInsensitiveButQueryParameterNamesAreNot() {
+
+		String stored = KeyValueConstraints.toStoredString(new TreeMap<>(Map.of("X-Variant", "\\d+")));
+
+		assertThat(match(stored, VariableType.HEADER, "x-VARIANT", "4")).containsEntry(MatchCategory.HEADER_DIGIT, 1);
+		assertThat(match(stored, VariableType.QUERY, "x-variant", "4")).isNull();
+		assertThat(match(stored, VariableType.QUERY, "X-Variant", "4")).containsEntry(MatchCategory.QUERY_DIGIT, 1);
+	}
+
+	@Test
+	void existsOnlyNeedsTheKeyWhileAnyValueNeedsAValue() {
+
+		String exists = stored("flag", MatchModeEnum.EXISTS.getRegex());
+
+		assertThat(match(exists, VariableType.QUERY, "flag", "on")).containsEntry(MatchCategory.QUERY_EXISTS, 1);
+		// an empty value is identical to the stored regex, so, as always, it counts
+		// as an exact match
+		assertThat(match(exists, VariableType.QUERY, "flag", "")).containsEntry(MatchCategory.QUERY_EXACT, 1);
+		assertThat(match(exists, VariableType.QUERY, "other", "on")).isNull();
+
+		String anyValue = stored("flag", MatchModeEnum.ANY_VALUE.getRegex());
+
+		assertThat(match(anyValue, VariableType.QUERY, "flag", "on")).containsEntry(MatchCategory.QUERY_WILD_CARD, 1);
+		assertThat(match(anyValue, VariableType.QUERY, "flag", "")).isNull();
+	}
+
+	@Test
+	void alphaNumericIncludesTheUnderscoreAndDigitsNeedAtLeastOne() {
+
+		String alphaNumeric = stored("code", MatchModeEnum.ALPHA_NUMERIC.getRegex());
+
+		assertThat(match(alphaNumeric, VariableType.QUERY, "code", "a_1Z"))
+				.containsEntry(MatchCategory.QUERY_ALPHA_NUMERIC, 1);
+		assertThat(match(alphaNumeric, VariableType.QUERY, "code", "a-1")).isNull();
+		assertThat(match(alphaNumeric, VariableType.QUERY, "code", "")).isNull();
+
+		String digits = stored("code", MatchModeEnum.DIGITS.getRegex());
+
+		assertThat(match(digits, VariableType.QUERY, "code", "0042")).containsEntry(MatchCategory.QUERY_DIGIT, 1);
+		assertThat(match(digits, VariableType.QUERY, "code", "")).isNull();
+		assertThat(match(digits, VariableType.QUERY, "code", "4a")).isNull();
+	}
+
+	private static String stored(String key, String valueRegex) {
+
+		return KeyValueConstraints.toStoredString(new TreeMap<>(Map.of(key, valueRegex)));
+	}
+
+	/**
+	 * @param keyValues request header or query parameter names, each followed by
+	 *                  its value
+	 * @return the non-zero counts the constraints recorded, or null when they
+	 *         didn't match
+	 */
+	private static Map<MatchCategory, Integer> match(String stored, VariableType variableType,
+			String... keyValues) {
+
+		MockApiRequest request = MockApiRequest.of("GET", "/", null);
+
+		for (int i = 0; i < keyValues.length; i += 2) {
+
+			if (VariableType.HEADER == variableType) {
+				request.addHeader(keyValues[i], keyValues[i + 1]);
+			} else {
+				request.addQueryParameter(keyValues[i], keyValues[i + 1]);
+			}
+		}
+
+		MockApiMatchData mockApiMatchData = new MockApiMatchData();
+
+		if (!KeyValueConstraints.parse(stored, variableType).match(request, mockApiMatchData)) {
+
+			return null;
+		}
+
+		Map<MatchCategory, Integer> counts = new TreeMap<>();
+
+		for (MatchCategory matchCategory : MatchCategory.values()) {
+
+			if (mockApiMatchData.getCount(matchCategory) > 0) {
+
+				counts.put(matchCategory, mockApiMatchData.getCount(matchCategory));
+			}
+		}
+
+		return counts;
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.niblet.virtualization.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class MockApiMatchDataTest {
+
+	@Test
+	void matchTypeOutranksVariableTypeAndCount() {
+
+		// every exact match ranks above any custom regex match
+		assertThat(compare(matchData(MatchCategory.HEADER_EXACT, 1),
+				matchData(MatchCategory.PATH_CUSTOM, 7, MatchCategory.QUERY_CUSTOM, 3))).isPositive();
+		// within one match type, path outranks query, which outranks header
+		assertThat(compare(matchData(MatchCategory.PATH_EXACT, 1),
+				matchData(MatchCategory.QUERY_EXACT, 3, MatchCategory.HEADER_EXACT, 3))).isPositive();
+		assertThat(compare(matchData(MatchCategory.HEADER_EXISTS, 2), matchData(MatchCategory.QUERY_EXISTS, 1)))
+				.isNegative();
+		assertThat(compare(matchData(MatchCategory.PATH_DIGIT, 2), matchData(MatchCategory.PATH_DIGIT, 2))).isZero();
+	}
+
+	@Test
+	void countsTooLargeForTheirPackedFieldAreComparedRaw() {
+
+		// HEADER_EXACT has a 2-bit field, so 4 packs the same as 3
+		MockApiMatchData fourExactHeaders = matchData(MatchCategory.HEADER_EXACT, 4);
+		MockApiMatchData threeExactHeaders = matchData(MatchCategory.HEADER_EXACT, 3);
+
+		assertThat(fourExactHeaders.isScoreSaturated()).isTrue();
+		assertThat(fourExactHeaders.getScore()).isEqualTo(threeExactHeaders.getScore());
+		assertThat(compare(fourExactHeaders, threeExactHeaders)).isPositive();
+		assertThat(compare(threeExactHeaders, fourExactHeaders)).isNegative();
+
+		// a lower category can't make up for the capped count
+		assertThat(compare(fourExactHeaders,
+				matchData(MatchCategory.HEADER_EXACT, 3, MatchCategory.HEADER_CUSTOM, 1))).isPositive();
+		assertThat(compare(fourExactHeaders, matchData(MatchCategory.HEADER_EXACT, 4))).isZero();
+		// a higher category still wins
+		assertThat(compare(fourExactHeaders, matchData(MatchCategory.QUERY_EXACT, 1))).isNegative();
+	}
+
+	@Test
+	void countsAddUpAcrossIncrements() {
+
+		MockApiMatchData mockApiMatchData = new MockApiMatchData();
+		mockApiMatchData.increment(MatchCategory.BODY_EXACT);
+		mockApiMatchData.add(MatchCategory.BODY_EXACT, 2);
+
+		assertThat(mockApiMatchData.getCount(MatchCategory.BODY_EXACT)).isEqualTo(3);
+		assertThat(mockApiMatchData.isScoreSaturated()).isFalse();
+
+		mockApiMatchData.increment(MatchCategory.BODY_EXACT);
+
+		assertThat(mockApiMatchData.isScoreSaturated()).isTrue();
+	}
+
+	private static int compare(MockApiMatchData a, MockApiMatchData b) {
+
+		return MockApiMatchData.comparePriority(a, b);
+	}
+
+	private static MockApiMatchData matchData(MatchCategory category, int count) {
+
+		MockApiMatchData mockApiMatchData = new MockApiMatchData();
+		mockApiMatchData.add(category, count);
+
+		return mockApiMatchData;
+	}
+
+	private static MockApiMatchData matchData(MatchCategory category, int count, MatchCategory otherCategory,
+			int otherCount) {
+
+		MockApiMatchData mockApiMatchData = matchData(category, count);
+		mockApiMatchData.add(otherCategory, otherCount);
+
+		return mockApiMatchData;
+	}
+
+}
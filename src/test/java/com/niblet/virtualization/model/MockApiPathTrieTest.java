@@ -0,0 +1,137 @@
+package com.niblet.virtualization.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+
+class MockApiPathTrieTest {
+
+	@Test
+	void countsEachPathSectionByHowItMatched() {
+
+		MockApiPathTrie pathTrie = new MockApiPathTrie();
+		pathTrie.insert(compile(1L, "^orders///(?<id>\\d+)///items$"));
+		pathTrie.insert(compile(2L, "^orders///(?<id>[a-zA-Z0-9_]+)///items$"));
+		pathTrie.insert(compile(3L, "^orders///(?<id>[^/]+)///(?<part>[^/]+)$"));
+		pathTrie.insert(compile(4L, "^orders///(?<id>4\\d)///items$"));
+		pathTrie.insert(compile(5L, "^orders///42///items$"));
+		pathTrie.insert(compile(6L, "^orders///42$"));
+
+		Map<Long, Map<MatchCategory, Integer>> pathCounts = find(pathTrie, "/orders/42/items");
+
+		assertThat(pathCounts).containsOnlyKeys(1L, 2L, 3L, 4L, 5L);
+		assertThat(pathCounts.get(1L)).containsExactlyInAnyOrderEntriesOf(
+				Map.of(MatchCategory.PATH_EXACT, 2, MatchCategory.PATH_DIGIT, 1));
+		assertThat(pathCounts.get(2L)).containsExactlyInAnyOrderEntriesOf(
+				Map.of(MatchCategory.PATH_EXACT, 2, MatchCategory.PATH_ALPHA_NUMERIC, 1));
+		assertThat(pathCounts.get(3L)).containsExactlyInAnyOrderEntriesOf(
+				Map.of(MatchCategory.PATH_EXACT, 1, MatchCategory.PATH_WILD_CARD, 2));
+		assertThat(pathCounts.get(4L)).containsExactlyInAnyOrderEntriesOf(
+				Map.of(MatchCategory.PATH_EXACT, 2, MatchCategory.PATH_CUSTOM, 1));
+		assertThat(pathCounts.get(5L)).containsExactlyInAnyOrderEntriesOf(Map.of(MatchCategory.PATH_EXACT, 3));
+
+		// not a digit, alphanumeric or custom match, so only the wildcard mock is left
+		assertThat(find(pathTrie, "/orders/x-1/items")).containsOnlyKeys(3L);
+		assertThat(find(pathTrie, "/orders/42")).containsOnlyKeys(6L);
+		assertThat(find(pathTrie, "/orders/42/items/7")).isEmpty();
+	}
+
+	@Test
+	void aSectionIsMatchedAsAWholeAndOnlyBySectionsOfTheSameDepth() {
+
+		MockApiPathTrie pathTrie = new MockApiPathTrie();
+		pathTrie.insert(compile(1L, "^orders///(?<id>\\d+)$"));
+		pathTrie.insert(compile(2L, "^orders///(?<id>4)$"));
+
+		assertThat(find(pathTrie, "/orders/42")).containsOnlyKeys(1L);
+		assertThat(find(pathTrie, "/orders/4")).containsOnlyKeys(1L, 2L);
+		assertThat(find(pathTrie, "/orders/4/2")).isEmpty();
+		assertThat(find(pathTrie, "/orders")).isEmpty();
+	}
+
+	@Test
+	void copiesWithAndWithoutAMockMatchLikeATrieBuiltFromScratch() {
+
+		MockApiPathTrie original = new MockApiPathTrie();
+		original.insert(compile(1L, "^orders///(?<id>\\d+)$"));
+		original.insert(compile(2L, "^orders///(?<id>[^/]+)///items$"));
+		original.insert(compile(3L, "^customers$"));
+
+		// add 4, move 2 to a new path and remove 3
+		MockApiPathTrie copy = original.with(compile(4L, "^orders///(?<id>4\\d)$"))
+				.without("^orders///(?<id>[^/]+)///items$", 2L)
+				.with(compile(2L, "^orders///(?<id>[a-zA-Z0-9_]+)///items$")).without("^customers$", 3L);
+
+		MockApiPathTrie expected = new MockApiPathTrie();
+		expected.insert(compile(1L, "^orders///(?<id>\\d+)$"));
+		expected.insert(compile(4L, "^orders///(?<id>4\\d)$"));
+		expected.insert(compile(2L, "^orders///(?<id>[a-zA-Z0-9_]+)///items$"));
+
+		for (String requestURI : new String[] { "/orders/42", "/orders/7", "/orders/a1/items", "/orders/x-1/items",
+				"/customers" }) {
+
+			assertThat(find(copy, requestURI)).as(requestURI).isEqualTo(find(expected, requestURI));
+		}
+
+		assertThat(find(copy, "/orders/42")).containsOnlyKeys(1L, 4L);
+		assertThat(find(copy, "/customers")).isEmpty();
+
+		// the copies leave the original as it was
+		assertThat(find(original, "/orders/42")).containsOnlyKeys(1L);
+		assertThat(find(original, "/orders/x-1/items")).containsOnlyKeys(2L);
+		assertThat(find(original, "/customers")).containsOnlyKeys(3L);
+
+		assertThat(copy.without("^orders///(?<id>\\d+)$", 1L).without("^orders///(?<id>4\\d)$", 4L)
+				.without("^orders///(?<id>[a-zA-Z0-9_]+)///items$", 2L).isEmpty()).isTrue();
+	}
+
+	/**
+	 * @return the non-zero path counts of each mock found, by mock ID
+	 */
+	private static Map<Long, Map<MatchCategory, Integer>> find(MockApiPathTrie pathTrie, String requestURI) {
+
+		MockApiRequest request = MockApiRequest.of("GET", requestURI, null);
+		request.canonicalize();
+		pathTrie.find(request);
+
+		Map<Long, Map<MatchCategory, Integer>> pathCountsByMockApiId = new HashMap<>();
+
+		for (MockApiMatchData match : request.getMatches()) {
+
+			Map<MatchCategory, Integer> pathCounts = new EnumMap<>(MatchCategory.class);
+
+			for (MatchCategory matchCategory : MatchCategory.values()) {
+
+				if (match.getCount(matchCategory) > 0) {
+
+					pathCounts.put(matchCategory, match.getCount(matchCategory));
+				}
+			}
+
+			pathCountsByMockApiId.put(match.getCompiledMockApi().getEntity().getId(), pathCounts);
+		}
+
+		return pathCountsByMockApiId;
+	}
+
+	private static CompiledMockApi compile(long id, String apiPath) {
+
+		MockApiRequestResponseEntity entity = new MockApiRequestResponseEntity();
+		entity.setId(id);
+		entity.setApiPath(apiPath);
+		entity.setRequestVerb("GET");
+		entity.setRequestHeaders(".*");
+		entity.setRequestQueryParameters(".*");
+		entity.setResponseBody("{}");
+		entity.setResponseStatus("200");
+
+		return new CompiledMockApi(entity, null, 0);
+	}
+
+}
@@ -0,0 +1,93 @@
+package com.niblet.virtualization.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.niblet.virtualization.exception.InvalidRegexException;
+
+class RegexGuardTest {
+
+	private static final List<String> INPUTS = List.of("", "a", "aa", "ab", "aab", "b", "ba", "123", "12-34", "1-",
+			"-1", "abc123", "ABC", "x-y", "a\nb", "a b", "aaaaaaaaaaaaaaaaaaaaaaaab", "é", "😀",
+			"key=value", "key=", "k=v=w", "a1b2c3");
+
+	@Test
+	void rewritesRepeatsToPossessiveWhereTheNextLiteralIsDisjoint() throws InvalidRegexException {
+
+		assertThat(RegexGuard.rewrite("\\d+-\\d+")).isEqualTo("\\d++-\\d++");
+		assertThat(RegexGuard.rewrite("[a-z]*=.*")).isEqualTo("[a-z]*+=.*+");
+		// the next literal is a digit, so the repeat must be able to give it back
+		assertThat(RegexGuard.rewrite("\\w+1")).isEqualTo("\\w+1");
+		assertThat(RegexGuard.rewrite("(?:a+)+b")).isEqualTo("a++b");
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "\\d+-\\d+", "[a-z]*=.*", "\\w+1", "(?:a+)+b", "(a*)*b", "(a|[^a])*", "[^=]+=[^=]*",
+			"a.*b", "(\\d|[a-z])+", "[\\w-]+", "(?i)[a-z]+", "(?s)a.*", "\\x41+B", "\\u0061*b", "[]a]+", "[a-]+",
+			"(x|y)?z+" })
+	void rewriteMatchesTheSameStrings(String regex) throws InvalidRegexException {
+
+		Pattern original = Pattern.compile(regex);
+		Pattern rewritten = Pattern.compile(RegexGuard.rewrite(regex));
+
+		for (String input : INPUTS) {
+
+			assertThat(rewritten.matcher(input).matches()).as("%s against '%s'", regex, input)
+					.isEqualTo(original.matcher(input).matches());
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "(\\w+\\s?)*", "(a+b?)+", "(a|aa)*", "(a|aa){1,100}b", "(a|a)+", "(.|x)*",
+			"(\\d|[0-5])*", "([a-z]|\\w)+", "(?i)(a|A)*", "(\\p{L}|x)*", "(\\s|\\t)*", "(ab|a)*", "(ab|abab)*",
+			"(a+b|ac)*", "(?i)(ab|Ab)*" })
+	void rejectsRepeatsThatCanBacktrackCatastrophically(String regex) {
+
+		assertThatThrownBy(() -> RegexGuard.validate(regex)).isInstanceOf(InvalidRegexException.class);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "(a|[^a])*", "(\\d|[a-z])+", "(x|y|z)*", "(\\s|\\S)*", "(?i)(a|b)*", "(\\.|[^.])*",
+			"(\\x41|B)*", "([a-c]|[d-f])+", "(?>a+)+", "(a++)*", "(ab|ac)*", "(foo|far)*", "(a\\d|ab|b)+" })
+	void acceptsRepeatsThatCanOnlyMatchOneWay(String regex) throws InvalidRegexException {
+
+		RegexGuard.validate(regex);
+	}
+
+	@Test
+	void rejectsRegexesThatDoNotCompile() {
+
+		assertThatThrownBy(() -> RegexGuard.validate("(a")).isInstanceOf(InvalidRegexException.class);
+	}
+
+	@Test
+	void compileFallsBackToTheRegexAsWrittenWhenItCannotBeMadeSafe() {
+
+		assertThat(RegexGuard.compile("(a|aa)*").pattern()).isEqualTo("(a|aa)*");
+		assertThat(RegexGuard.compile("\\d+-\\d+").pattern()).isEqualTo("\\d++-\\d++");
+	}
+
+	@Test
+	void abandonsAMatchThatUsesUpItsStepBudget() {
+
+		MockApiRequest request = MockApiRequest.of("GET", "/", null);
+		// bounded repeats aren't memoized by the regex engine, so this is exponential
+		Pattern catastrophic = Pattern.compile("(a|aa){1,100}b");
+
+		assertThat(RegexGuard.matches(catastrophic, "a".repeat(64), request)).isFalse();
+		assertThat(request.getRegexBudgetExceededCount()).isEqualTo(1);
+
+		assertThat(RegexGuard.matches(catastrophic, "aaab", request)).isTrue();
+		assertThat(request.getRegexBudgetExceededCount()).isEqualTo(1);
+
+		assertThat(MockApiRequest.of("GET", "/", null).getRegexBudgetExceededCount()).isZero();
+	}
+
+}
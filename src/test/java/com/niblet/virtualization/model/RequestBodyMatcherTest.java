@@ -0,0 +1,191 @@
+package com.niblet.virtualization.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.niblet.virtualization.contract.MatchModeEnum;
+import com.niblet.virtualization.contract.RequestBodyDetails;
+import com.niblet.virtualization.contract.RequestVariableDetails;
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+
+class RequestBodyMatcherTest {
+
+	private static final String ORDER_JSON = """
+			{"order": {"id": "42", "customer": {"name": "Ann", "vip": null},
+			  "items": [{"sku": "a1", "qty": 2}, {"sku": "b2", "qty": 10}]},
+			 "note": "rush"}""";
+
+	private static final String ORDER_XML = """
+			<ns:order xmlns:ns="urn:orders" xmlns:xsi="http://www.w3.org/2001/XMLSchema-instance" ns:version="3">
+			  <ns:id>42</ns:id>
+			  <ns:customer><ns:name>Ann</ns:name><ns:vip xsi:nil="true"/></ns:customer>
+			</ns:order>""";
+
+	@Test
+	void matchesNestedJsonFields() {
+
+		assertThat(matches(ORDER_JSON, "$.order.id", MatchModeEnum.DIGITS, null)).isTrue();
+		assertThat(matches(ORDER_JSON, "$.order.customer.name", MatchModeEnum.EXACT_MATCH, "Ann")).isTrue();
+		assertThat(matches(ORDER_JSON, "$.order.customer.name", MatchModeEnum.EXACT_MATCH, "Bob")).isFalse();
+		assertThat(matches(ORDER_JSON, "$.note", MatchModeEnum.CUSTOM_REGEX, "r[a-z]+")).isTrue();
+		// an object has no scalar value, but it exists
+		assertThat(matches(ORDER_JSON, "$.order.customer", MatchModeEnum.EXISTS, null)).isTrue();
+		assertThat(matches(ORDER_JSON, "$.order.customer", MatchModeEnum.ANY_VALUE, null)).isFalse();
+	}
+
+	@Test
+	void matchesJsonArrayElementsByIndex() {
+
+		assertThat(matches(ORDER_JSON, "$.order.items[1].sku", MatchModeEnum.EXACT_MATCH, "b2")).isTrue();
+		assertThat(matches(ORDER_JSON, "$.order.items[0].sku", MatchModeEnum.EXACT_MATCH, "b2")).isFalse();
+		assertThat(matches(ORDER_JSON, "$.order.items[1].qty", MatchModeEnum.DIGITS, null)).isTrue();
+		assertThat(matches(ORDER_JSON, "$.order.items[2].sku", MatchModeEnum.EXISTS, null)).isFalse();
+		assertThat(matches("[\"x\", \"y\"]", "$[1]", MatchModeEnum.EXACT_MATCH, "y")).isTrue();
+	}
+
+	@Test
+	void nullFieldsMatchOnlyTheNullModesAndExists() {
+
+		assertThat(matches(ORDER_JSON, "$.order.customer.vip", MatchModeEnum.IS_NULL, null)).isTrue();
+		assertThat(matches(ORDER_JSON, "$.order.customer.vip", MatchModeEnum.EXISTS, null)).isTrue();
+		assertThat(matches(ORDER_JSON, "$.order.customer.vip", MatchModeEnum.IS_NOT_NULL, null)).isFalse();
+		assertThat(matches(ORDER_JSON, "$.order.customer.vip", MatchModeEnum.ANY_VALUE, null)).isFalse();
+		assertThat(matches(ORDER_JSON, "$.order.id", MatchModeEnum.IS_NULL, null)).isFalse();
+		assertThat(matches(ORDER_JSON, "$.order.id", MatchModeEnum.IS_NOT_NULL, null)).isTrue();
+	}
+
+	@Test
+	void absentFieldsMatchOnlyIsNull() {
+
+		assertThat(matches(ORDER_JSON, "$.order.coupon", MatchModeEnum.IS_NULL, null)).isTrue();
+		assertThat(matches(ORDER_JSON, "$.order.coupon", MatchModeEnum.IS_NOT_NULL, null)).isFalse();
+		assertThat(matches(ORDER_JSON, "$.order.coupon", MatchModeEnum.EXISTS, null)).isFalse();
+		assertThat(matches(ORDER_JSON, "$.order.coupon", MatchModeEnum.CUSTOM_REGEX, ".*")).isFalse();
+		assertThat(matches(ORDER_XML, "/order/coupon", MatchModeEnum.IS_NULL, null)).isTrue();
+		assertThat(matches(ORDER_XML, "/order/coupon", MatchModeEnum.EXISTS, null)).isFalse();
+	}
+
+	@Test
+	void everyFieldOfAMockMustMatch() {
+
+		Map<String, RequestVariableDetails> fields = Map.of("$.order.id", details(MatchModeEnum.DIGITS, null),
+				"$.order.coupon", details(MatchModeEnum.IS_NULL, null));
+
+		assertThat(filter(ORDER_JSON, fields)).isNotNull().satisfies(matchData -> {
+
+			assertThat(matchData.getCount(MatchCategory.BODY_DIGIT)).isEqualTo(1);
+			assertThat(matchData.getCount(MatchCategory.BODY_EXACT)).isEqualTo(1);
+		});
+
+		assertThat(filter(ORDER_JSON, Map.of("$.order.id", details(MatchModeEnum.DIGITS, null), "$.note",
+				details(MatchModeEnum.DIGITS, null)))).isNull();
+	}
+
+	@Test
+	void malformedBodiesMatchNoFieldConstraints() {
+
+		assertThat(matches("{\"order\": {\"id\": \"42\"", "$.order.coupon", MatchModeEnum.IS_NULL, null)).isFalse();
+		assertThat(matches("{\"a\": }", "$.a", MatchModeEnum.EXISTS, null)).isFalse();
+		assertThat(matches("<order><id>42</order>", "/order/id", MatchModeEnum.DIGITS, null)).isFalse();
+		assertThat(matches("<order><id>42</id>", "/order/coupon", MatchModeEnum.IS_NULL, null)).isFalse();
+		assertThat(matches("not a body", "$.a", MatchModeEnum.IS_NULL, null)).isFalse();
+		// a JSON constraint never matches an XML body
+		assertThat(matches(ORDER_XML, "$.order.id", MatchModeEnum.EXISTS, null)).isFalse();
+	}
+
+	@Test
+	void matchesXmlByLocalNameWhateverTheNamespace() {
+
+		assertThat(matches(ORDER_XML, "/order/id", MatchModeEnum.DIGITS, null)).isTrue();
+		assertThat(matches(ORDER_XML, "/order/customer/name", MatchModeEnum.EXACT_MATCH, "Ann")).isTrue();
+		assertThat(matches(ORDER_XML, "/order/@version", MatchModeEnum.EXACT_MATCH, "3")).isTrue();
+		assertThat(matches(ORDER_XML, "/order/customer/vip", MatchModeEnum.IS_NULL, null)).isTrue();
+		assertThat(matches(ORDER_XML, "/order/customer/vip", MatchModeEnum.IS_NOT_NULL, null)).isFalse();
+		// an element's value is its own text, without its children's
+		assertThat(matches(ORDER_XML, "/order/customer", MatchModeEnum.ANY_VALUE, null)).isFalse();
+	}
+
+	@Test
+	void refusesXmlDoctypes() {
+
+		String body = "<!DOCTYPE order [<!ENTITY id \"42\">]><order><id>&id;</id></order>";
+
+		assertThat(matches(body, "/order/id", MatchModeEnum.DIGITS, null)).isFalse();
+	}
+
+	@Test
+	void scansXmlOnManyThreadsAtOnce() throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+
+			List<Future<Boolean>> results = new ArrayList<>();
+
+			for (int i = 0; i < 200; i++) {
+
+				results.add(executor.submit(() -> matches(ORDER_XML, "/order/customer/name",
+						MatchModeEnum.EXACT_MATCH, "Ann")));
+			}
+
+			for (Future<Boolean> result : results) {
+
+				assertThat(result.get()).isTrue();
+			}
+
+		} finally {
+
+			executor.shutdownNow();
+		}
+	}
+
+	private static boolean matches(String body, String path, MatchModeEnum matchMode, String customRegexString) {
+
+		return null != filter(body, Map.of(path, details(matchMode, customRegexString)));
+	}
+
+	/**
+	 * @return the mock's match data when its body constraints matched, or null
+	 */
+	private static MockApiMatchData filter(String body, Map<String, RequestVariableDetails> fields) {
+
+		RequestBodyDetails requestBodyDetails = new RequestBodyDetails();
+		requestBodyDetails.setFields(fields);
+
+		MockApiRequestResponseEntity entity = new MockApiRequestResponseEntity();
+		entity.setId(1L);
+		entity.setApiPath("^orders$");
+		entity.setRequestVerb("POST");
+		entity.setRequestHeaders(".*");
+		entity.setRequestQueryParameters(".*");
+		entity.setRequestBody(RequestBodyConstraints.toStoredString(requestBodyDetails));
+		entity.setResponseBody("{}");
+		entity.setResponseStatus("200");
+
+		MockApiRequest request = MockApiRequest.of("POST", "/orders", body);
+		List<MockApiMatchData> candidates = new ArrayList<>();
+		candidates.add(request.newMatchData(new CompiledMockApi(entity, null, 0)));
+
+		RequestBodyMatcher.filter(candidates, request);
+
+		return candidates.isEmpty() ? null : candidates.get(0);
+	}
+
+	private static RequestVariableDetails details(MatchModeEnum matchMode, String customRegexString) {
+
+		RequestVariableDetails details = new RequestVariableDetails();
+		details.setMatchMode(matchMode);
+		details.setCustomRegexString(customRegexString);
+
+		return details;
+	}
+
+}
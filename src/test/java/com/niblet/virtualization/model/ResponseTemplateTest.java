@@ -0,0 +1,104 @@
+package com.niblet.virtualization.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import com.niblet.virtualization.exception.InvalidResponseBodyException;
+
+class ResponseTemplateTest {
+
+	private static final String LOWER = "abcdefghijklmnopqrstuvwxyz";
+	private static final String DIGITS = "0123456789";
+	// every printable ASCII character but the space
+	private static final String CHARACTERS = IntStream.rangeClosed('!', '~')
+			.mapToObj(c -> String.valueOf((char) c)).collect(Collectors.joining());
+
+	@Test
+	void repeatsTheOnlyCharacterOfASingleCharacterAlphabet() throws InvalidResponseBodyException {
+
+		assertThat(render("{select[x](5)}", new Random(1L))).isEqualTo("xxxxx");
+		// repeated characters are only counted once
+		assertThat(render("{select[xxx](40)}", new Random(2L))).isEqualTo("x".repeat(40));
+	}
+
+	@Test
+	void rendersNothingForAZeroLength() throws InvalidResponseBodyException {
+
+		assertThat(render("[{digits(0)}]", new Random(3L))).isEqualTo("[]");
+		assertThat(render("[{characters(0,0)}]", new Random(4L))).isEqualTo("[]");
+	}
+
+	@Test
+	void picksEveryLengthInTheRange() throws InvalidResponseBodyException {
+
+		ResponseTemplate template = ResponseTemplate.compile("{alpha(3,5)}");
+		Random random = new Random(5L);
+		Map<Integer, Integer> lengthCounts = new TreeMap<>();
+
+		for (int i = 0; i < 3_000; i++) {
+
+			lengthCounts.merge(template.render(random).length(), 1, Integer::sum);
+		}
+
+		assertThat(lengthCounts).containsOnlyKeys(3, 4, 5)
+				.allSatisfy((length, count) -> assertThat(count).isBetween(800, 1_200));
+	}
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = { "{digits(1000)}|10", "{lower(1000)}|26",
+			"{select[0123456789abcdef](1000)}|16",
+			"{select[abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_-](1000)}|64",
+			"{characters(1000)}|94" })
+	void drawsEveryCharacterOfTheAlphabetAboutEquallyOften(String token, int alphabetSize)
+			throws InvalidResponseBodyException {
+
+		ResponseTemplate template = ResponseTemplate.compile(token);
+		Random random = new Random(6L);
+		Map<Character, Integer> characterCounts = new TreeMap<>();
+		int rendered = 0;
+
+		for (int i = 0; i < 400; i++) {
+
+			for (char c : template.render(random).toCharArray()) {
+
+				characterCounts.merge(c, 1, Integer::sum);
+				rendered++;
+			}
+		}
+
+		double expected = (double) rendered / alphabetSize;
+
+		assertThat(characterCounts).hasSize(alphabetSize);
+		// within 10% of a fair share, which is several standard deviations for
+		// 400,000 draws even over 94 characters
+		assertThat(characterCounts.values())
+				.allSatisfy(count -> assertThat((double) count).isBetween(expected * 0.9, expected * 1.1));
+	}
+
+	@Test
+	void drawsOnlyFromTheNamedAlphabets() throws InvalidResponseBodyException {
+
+		Random random = new Random(7L);
+
+		assertThat(render("{digits(500)}", random)).containsOnlyDigits().hasSize(500);
+		assertThat(render("{lower(500)}", random).chars()).allMatch(c -> LOWER.indexOf(c) >= 0);
+		assertThat(render("{alphanumeric(500)}", random)).matches("[a-zA-Z0-9]{500}");
+		assertThat(render("{characters(2000)}", random).chars()).allMatch(c -> CHARACTERS.indexOf(c) >= 0);
+		assertThat(CHARACTERS).hasSize(94).doesNotContain(" ").contains(DIGITS);
+	}
+
+	private static String render(String payload, Random random) throws InvalidResponseBodyException {
+
+		return ResponseTemplate.compile(payload).render(random);
+	}
+
+}
@@ -0,0 +1,194 @@
+package com.niblet.virtualization.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.contract.BulkImportResponse;
+import com.niblet.virtualization.contract.MockApiDefinition;
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+import com.niblet.virtualization.jpa.repository.MockApiRequestResponseJdbcRepository;
+
+/**
+ * Imports into an embedded H2 seeded by data.sql, so batches are refused by
+ * the real unique MATCH_FINGERPRINT constraint and rolled back to real
+ * savepoints. The catalog is a mock that knows no fingerprints.
+ */
+class MockApiBulkServiceTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@TempDir
+	private Path bodyFileDirectory;
+
+	private EmbeddedDatabase database;
+	private JdbcTemplate jdbcTemplate;
+	private MockApiRequestResponseJdbcRepository mockApiRequestResponseJdbcRepository;
+	private MockApiBulkService mockApiBulkService;
+	// the highest seeded ID, so only imported rows are read back
+	private long seededMaxId;
+
+	@BeforeEach
+	void createService() throws IOException {
+
+		Files.writeString(bodyFileDirectory.resolve("order.json"), "{\"id\":7}");
+
+		NibletServiceVirtualizationProperties properties = new NibletServiceVirtualizationProperties();
+		properties.getBodyFiles().setDirectory(bodyFileDirectory.toString());
+
+		MockApiCatalog mockApiCatalog = mock(MockApiCatalog.class);
+		when(mockApiCatalog.getFingerprints()).thenReturn(Set.of());
+
+		database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true)
+				.addScripts("classpath:data.sql").build();
+		jdbcTemplate = new JdbcTemplate(database);
+		seededMaxId = jdbcTemplate.queryForObject("SELECT MAX(ID) FROM MOCK_API_REQUEST_RESPONSE", Long.class);
+		mockApiRequestResponseJdbcRepository = new MockApiRequestResponseJdbcRepository(jdbcTemplate);
+
+		mockApiBulkService = new MockApiBulkService(mockApiCatalog, mockApiRequestResponseJdbcRepository, database,
+				objectMapper, properties);
+	}
+
+	@AfterEach
+	void shutDownDatabase() {
+
+		database.shutdown();
+	}
+
+	@Test
+	void rejectsLinesTheApiWouldRefuse() throws IOException {
+
+		MockApiDefinition bodyAndBodyFile = definition("^a$");
+		bodyAndBodyFile.setResponseBodyFile("order.json");
+
+		MockApiDefinition missingBodyFile = definition("^b$");
+		missingBodyFile.setResponseBody(null);
+		missingBodyFile.setResponseBodyFile("missing.json");
+
+		MockApiDefinition bodyFileOutsideDirectory = definition("^c$");
+		bodyFileOutsideDirectory.setResponseBody(null);
+		bodyFileOutsideDirectory.setResponseBodyFile("../order.json");
+
+		MockApiDefinition badGenerationSyntax = definition("^d$");
+		badGenerationSyntax.setResponseBody("{digits(5,2)}");
+
+		MockApiDefinition catastrophicPathRegex = definition("^orders///(?<id>(a|aa)*)$");
+
+		MockApiDefinition bodyFile = definition("^f$");
+		bodyFile.setResponseBody(null);
+		bodyFile.setResponseBodyFile("order.json");
+
+		BulkImportResponse bulkImportResponse = importMockApis(bodyAndBodyFile, missingBodyFile,
+				bodyFileOutsideDirectory, badGenerationSyntax, catastrophicPathRegex, bodyFile, definition("^g$"));
+
+		assertThat(bulkImportResponse.getCreatedCount()).isEqualTo(2);
+		assertThat(bulkImportResponse.getRejectedCount()).isEqualTo(5);
+		assertThat(bulkImportResponse.getErrors()).satisfiesExactly(
+				error -> assertThat(error).startsWith("line 1: invalid responseBody: Only one of"),
+				error -> assertThat(error).startsWith("line 2: invalid responseBody:").contains("not a readable file"),
+				error -> assertThat(error).startsWith("line 3: invalid responseBody:").contains("must be inside"),
+				error -> assertThat(error).startsWith("line 4: invalid responseBody: Length range"),
+				error -> assertThat(error).startsWith("line 5: invalid custom regex:"));
+		assertThat(importedApiPaths()).containsExactly("^f$", "^g$");
+	}
+
+	@Test
+	void reportsTheRowsTheDatabaseRefuses() throws IOException {
+
+		// longer than the REQUEST_VERB column
+		MockApiDefinition tooLongVerb = definition("^b$");
+		tooLongVerb.setRequestVerb("PROPPATCHES");
+
+		BulkImportResponse bulkImportResponse = importMockApis(definition("^a$"), tooLongVerb, definition("^c$"));
+
+		assertThat(bulkImportResponse.getCreatedCount()).isEqualTo(2);
+		assertThat(bulkImportResponse.getRejectedCount()).isEqualTo(1);
+		assertThat(bulkImportResponse.getErrors()).singleElement().asString()
+				.startsWith("line 2: rejected by the database:");
+		// whatever the refused batch wrote before it failed was rolled back
+		assertThat(importedApiPaths()).containsExactly("^a$", "^c$");
+	}
+
+	@Test
+	void reportsTheRowsThatLoseARaceToAConcurrentSave() throws IOException {
+
+		// saved by another writer after the import read the catalog's fingerprints
+		MockApiRequestResponseEntity concurrentlySaved = new MockApiRequestResponseEntity();
+		concurrentlySaved.setApiPath("^b$");
+		concurrentlySaved.setRequestVerb("GET");
+		concurrentlySaved.setRequestHeaders(".*");
+		concurrentlySaved.setRequestQueryParameters(".*");
+		concurrentlySaved.setResponseBody("{}");
+		concurrentlySaved.setResponseStatus("200");
+		concurrentlySaved.updateMatchFingerprint();
+		mockApiRequestResponseJdbcRepository.insertAll(List.of(concurrentlySaved));
+
+		BulkImportResponse bulkImportResponse = importMockApis(definition("^a$"), definition("^b$"),
+				definition("^c$"));
+
+		assertThat(bulkImportResponse.getCreatedCount()).isEqualTo(2);
+		assertThat(bulkImportResponse.getRejectedCount()).isEqualTo(1);
+		assertThat(bulkImportResponse.getErrors())
+				.containsExactly("line 2: request details are an exact match for an existing Mock API");
+		// whatever the refused batch wrote before it failed was rolled back
+		assertThat(importedApiPaths()).containsExactly("^b$", "^a$", "^c$");
+	}
+
+	private BulkImportResponse importMockApis(MockApiDefinition... definitions) throws IOException {
+
+		StringBuilder ndjson = new StringBuilder();
+
+		for (MockApiDefinition definition : definitions) {
+
+			ndjson.append(objectMapper.writeValueAsString(definition)).append('\n');
+		}
+
+		ResponseEntity<BulkImportResponse> response = mockApiBulkService
+				.importMockApis(new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)));
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		return response.getBody();
+	}
+
+	private List<String> importedApiPaths() {
+
+		return jdbcTemplate.queryForList("SELECT API_PATH FROM MOCK_API_REQUEST_RESPONSE WHERE ID > ? ORDER BY ID",
+				String.class, seededMaxId);
+	}
+
+	private static MockApiDefinition definition(String apiPath) {
+
+		MockApiDefinition definition = new MockApiDefinition();
+		definition.setApiPath(apiPath);
+		definition.setRequestVerb("GET");
+		definition.setRequestHeaders(".*");
+		definition.setRequestQueryParameters(".*");
+		definition.setResponseBody("{\"id\":{digits(3)}}");
+		definition.setResponseStatus("200");
+
+		return definition;
+	}
+
+}
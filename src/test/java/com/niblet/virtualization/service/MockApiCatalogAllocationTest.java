@@ -0,0 +1,140 @@
+package com.niblet.virtualization.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+import com.niblet.virtualization.model.MockApiMatchData;
+import com.niblet.virtualization.model.MockApiRequest;
+
+/**
+ * Canonicalizing a request and matching it against the catalog reuses this
+ * thread's {@link MockApiRequest}, so once warmed up it allocates nothing. The
+ * mocks use only literal and built in path, header and query types, since
+ * custom regexes still need a matcher.
+ * <p>
+ * Whether the JIT scalar-replaces the odd iterator depends on what else ran in
+ * this JVM, so the bound allows for that, while still failing on anything
+ * allocated for each request, such as a request or its match data.
+ */
+class MockApiCatalogAllocationTest {
+
+	private static final int WARM_UP_REQUESTS = 50_000;
+	private static final int MEASURED_REQUESTS = 100_000;
+	// less than one MockApiMatchData with its counts, let alone the three a
+	// request matches
+	private static final double MAX_BYTES_PER_REQUEST = 64.0;
+
+	private MockApiCatalog mockApiCatalog;
+
+	@BeforeEach
+	void buildCatalog() {
+
+		List<MockApiRequestResponseEntity> entities = new ArrayList<>();
+
+		for (int i = 0; i < 32; i++) {
+
+			entities.add(entity(i * 4L + 1, "^api///resource" + i + "///item0$", ".*", ".*"));
+			entities.add(entity(i * 4L + 2, "^api///resource" + i + "///(?<id>\\d+)$",
+					"^(a|[^a])*\\<x-variant=4\\>(a|[^a])*$", ".*"));
+			entities.add(entity(i * 4L + 3, "^api///resource" + i + "///(?<id>[^/]+)$",
+					"^(a|[^a])*\\<x-header-0=.+\\>(a|[^a])*$", "^(a|[^a])*\\<page=\\d+\\>(a|[^a])*$"));
+			entities.add(entity(i * 4L + 4, "^api///resource" + i + "///(?<id>[a-zA-Z0-9_]+)$", ".*", ".*"));
+		}
+
+		mockApiCatalog = new MockApiCatalog(null, new NibletServiceVirtualizationProperties(), null, null);
+		mockApiCatalog.rebuild(entities);
+	}
+
+	@Test
+	void matchingAllocatesNothingOnceWarmedUp() {
+
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		assumeTrue(threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled());
+
+		assertThat(gatherApiMocks()).hasSize(3);
+
+		for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+
+			gatherApiMocks();
+		}
+
+		long allocatedBefore = threadMXBean.getCurrentThreadAllocatedBytes();
+		int matchCount = 0;
+
+		for (int i = 0; i < MEASURED_REQUESTS; i++) {
+
+			matchCount += gatherApiMocks().size();
+		}
+
+		long allocated = threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+		assertThat(matchCount).isEqualTo(3 * MEASURED_REQUESTS);
+		assertThat((double) allocated / MEASURED_REQUESTS).isLessThan(MAX_BYTES_PER_REQUEST);
+	}
+
+	@Test
+	void pooledMatchDataIsResetBetweenRequests() {
+
+		List<MockApiMatchData> first = gatherApiMocks();
+		long firstScore = first.get(0).getScore();
+
+		MockApiRequest request = MockApiRequest.of("GET", "/api/resource3/item0/", null);
+		request.canonicalize();
+
+		assertThat(mockApiCatalog.gatherApiMocks(request)).hasSize(2);
+		assertThat(gatherApiMocks().get(0).getScore()).isEqualTo(firstScore);
+	}
+
+	@Test
+	void virtualThreadsDoNotShareARequest() throws InterruptedException {
+
+		MockApiRequest[] requests = new MockApiRequest[2];
+
+		Thread.ofVirtual().start(() -> {
+
+			requests[0] = MockApiRequest.of("GET", "/api/resource7/12345", null);
+			requests[1] = MockApiRequest.of("GET", "/api/resource7/12345", null);
+
+		}).join();
+
+		assertThat(requests[0]).isNotNull().isNotSameAs(requests[1]);
+		assertThat(MockApiRequest.of("GET", "/", null)).isSameAs(MockApiRequest.of("GET", "/", null));
+	}
+
+	private List<MockApiMatchData> gatherApiMocks() {
+
+		MockApiRequest request = MockApiRequest.of("GET", "/api/resource7/12345", null);
+		request.addHeader("X-Variant", "4");
+		request.addHeader("x-header-0", "value");
+		request.addQueryParameter("page", "2");
+		request.canonicalize();
+
+		return mockApiCatalog.gatherApiMocks(request);
+	}
+
+	private static MockApiRequestResponseEntity entity(long id, String apiPath, String headers,
+			String queryParameters) {
+
+		MockApiRequestResponseEntity entity = new MockApiRequestResponseEntity();
+		entity.setId(id);
+		entity.setApiPath(apiPath);
+		entity.setRequestVerb("GET");
+		entity.setRequestHeaders(headers);
+		entity.setRequestQueryParameters(queryParameters);
+		entity.setResponseBody("{\"id\":" + id + "}");
+		entity.setResponseStatus("200");
+
+		return entity;
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.niblet.virtualization.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+
+class MockApiCatalogSnapshotTest {
+
+	@TempDir
+	private Path tempDirectory;
+
+	@Test
+	void readsBackEveryMockItWrote() {
+
+		MockApiCatalogSnapshot snapshot = snapshot(tempDirectory.resolve("catalog.snapshot"));
+		List<MockApiRequestResponseEntity> entities = new ArrayList<>();
+
+		// several MB, more than a single write is guaranteed to take
+		for (long id = 1; id <= 2_000; id++) {
+
+			MockApiRequestResponseEntity entity = new MockApiRequestResponseEntity();
+			entity.setId(id);
+			entity.setApiPath("^orders///" + id + "$");
+			entity.setRequestVerb("GET");
+			entity.setRequestHeaders(".*");
+			entity.setRequestQueryParameters(".*");
+			entity.setResponseBody("{\"id\":" + id + ",\"note\":\"" + "é".repeat(2_000) + "\"}");
+			entity.setResponseStatus("200");
+			entity.setDelayMillis(0 == id % 2 ? id : null);
+			entity.setPregenerateResponses(0 == id % 3 ? Boolean.TRUE : null);
+			// derived, not stored, so the read recomputes it
+			entity.updateMatchFingerprint();
+			entities.add(entity);
+		}
+
+		snapshot.write(entities);
+
+		List<MockApiRequestResponseEntity> read = snapshot.read();
+
+		assertThat(read).hasSameSizeAs(entities);
+		assertThat(read).usingRecursiveFieldByFieldElementComparator().isEqualTo(entities);
+	}
+
+	@Test
+	void ignoresACorruptSnapshot() throws IOException {
+
+		Path snapshotFile = tempDirectory.resolve("catalog.snapshot");
+		Files.write(snapshotFile, new byte[] { 1, 2, 3 });
+
+		assertThat(snapshot(snapshotFile).read()).isNull();
+	}
+
+	private static MockApiCatalogSnapshot snapshot(Path snapshotFile) {
+
+		NibletServiceVirtualizationProperties properties = new NibletServiceVirtualizationProperties();
+		properties.getSnapshot().setFile(snapshotFile.toString());
+
+		return new MockApiCatalogSnapshot(properties);
+	}
+
+}
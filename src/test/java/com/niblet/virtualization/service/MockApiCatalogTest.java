@@ -0,0 +1,103 @@
+package com.niblet.virtualization.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+import com.niblet.virtualization.model.MockApiMatchData;
+import com.niblet.virtualization.model.MockApiRequest;
+
+class MockApiCatalogTest {
+
+	private static final String ANY = ".*";
+
+	private final MockApiCatalog mockApiCatalog = new MockApiCatalog(null,
+			new NibletServiceVirtualizationProperties(), null, null);
+
+	@Test
+	void routesByVerbAndPath() {
+
+		mockApiCatalog.rebuild(List.of(entity(1L, "GET", "^orders///1$", ANY, ANY),
+				entity(2L, "GET", "^orders///(?<id>\\d+)$", ANY, ANY), entity(3L, "POST", "^orders///1$", ANY, ANY),
+				entity(4L, "GET", "^customers///1$", ANY, ANY)));
+
+		assertThat(gatherMockApiIds(request("GET", "/orders/1"))).containsExactly(1L, 2L);
+		assertThat(gatherMockApiIds(request("GET", "/orders/12"))).containsExactly(2L);
+		assertThat(gatherMockApiIds(request("POST", "/orders/1"))).containsExactly(3L);
+		assertThat(gatherMockApiIds(request("GET", "/orders/a"))).isEmpty();
+		assertThat(gatherMockApiIds(request("GET", "/orders"))).isEmpty();
+		assertThat(gatherMockApiIds(request("DELETE", "/orders/1"))).isEmpty();
+	}
+
+	@Test
+	void dropsMocksWhoseHeadersOrQueryParametersDoNotMatchAndKeepsTheRestInOrder() {
+
+		mockApiCatalog.rebuild(List.of(entity(1L, "GET", "^orders$", ANY, ANY),
+				entity(2L, "GET", "^orders$", "^(a|[^a])*\\<x-variant=4\\>(a|[^a])*$", ANY),
+				entity(3L, "GET", "^orders$", ANY, "^(a|[^a])*\\<page=\\d+\\>(a|[^a])*$"),
+				entity(4L, "GET", "^orders$", ANY, "^(a|[^a])*\\<page=\\d+\\>(a|[^a])*$"),
+				entity(5L, "GET", "^orders$", ANY, ANY)));
+
+		MockApiRequest request = MockApiRequest.of("GET", "/orders", null);
+		request.addHeader("X-Variant", "5");
+		request.addQueryParameter("page", "2");
+		request.canonicalize();
+
+		List<MockApiMatchData> matches = mockApiCatalog.gatherApiMocks(request);
+
+		assertThat(matches).extracting(match -> match.getCompiledMockApi().getEntity().getId())
+				.containsExactly(1L, 3L, 4L, 5L);
+		// the list is compacted in place, not copied
+		assertThat(matches).isSameAs(request.getMatches());
+
+		MockApiRequest withoutQuery = MockApiRequest.of("GET", "/orders", null);
+		withoutQuery.addHeader("X-Variant", "4");
+		withoutQuery.canonicalize();
+
+		assertThat(gatherMockApiIds(withoutQuery)).containsExactly(1L, 2L, 5L);
+	}
+
+	@Test
+	void aMockWithAnInvalidPatternIsLoadedButNeverMatches() {
+
+		mockApiCatalog.rebuild(List.of(entity(1L, "GET", "^orders///(?<id>[a-)$", ANY, ANY),
+				entity(2L, "GET", "^orders///(?<id>.+)$", ANY, ANY)));
+
+		assertThat(mockApiCatalog.getMockApiIds()).containsExactlyInAnyOrder(1L, 2L);
+		assertThat(gatherMockApiIds(request("GET", "/orders/a"))).containsExactly(2L);
+	}
+
+	private List<Long> gatherMockApiIds(MockApiRequest request) {
+
+		return mockApiCatalog.gatherApiMocks(request).stream()
+				.map(match -> match.getCompiledMockApi().getEntity().getId()).toList();
+	}
+
+	private static MockApiRequest request(String httpMethod, String requestURI) {
+
+		MockApiRequest request = MockApiRequest.of(httpMethod, requestURI, null);
+		request.canonicalize();
+
+		return request;
+	}
+
+	private static MockApiRequestResponseEntity entity(long id, String requestVerb, String apiPath, String headers,
+			String queryParameters) {
+
+		MockApiRequestResponseEntity entity = new MockApiRequestResponseEntity();
+		entity.setId(id);
+		entity.setApiPath(apiPath);
+		entity.setRequestVerb(requestVerb);
+		entity.setRequestHeaders(headers);
+		entity.setRequestQueryParameters(queryParameters);
+		entity.setResponseBody("{\"id\":" + id + "}");
+		entity.setResponseStatus("200");
+
+		return entity;
+	}
+
+}
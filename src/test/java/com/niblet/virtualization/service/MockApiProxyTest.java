@@ -0,0 +1,207 @@
+package com.niblet.virtualization.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+import com.niblet.virtualization.jpa.repository.MockApiRequestResponseJdbcRepository;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Proxies to a stub upstream on an ephemeral port, and records what it answers
+ * through a {@link MockApiRecorder} whose catalog and DB are mocks.
+ */
+class MockApiProxyTest {
+
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+	private final BlockingQueue<HttpExchange> upstreamExchanges = new LinkedBlockingQueue<>();
+	private final BlockingQueue<String> upstreamBodies = new LinkedBlockingQueue<>();
+	// copied as inserted, since the recorder reuses its batch list
+	private final BlockingQueue<List<MockApiRequestResponseEntity>> insertedBatches = new LinkedBlockingQueue<>();
+	private final CountDownLatch refreshed = new CountDownLatch(1);
+
+	private HttpServer upstream;
+	private MockApiCatalog mockApiCatalog;
+	private MockApiRequestResponseJdbcRepository mockApiRequestResponseJdbcRepository;
+	private MockApiRecorder mockApiRecorder;
+	private MockApiProxy mockApiProxy;
+
+	@BeforeEach
+	void startUpstream() throws IOException {
+
+		upstream = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		upstream.createContext("/", exchange -> {
+
+			upstreamBodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+			upstreamExchanges.add(exchange);
+
+			boolean image = exchange.getRequestURI().getPath().endsWith(".png");
+			byte[] body = image ? PNG_SIGNATURE : "{\"id\":7}".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", image ? "image/png" : "application/json");
+			exchange.getResponseHeaders().add("X-Upstream", "stub");
+			exchange.sendResponseHeaders(201, body.length);
+
+			try (OutputStream responseBody = exchange.getResponseBody()) {
+
+				responseBody.write(body);
+			}
+		});
+		upstream.start();
+
+		NibletServiceVirtualizationProperties properties = new NibletServiceVirtualizationProperties();
+		properties.getProxy().setUpstream("http://localhost:" + upstream.getAddress().getPort() + "/");
+		properties.getProxy().setRecordFlushIntervalMillis(10L);
+
+		mockApiCatalog = mock(MockApiCatalog.class);
+		// nothing has been recorded yet
+		when(mockApiCatalog.findMockApiIdByFingerprint(anyString())).thenReturn(null);
+		// the catalog's methods are synchronized, so they are observed through
+		// answers; a verify with a timeout would hold the mock's monitor while it
+		// waits
+		doAnswer(invocation -> {
+
+			refreshed.countDown();
+			return null;
+
+		}).when(mockApiCatalog).refresh();
+
+		mockApiRequestResponseJdbcRepository = mock(MockApiRequestResponseJdbcRepository.class);
+		doAnswer(invocation -> insertedBatches.add(new ArrayList<>(invocation.getArgument(0))))
+				.when(mockApiRequestResponseJdbcRepository).insertAll(anyList());
+		mockApiRecorder = new MockApiRecorder(mockApiCatalog, mockApiRequestResponseJdbcRepository,
+				new TransactionTemplate(mock(PlatformTransactionManager.class)), properties);
+		mockApiRecorder.start();
+		mockApiProxy = new MockApiProxy(mockApiRecorder, properties);
+	}
+
+	@AfterEach
+	void stopUpstream() throws InterruptedException {
+
+		mockApiRecorder.stop();
+		upstream.stop(0);
+	}
+
+	@Test
+	void forwardsTheRequestAndReturnsTheUpstreamResponse() throws Exception {
+
+		Map<String, String> headers = new LinkedHashMap<>();
+		headers.put("X-Trace", "abc");
+		headers.put("Host", "mocks.example.com");
+		headers.put("Accept-Encoding", "gzip");
+
+		ResponseEntity<byte[]> response = mockApiProxy
+				.forward("POST", "/orders/42", "{\"qty\":1}", headers, Map.of("page", "2")).get();
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(new String(response.getBody(), StandardCharsets.UTF_8)).isEqualTo("{\"id\":7}");
+		assertThat(response.getHeaders().getFirst("X-Upstream")).isEqualTo("stub");
+
+		HttpExchange exchange = upstreamExchanges.take();
+
+		assertThat(exchange.getRequestMethod()).isEqualTo("POST");
+		assertThat(exchange.getRequestURI().getPath()).isEqualTo("/orders/42");
+		assertThat(exchange.getRequestURI().getQuery()).isEqualTo("page=2");
+		assertThat(upstreamBodies.take()).isEqualTo("{\"qty\":1}");
+		assertThat(exchange.getRequestHeaders().getFirst("X-Trace")).isEqualTo("abc");
+		// the client sets Host for the upstream, and the body is recorded uncompressed
+		assertThat(exchange.getRequestHeaders().getFirst("Host")).isNotEqualTo("mocks.example.com");
+		assertThat(exchange.getRequestHeaders().containsKey("Accept-Encoding")).isFalse();
+	}
+
+	@Test
+	void recordsTheUpstreamResponseAsAMock() throws Exception {
+
+		mockApiProxy.forward("GET", "/orders/42", null, Map.of(), Map.of("page", "2")).get();
+
+		List<MockApiRequestResponseEntity> batch = insertedBatches.poll(5, TimeUnit.SECONDS);
+
+		assertThat(batch).singleElement().satisfies(entity -> {
+
+			assertThat(entity.getApiPath()).isEqualTo("^orders///42$");
+			assertThat(entity.getRequestVerb()).isEqualTo("GET");
+			assertThat(entity.getRequestQueryParameters()).contains("page=");
+			assertThat(entity.getResponseStatus()).isEqualTo("201");
+			assertThat(entity.getResponseBody()).isEqualTo("{\"id\":7}");
+		});
+		assertThat(refreshed.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	void forwardsButDoesNotRecordBinaryResponses() throws Exception {
+
+		ResponseEntity<byte[]> response = mockApiProxy.forward("GET", "/logo.png", null, Map.of(), Map.of()).get();
+
+		assertThat(response.getBody()).isEqualTo(PNG_SIGNATURE);
+
+		mockApiProxy.forward("GET", "/orders/42", null, Map.of(), Map.of()).get();
+
+		// a mock would replay the image as UTF-8 text, so only the JSON is recorded
+		assertThat(insertedBatches.poll(5, TimeUnit.SECONDS)).singleElement()
+				.satisfies(entity -> assertThat(entity.getApiPath()).isEqualTo("^orders///42$"));
+	}
+
+	@Test
+	void recordsAgainAfterAFlushFails() throws Exception {
+
+		// the first flush can't reach the DB; the next one can
+		CountDownLatch failed = new CountDownLatch(1);
+		doAnswer(invocation -> {
+
+			failed.countDown();
+			throw new IllegalStateException("DB unavailable");
+
+		}).doNothing().when(mockApiCatalog).loadDatabase();
+
+		mockApiProxy.forward("GET", "/orders/42", null, Map.of(), Map.of()).get();
+		assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(insertedBatches).isEmpty();
+
+		// the failed flush released the fingerprint, so the same response is queued
+		// again rather than treated as still pending
+		mockApiProxy.forward("GET", "/orders/42", null, Map.of(), Map.of()).get();
+
+		assertThat(insertedBatches.poll(5, TimeUnit.SECONDS)).hasSize(1);
+		assertThat(refreshed.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	void answersBadGatewayWhenTheUpstreamIsDown() throws Exception {
+
+		upstream.stop(0);
+
+		ResponseEntity<byte[]> response = mockApiProxy.forward("GET", "/orders", null, Map.of(), Map.of()).get();
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_GATEWAY);
+		assertThat(List.of(upstreamExchanges.toArray())).isEmpty();
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.niblet.virtualization.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.service.MockApiMetrics.Outcome;
+import com.niblet.virtualization.service.MockApiRequestJournal.Entry;
+
+class MockApiRequestJournalTest {
+
+	@Test
+	void redactsSensitiveHeadersWhateverTheirCase() {
+
+		MockApiRequestJournal journal = new MockApiRequestJournal(new NibletServiceVirtualizationProperties());
+
+		Map<String, String> headers = new LinkedHashMap<>();
+		headers.put("authorization", "Bearer secret");
+		headers.put("X-Trace", "abc");
+		headers.put("COOKIE", "session=secret");
+		headers.put("Proxy-Authorization", "Basic secret");
+
+		journal.record("GET", "/orders", headers, Map.of(), 1L, Outcome.MATCH, 0L);
+
+		assertThat(journal.recent(1)).singleElement().extracting(Entry::headers)
+				.isEqualTo(Map.of("authorization", MockApiRequestJournal.REDACTED, "X-Trace", "abc", "COOKIE",
+						MockApiRequestJournal.REDACTED, "Proxy-Authorization", MockApiRequestJournal.REDACTED));
+		// the caller's map is left as it was
+		assertThat(headers).containsEntry("authorization", "Bearer secret");
+	}
+
+	@Test
+	void redactsOnlyTheConfiguredHeaders() {
+
+		NibletServiceVirtualizationProperties properties = new NibletServiceVirtualizationProperties();
+		properties.getJournal().setRedactedHeaders(List.of("X-Api-Key"));
+		MockApiRequestJournal journal = new MockApiRequestJournal(properties);
+
+		Map<String, String> headers = Map.of("x-api-key", "secret", "Authorization", "Bearer token");
+
+		journal.record("GET", "/orders", headers, Map.of(), null, Outcome.NO_MATCH, 0L);
+
+		assertThat(journal.recent(1)).singleElement().extracting(Entry::headers)
+				.isEqualTo(Map.of("x-api-key", MockApiRequestJournal.REDACTED, "Authorization", "Bearer token"));
+	}
+
+}
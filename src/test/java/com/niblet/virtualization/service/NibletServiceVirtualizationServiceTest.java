@@ -0,0 +1,269 @@
+package com.niblet.virtualization.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties;
+import com.niblet.virtualization.config.NibletServiceVirtualizationProperties.RandomMode;
+import com.niblet.virtualization.contract.CreateUpdateMockApiRequest;
+import com.niblet.virtualization.contract.CreateUpdateResponse;
+import com.niblet.virtualization.contract.HttpStatusCode;
+import com.niblet.virtualization.contract.MatchModeEnum;
+import com.niblet.virtualization.contract.RequestVariableDetails;
+import com.niblet.virtualization.exception.InvalidResponseBodyException;
+import com.niblet.virtualization.jpa.entity.MockApiRequestResponseEntity;
+import com.niblet.virtualization.jpa.repository.MockApiRequestResponseJpaRepository;
+import com.niblet.virtualization.model.PregeneratedResponses;
+import com.niblet.virtualization.model.ResponseTemplate;
+import com.niblet.virtualization.util.RandomSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class NibletServiceVirtualizationServiceTest {
+
+	private static final String RESPONSE_BODY = "{\"id\":{digits(6)}}";
+
+	private final NibletServiceVirtualizationProperties properties = new NibletServiceVirtualizationProperties();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final MockApiRequestResponseJpaRepository mockApiRequestResponseJpaRepository = mock(
+			MockApiRequestResponseJpaRepository.class);
+
+	@Test
+	void aReadyResponseIsTakenAndOtherwiseOneIsRenderedInline() throws InvalidResponseBodyException {
+
+		MockApiCatalog mockApiCatalog = catalog(entity(RESPONSE_BODY));
+		NibletServiceVirtualizationService service = service(mockApiCatalog);
+		PregeneratedResponses pregeneratedResponses = pregeneratedResponses(mockApiCatalog);
+
+		pregeneratedResponses.refill(new Random(7L), 1);
+		String ready = ResponseTemplate.compile(RESPONSE_BODY).render(new Random(7L));
+
+		assertThat(responseBody(service)).isEqualTo(ready);
+		assertThat(pregeneratedResponses.size()).isZero();
+		assertThat(pregenerationCount("hit")).isEqualTo(1.0);
+
+		// none is left, so this one is rendered for the request and nothing is queued
+		assertThat(responseBody(service)).matches("\\{\"id\":\\d{6}\\}").isNotEqualTo(ready);
+		assertThat(pregeneratedResponses.size()).isZero();
+		assertThat(pregenerationCount("miss")).isEqualTo(1.0);
+	}
+
+	@Test
+	void readyResponsesSurviveARebuildUnlessTheBodyChanged() {
+
+		MockApiCatalog mockApiCatalog = catalog(entity(RESPONSE_BODY));
+		PregeneratedResponses pregeneratedResponses = pregeneratedResponses(mockApiCatalog);
+		pregeneratedResponses.refill(new Random(), 3);
+
+		mockApiCatalog.rebuild(List.of(entity(RESPONSE_BODY)));
+
+		assertThat(pregeneratedResponses(mockApiCatalog)).isSameAs(pregeneratedResponses);
+		assertThat(pregeneratedResponses.size()).isEqualTo(3);
+
+		mockApiCatalog.apply(entity(RESPONSE_BODY));
+
+		assertThat(pregeneratedResponses(mockApiCatalog)).isSameAs(pregeneratedResponses);
+
+		mockApiCatalog.apply(entity("{\"id\":{digits(8)}}"));
+
+		assertThat(pregeneratedResponses(mockApiCatalog).size()).isZero();
+	}
+
+	@Test
+	void seededModeRendersEveryResponseInline() {
+
+		properties.getRandom().setMode(RandomMode.SEEDED);
+		MockApiCatalog mockApiCatalog = catalog(entity(RESPONSE_BODY));
+
+		assertThat(mockApiCatalog.getPregeneratedMocks()).isEmpty();
+
+		NibletServiceVirtualizationService first = service(mockApiCatalog);
+		NibletServiceVirtualizationService second = service(mockApiCatalog);
+
+		// the same seed gives the same values
+		assertThat(responseBody(first)).isEqualTo(responseBody(second));
+		assertThat(pregenerationCount("hit") + pregenerationCount("miss")).isZero();
+	}
+
+	@Test
+	void pathParametersAreStoredAsNamedGroupsOrLiteralSections() {
+
+		CreateUpdateMockApiRequest createUpdateMockApiRequest = createUpdateMockApiRequest(
+				"/consumer/{id}/orders/{orderId}/{sku}/{region}/{code}/");
+		createUpdateMockApiRequest.setRequestPathParameters(Map.of("orderId", details(MatchModeEnum.DIGITS, null),
+				"sku", details(MatchModeEnum.ALPHA_NUMERIC, null), "region", details(MatchModeEnum.EXACT_MATCH, "eu"),
+				"code", details(MatchModeEnum.CUSTOM_REGEX, "[A-Z]{3}")));
+
+		assertThat(savedEntity(createUpdateMockApiRequest).getApiPath())
+				.isEqualTo("^consumer///(?<id>[^/]+)///orders///(?<orderId>\\d+)///(?<sku>[a-zA-Z0-9_]+)"
+						+ "///eu///(?<code>[A-Z]{3})$");
+		assertThat(savedEntity(createUpdateMockApiRequest("/")).getApiPath()).isEqualTo("^$");
+	}
+
+	@Test
+	void anExactMatchPathParameterNeedsAValueWithoutASlash() {
+
+		for (String customRegexString : new String[] { null, "", "eu/west" }) {
+
+			CreateUpdateMockApiRequest createUpdateMockApiRequest = createUpdateMockApiRequest("/orders/{region}");
+			createUpdateMockApiRequest.setRequestPathParameters(
+					Map.of("region", details(MatchModeEnum.EXACT_MATCH, customRegexString)));
+
+			MockApiCatalog mockApiCatalog = mock(MockApiCatalog.class);
+			ResponseEntity<CreateUpdateResponse> response = service(mockApiCatalog)
+					.createUpdateMockApiRequest(createUpdateMockApiRequest, null);
+
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+			assertThat(response.getBody().getMessage()).isEqualTo(
+					"Invalid customRegexString: EXACT_MATCH path parameter region needs a value without '/'");
+			verifyNoInteractions(mockApiCatalog);
+		}
+	}
+
+	@Test
+	void aMockWithTheMatchDefinitionOfAnotherMockIsRejected() {
+
+		MockApiRequestResponseEntity existingEntity = savedEntity(createUpdateMockApiRequest("/orders"));
+		existingEntity.updateMatchFingerprint();
+
+		MockApiCatalog mockApiCatalog = mock(MockApiCatalog.class);
+		when(mockApiCatalog.findMockApiIdByFingerprint(anyString())).thenReturn(null);
+		when(mockApiCatalog.findMockApiIdByFingerprint(existingEntity.getMatchFingerprint())).thenReturn(7L);
+		NibletServiceVirtualizationService service = service(mockApiCatalog);
+
+		// a create, and an update of another mock, both collide with mock 7
+		for (Long id : new Long[] { null, 3L }) {
+
+			ResponseEntity<CreateUpdateResponse> response = service
+					.createUpdateMockApiRequest(createUpdateMockApiRequest("/orders"), id);
+
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+			assertThat(response.getBody().getMessage())
+					.isEqualTo("Request details are an exact match for an existing Mock API, ID=7");
+			assertThat(response.getBody().getId()).isEqualTo(7L);
+		}
+
+		verify(mockApiCatalog, never()).save(any());
+		verifyNoInteractions(mockApiRequestResponseJpaRepository);
+
+		// the mock's own definition isn't a conflict
+		existingEntity.setId(7L);
+		existingEntity.setResponseBody("[]");
+		when(mockApiRequestResponseJpaRepository.findById(7L)).thenReturn(Optional.of(existingEntity));
+
+		ResponseEntity<CreateUpdateResponse> response = service
+				.createUpdateMockApiRequest(createUpdateMockApiRequest("/orders"), 7L);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(existingEntity.getResponseBody()).isEqualTo("{}");
+		verify(mockApiCatalog).save(existingEntity);
+	}
+
+	private MockApiCatalog catalog(MockApiRequestResponseEntity entity) {
+
+		MockApiCatalog mockApiCatalog = new MockApiCatalog(null, properties, mock(MockApiCatalogSnapshot.class),
+				null);
+		mockApiCatalog.rebuild(List.of(entity));
+
+		return mockApiCatalog;
+	}
+
+	private NibletServiceVirtualizationService service(MockApiCatalog mockApiCatalog) {
+
+		return new NibletServiceVirtualizationService(mockApiCatalog, mockApiRequestResponseJpaRepository,
+				RandomSource.seeded(42L),
+				new MockApiMetrics(meterRegistry), new MockApiRequestJournal(properties),
+				new MockApiProxy(null, properties), properties);
+	}
+
+	/**
+	 * @return the mock a successful create hands to the catalog
+	 */
+	private MockApiRequestResponseEntity savedEntity(CreateUpdateMockApiRequest createUpdateMockApiRequest) {
+
+		MockApiCatalog mockApiCatalog = mock(MockApiCatalog.class);
+		when(mockApiCatalog.findMockApiIdByFingerprint(anyString())).thenReturn(null);
+		ResponseEntity<CreateUpdateResponse> response = service(mockApiCatalog)
+				.createUpdateMockApiRequest(createUpdateMockApiRequest, null);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+
+		ArgumentCaptor<MockApiRequestResponseEntity> entity = ArgumentCaptor
+				.forClass(MockApiRequestResponseEntity.class);
+		verify(mockApiCatalog).save(entity.capture());
+
+		return entity.getValue();
+	}
+
+	private static CreateUpdateMockApiRequest createUpdateMockApiRequest(String apiPath) {
+
+		CreateUpdateMockApiRequest createUpdateMockApiRequest = new CreateUpdateMockApiRequest();
+		createUpdateMockApiRequest.setApiPath(apiPath);
+		createUpdateMockApiRequest.setRequestVerb(RequestMethod.GET);
+		createUpdateMockApiRequest.setResponseBody("{}");
+		createUpdateMockApiRequest.setResponseStatusCode(new HttpStatusCode(200));
+
+		return createUpdateMockApiRequest;
+	}
+
+	private static RequestVariableDetails details(MatchModeEnum matchMode, String customRegexString) {
+
+		RequestVariableDetails details = new RequestVariableDetails();
+		details.setMatchMode(matchMode);
+		details.setCustomRegexString(customRegexString);
+
+		return details;
+	}
+
+	private static PregeneratedResponses pregeneratedResponses(MockApiCatalog mockApiCatalog) {
+
+		return mockApiCatalog.getPregeneratedMocks().get(0).getPregeneratedResponses();
+	}
+
+	private static String responseBody(NibletServiceVirtualizationService service) {
+
+		byte[] body = service.processAnyMockRequest("GET", "/orders", null, Map.of(), Map.of()).getResponse()
+				.getBody();
+
+		return new String(body, StandardCharsets.UTF_8);
+	}
+
+	private double pregenerationCount(String result) {
+
+		return meterRegistry.get("niblet.mock.pregenerated").tag("result", result).counter().count();
+	}
+
+	private static MockApiRequestResponseEntity entity(String responseBody) {
+
+		MockApiRequestResponseEntity entity = new MockApiRequestResponseEntity();
+		entity.setId(1L);
+		entity.setApiPath("^orders$");
+		entity.setRequestVerb("GET");
+		entity.setRequestHeaders(".*");
+		entity.setRequestQueryParameters(".*");
+		entity.setResponseBody(responseBody);
+		entity.setResponseStatus("200");
+		entity.setPregenerateResponses(true);
+
+		return entity;
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.niblet.virtualization.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.niblet.virtualization.exception.InvalidResponseBodyException;
+
+class NibletServiceVirtualizationUtilsTest {
+
+	@TempDir
+	private Path tempDirectory;
+
+	@Test
+	void labelsResponseBodiesAsUtf8Text() {
+
+		ResponseEntity<byte[]> response = NibletServiceVirtualizationUtils.toResponseEntity("{\"name\":\"Zoë\"}",
+				HttpStatus.CREATED);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(response.getHeaders().getContentType())
+				.isEqualTo(MediaType.parseMediaType("text/plain;charset=UTF-8"));
+		assertThat(response.getHeaders().getContentLength()).isEqualTo(15);
+		assertThat(new String(response.getBody(), StandardCharsets.UTF_8)).isEqualTo("{\"name\":\"Zoë\"}");
+	}
+
+	@Test
+	void sendsNoBodyOrContentTypeForABlankBody() {
+
+		ResponseEntity<byte[]> response = NibletServiceVirtualizationUtils.toResponseEntity(" ", HttpStatus.NO_CONTENT);
+
+		assertThat(response.getBody()).isNull();
+		assertThat(response.getHeaders().getContentType()).isNull();
+	}
+
+	@Test
+	void resolvesBodyFilesToTheirRealPathInsideTheDirectory() throws IOException, InvalidResponseBodyException {
+
+		Path bodies = Files.createDirectories(tempDirectory.resolve("bodies"));
+		Path orders = Files.createDirectories(bodies.resolve("orders"));
+		Path order = Files.writeString(orders.resolve("order.json"), "{}");
+		// a link that stays inside the directory is fine
+		Files.createSymbolicLink(bodies.resolve("latest.json"), order);
+
+		assertThat(NibletServiceVirtualizationUtils.resolveBodyFile(bodies.toString(), "orders/../orders/order.json"))
+				.isEqualTo(order.toRealPath());
+		assertThat(NibletServiceVirtualizationUtils.resolveBodyFile(bodies.toString(), "latest.json"))
+				.isEqualTo(order.toRealPath());
+	}
+
+	@Test
+	void followsALinkedBodyFileDirectory() throws IOException, InvalidResponseBodyException {
+
+		Path bodies = Files.createDirectories(tempDirectory.resolve("bodies"));
+		Path order = Files.writeString(bodies.resolve("order.json"), "{}");
+		Path linkedBodies = Files.createSymbolicLink(tempDirectory.resolve("linked-bodies"), bodies);
+
+		assertThat(NibletServiceVirtualizationUtils.resolveBodyFile(linkedBodies.toString(), "order.json"))
+				.isEqualTo(order.toRealPath());
+	}
+
+	@Test
+	void refusesBodyFilesOutsideTheDirectory() throws IOException {
+
+		Path bodies = Files.createDirectories(tempDirectory.resolve("bodies"));
+		Path secret = Files.writeString(tempDirectory.resolve("secret.txt"), "secret");
+		Files.createSymbolicLink(bodies.resolve("secret.json"), secret);
+		Files.createSymbolicLink(bodies.resolve("outside"), tempDirectory);
+
+		assertThatThrownBy(() -> NibletServiceVirtualizationUtils.resolveBodyFile(bodies.toString(), "../secret.txt"))
+				.isInstanceOf(InvalidResponseBodyException.class).hasMessageContaining("must be inside");
+		assertThatThrownBy(() -> NibletServiceVirtualizationUtils.resolveBodyFile(bodies.toString(), "secret.json"))
+				.isInstanceOf(InvalidResponseBodyException.class).hasMessageContaining("must be inside");
+		assertThatThrownBy(
+				() -> NibletServiceVirtualizationUtils.resolveBodyFile(bodies.toString(), "outside/secret.txt"))
+				.isInstanceOf(InvalidResponseBodyException.class).hasMessageContaining("must be inside");
+	}
+
+	@Test
+	void refusesMissingBodyFiles() throws IOException {
+
+		Path bodies = Files.createDirectories(tempDirectory.resolve("bodies"));
+		Files.createSymbolicLink(bodies.resolve("dangling.json"), tempDirectory.resolve("missing.json"));
+
+		assertThatThrownBy(() -> NibletServiceVirtualizationUtils.resolveBodyFile(bodies.toString(), "missing.json"))
+				.isInstanceOf(InvalidResponseBodyException.class).hasMessageContaining("not a readable file");
+		assertThatThrownBy(() -> NibletServiceVirtualizationUtils.resolveBodyFile(bodies.toString(), "dangling.json"))
+				.isInstanceOf(InvalidResponseBodyException.class).hasMessageContaining("not a readable file");
+	}
+
+}